@@ -2,8 +2,8 @@ package com.example.proffpresenceapp.ui;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -23,48 +23,67 @@ import androidx.core.content.ContextCompat;
 
 import com.example.proffpresenceapp.R;
 import com.example.proffpresenceapp.ui.core.AttendanceHelper;
-import com.example.proffpresenceapp.ui.liveness.LivenessGuard;
+import com.example.proffpresenceapp.ui.data.GalleryCache;
+import com.example.proffpresenceapp.ui.data.GalleryRepository;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingEngine;
 import com.example.proffpresenceapp.ui.ml.FaceEmbeddingProcessor;
+import com.example.proffpresenceapp.ui.ml.FaceGallery;
 import com.example.proffpresenceapp.ui.ml.FaceMatcher;
-import com.example.proffpresenceapp.ui.ml.FaceUtils;
+import com.example.proffpresenceapp.ui.ml.FaceTemplates;
+import com.example.proffpresenceapp.ui.ml.ModelDescriptor;
+import com.example.proffpresenceapp.ui.ml.ModelRegistry;
+import com.example.proffpresenceapp.ui.ml.QuantizedGallery;
+import com.example.proffpresenceapp.ui.ml.TemplateBuilder;
+import com.example.proffpresenceapp.ui.verify.DetectorProfiles;
+import com.example.proffpresenceapp.ui.verify.FrameQualityGate;
+import com.example.proffpresenceapp.ui.verify.VerificationPipeline;
+import com.example.proffpresenceapp.ui.verify.VerificationSession;
+import com.example.proffpresenceapp.ui.verify.DecisionPolicy;
+import com.example.proffpresenceapp.ui.verify.SprtPolicy;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.database.*;
-import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.*;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-public class FaceRecognitionActivity extends AppCompatActivity {
+public class FaceRecognitionActivity extends AppCompatActivity implements VerificationPipeline.Listener, VerificationSession.Callback {
+
+    private static final String TAG = "FaceRecognition";
 
     private PreviewView preview;
     private TextView tvHint;
 
     private ProcessCameraProvider provider;
     private ExecutorService exec;
-    private FaceDetector detector;
+    private DetectorProfiles detectors;
+    private ImageAnalysis analysis;
     private FaceEmbeddingProcessor embedder;
-
-    private final List<float[]> gallery = new ArrayList<>();
-    private final LivenessGuard liveness = new LivenessGuard();
-    private boolean livenessPassed = false;
-
-    private int framesSeen = 0;
-    private int agreeCount = 0;
-    private float lastBestScore = -2f;   // for debug toast
+    private ModelDescriptor model;           // version, thresholds of the embedder in use
+    private VerificationPipeline pipeline;   // detect -> extract -> embed on separate threads
+
+    private volatile QuantizedGallery gallery; // int8 packed enrolled vectors (swapped on refresh)
+    private volatile FaceTemplates templates;   // set instead of per-sample scoring for big galleries
+    private final FaceGallery.Scores scores = new FaceGallery.Scores();
+
+    // Liveness + identity bound to one tracking ID. Frames failing the quality gate are skipped.
+    // Sequential test centred on the model's strong threshold, rebuilt in startCamera() for the model
+    // in use; MIN_DECISION_FRAMES is the budget, after which the MIN_AGREE_REQUIRED vote decides.
+    // Swap for new FixedVotePolicy(MIN_DECISION_FRAMES, MIN_AGREE_REQUIRED) to get the old fixed vote.
+    // CONCURRENT_IDENTITY embeds good frames during the blink/turn challenge already.
+    private final VerificationSession session = new VerificationSession(
+            policyFor(ModelDescriptor.MOBILE_FACE_NET), new FrameQualityGate(), CONCURRENT_IDENTITY, this);
+    private volatile float lastBestScore = -2f;   // for debug toast
 
     // === Thresholds to tune ===
-    // After L2-normalization and cosine similarity:
-    //   - same person is usually 0.65~0.9+
-    //   - different person often < 0.35
-    private static final float STRONG_THRESHOLD    = 0.60f;  // quick accept if any >= this
-    private static final float SECONDARY_THRESHOLD = 0.50f;  // vote threshold
-    private static final int   MIN_DECISION_FRAMES = 14;
+    // Strong (quick accept) and secondary (vote) cosine thresholds come from the model descriptor.
+    // For MobileFaceNet after L2-normalization: same person ~0.65-0.9+, different person < 0.35.
+    private static final int   MIN_DECISION_FRAMES = 14;     // max frame budget per attempt
     private static final int   MIN_AGREE_REQUIRED  = 7;
+    private static final boolean CONCURRENT_IDENTITY = true;
+    private static final int   TEMPLATE_MIN_SAMPLES = 2 * TemplateBuilder.SAMPLES_PER_TEMPLATE;
 
     private ActivityResultLauncher<String> camPerm;
 
@@ -78,16 +97,12 @@ public class FaceRecognitionActivity extends AppCompatActivity {
 
         exec = Executors.newSingleThreadExecutor();
 
-        FaceDetectorOptions opts = new FaceDetectorOptions.Builder()
-                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
-                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
-                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
-                .enableTracking()
-                .build();
-        detector = FaceDetection.getClient(opts);
+        // FAST + classification for the blink/turn, ACCURATE + landmarks once identity takes over
+        detectors = new DetectorProfiles();
 
         try {
-            embedder = new FaceEmbeddingProcessor(getAssets());
+            embedder = FaceEmbeddingEngine.get(this);   // shared, usually pre-warmed
+            model = embedder.getDescriptor();
         } catch (Exception e) {
             Toast.makeText(this, "Model load failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
             finish();
@@ -109,47 +124,106 @@ public class FaceRecognitionActivity extends AppCompatActivity {
     @Override protected void onDestroy() {
         super.onDestroy();
         try { if (provider!=null) provider.unbindAll(); } catch (Exception ignored) {}
-        try { if (detector!=null) detector.close(); } catch (Exception ignored) {}
-        try { if (embedder!=null) embedder.close(); } catch (Exception ignored) {}
+        if (pipeline!=null) pipeline.close();
+        if (detectors!=null) { Log.d(TAG, detectors.summary()); detectors.close(); }
         if (exec!=null) exec.shutdown();
     }
 
-    /** Load this user’s embeddings and L2-normalize them. */
+    /**
+     * Start from the on-device gallery cache when the server confirmed it recently enough
+     * ({@link GalleryCache#MAX_OFFLINE_AGE_MS}), so verification needs no network; then check
+     * professors/<uid>/galleryVersion and swap in the fresh gallery if it changed. With no cache or
+     * a stale one, the camera starts only once the server has answered.
+     */
     private void loadGalleryThenStart() {
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) { finish(); return; }
+        String uid = user.getUid();
+
+        GalleryCache.Entry cached = GalleryCache.load(this, uid);
+        if (cached != null && !useModel(cached.model)) cached = null;
+        boolean running = cached != null && cached.isFresh(System.currentTimeMillis());
+        if (running) {
+            useGallery(cached.gallery);
+            startCamera();
+        }
 
-        DatabaseReference ref = FirebaseDatabase.getInstance()
-                .getReference("faceEmbeddings").child(user.getUid());
-        ref.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override public void onDataChange(@NonNull DataSnapshot snap) {
-                gallery.clear();
-                for (DataSnapshot c : snap.getChildren()) {
-                    String vec = String.valueOf(c.child("vec").getValue());
-                    float[] f = FaceUtils.base64ToFloats(vec);
-                    if (f != null) gallery.add(FaceMatcher.l2norm(f));
-                }
-                if (gallery.isEmpty()) {
-                    Toast.makeText(FaceRecognitionActivity.this,
-                            "No enrolled face for your account.", Toast.LENGTH_LONG).show();
-                    finish(); return;
-                }
+        GalleryCache.Entry known = cached;
+        GalleryRepository.loadUserGallery(this, uid, known, new GalleryRepository.UserGalleryCallback() {
+            @Override public void onUnchanged() {
+                if (running || isFinishing()) return;
+                useGallery(known.gallery);   // stale copy, now confirmed
                 startCamera();
             }
-            @Override public void onCancelled(@NonNull DatabaseError e) {
-                Toast.makeText(FaceRecognitionActivity.this,
-                        "Failed to load gallery: "+e.getMessage(), Toast.LENGTH_LONG).show();
+            @Override public void onLoaded(@NonNull GalleryCache.Entry e) {
+                if (!isFinishing()) applyGallery(e, running);
+            }
+            @Override public void onError(@NonNull String message) {
+                if (running) { Log.w(TAG, message + " (verifying against the cached gallery)"); return; }
+                String why = known != null ? "Face data needs to be confirmed online. " + message : message;
+                Toast.makeText(FaceRecognitionActivity.this, why, Toast.LENGTH_LONG).show();
                 finish();
             }
         });
     }
 
+    /** A downloaded gallery: swap it in, restarting the camera only if the embedder has to change. */
+    private void applyGallery(@NonNull GalleryCache.Entry e, boolean running) {
+        if (e.gallery.isEmpty()) {
+            Toast.makeText(this, "No enrolled face for your account.", Toast.LENGTH_LONG).show();
+            finish(); return;
+        }
+        boolean sameModel = e.model.equals(model.version);
+        if (!useModel(e.model)) {
+            Toast.makeText(this, "Face model " + e.model + " unavailable.", Toast.LENGTH_LONG).show();
+            finish(); return;
+        }
+        useGallery(e.gallery);
+        if (!running || !sameModel) {
+            if (!session.isDone()) startCamera();   // a new embedder needs a new pipeline
+        }
+    }
+
+    /**
+     * Large galleries (repeat enrollments) are matched through their compacted templates, the rest
+     * per sample in int8.
+     */
+    private void useGallery(@NonNull FaceGallery g) {
+        templates = g.size() >= TEMPLATE_MIN_SAMPLES ? TemplateBuilder.build(g, null) : null;
+        gallery = QuantizedGallery.of(g);
+        if (templates != null) {
+            Log.d(TAG, g.size() + " samples -> " + templates.size() + " templates ("
+                    + templates.prunedCount() + " outliers pruned)");
+        }
+    }
+
+    /** Make {@code version} the embedder in use; false if it is unknown or fails to load. */
+    private boolean useModel(@NonNull String version) {
+        if (version.equals(model.version)) return true;
+        ModelDescriptor d = ModelRegistry.get(this, version);
+        if (d == null) return false;
+        try {
+            embedder = FaceEmbeddingEngine.get(this, d);
+            model = embedder.getDescriptor();
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "Gallery model " + version + " unavailable: " + e.getMessage());
+            return false;
+        }
+    }
+
+    @NonNull
+    private static DecisionPolicy policyFor(@NonNull ModelDescriptor m) {
+        return SprtPolicy.defaults(m.strongThreshold, MIN_AGREE_REQUIRED, MIN_DECISION_FRAMES);
+    }
+
     @OptIn(markerClass = ExperimentalGetImage.class)
     private void startCamera() {
         tvHint.setText("Blink, then turn head (liveness).");
-        liveness.reset();
-        livenessPassed = false;
-        framesSeen = 0; agreeCount = 0; lastBestScore = -2f;
+        session.usePolicy(policyFor(model), model.strongThreshold);
+        session.reset();
+        detectors.setMode(DetectorProfiles.Mode.LIVENESS);
+        lastBestScore = -2f;
 
         ListenableFuture<ProcessCameraProvider> fut = ProcessCameraProvider.getInstance(this);
         fut.addListener(() -> {
@@ -160,12 +234,11 @@ public class FaceRecognitionActivity extends AppCompatActivity {
                 Preview p = new Preview.Builder().build();
                 p.setSurfaceProvider(preview.getSurfaceProvider());
 
-                ImageAnalysis ia = new ImageAnalysis.Builder()
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .build();
-                ia.setAnalyzer(exec, this::analyze);
+                if (pipeline != null) pipeline.close();
+                pipeline = new VerificationPipeline(detectors, embedder, this);
+                analysis = buildAnalysis(DetectorProfiles.Mode.LIVENESS);
 
-                provider.bindToLifecycle(this, CameraSelector.DEFAULT_FRONT_CAMERA, p, ia);
+                provider.bindToLifecycle(this, CameraSelector.DEFAULT_FRONT_CAMERA, p, analysis);
             } catch (Exception e) {
                 Toast.makeText(this, "Camera start failed: "+e.getMessage(), Toast.LENGTH_LONG).show();
                 finish();
@@ -173,65 +246,80 @@ public class FaceRecognitionActivity extends AppCompatActivity {
         }, ContextCompat.getMainExecutor(this));
     }
 
-    @OptIn(markerClass = ExperimentalGetImage.class)
-    private void analyze(@NonNull ImageProxy image) {
-        try {
-            if (image.getImage() == null) { image.close(); return; }
-            int rot = image.getImageInfo().getRotationDegrees();
-            InputImage ii = InputImage.fromMediaImage(image.getImage(), rot);
-
-            detector.process(ii)
-                    .addOnSuccessListener(faces -> {
-                        if (faces.isEmpty()) { updateHint("No face detected."); return; }
-                        Face face = faces.get(0);
-
-                        if (!livenessPassed) {
-                            LivenessGuard.Result lr = liveness.update(face);
-                            updateHint(lr.hint);
-                            if (!lr.passed) return;
-                            livenessPassed = true;
-                            updateHint("Liveness OK. Hold still for identity…");
-                            return;
-                        }
-
-                        Bitmap frame = FaceUtils.imageProxyToBitmap(image);
-                        if (frame == null) { updateHint("Frame error"); return; }
-
-                        // Use SAFE crop with 20% margin
-                        Bitmap crop = FaceUtils.cropAlignResize(
-                                frame, face, FaceEmbeddingProcessor.INPUT_SIZE, 0.20f);
-                        if (crop == null) { updateHint("Face crop error"); return; }
-
-                        float[][][][] in = FaceUtils.bitmapToInput(crop);
-                        float[] probe = embedder.embed(in);
-                        FaceMatcher.l2norm(probe);
-                        framesSeen++;
-
-                        // Check against gallery
-                        boolean ok = FaceMatcher.acceptForUser(
-                                probe, gallery, STRONG_THRESHOLD, SECONDARY_THRESHOLD, MIN_AGREE_REQUIRED);
-
-                        // For quick tuning: compute best score (again) for a tiny debug toast
-                        float best = -2f;
-                        for (float[] g : gallery) {
-                            float s = FaceMatcher.cosine(probe, g);
-                            if (s > best) best = s;
-                        }
-                        lastBestScore = best;
-
-                        if (ok) agreeCount++;
-
-                        if (framesSeen >= MIN_DECISION_FRAMES) {
-                            finishDecision(agreeCount >= MIN_AGREE_REQUIRED);
-                        } else {
-                            updateHint("Verifying… (" + agreeCount + "/" + framesSeen + ")");
-                        }
-                    })
-                    .addOnFailureListener(e -> updateHint("Detect failed"))
-                    .addOnCompleteListener(t -> image.close());
-        } catch (Exception e) {
-            image.close();
+    private ImageAnalysis buildAnalysis(DetectorProfiles.Mode mode) {
+        ImageAnalysis ia = new ImageAnalysis.Builder()
+                .setTargetResolution(mode.resolution)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
+        ia.setAnalyzer(exec, pipeline);
+        return ia;
+    }
+
+    /** Liveness done: accurate detector now, analysis rebound once at the identity resolution. */
+    private void switchToIdentityMode() {
+        detectors.setMode(DetectorProfiles.Mode.IDENTITY);
+        session.rebindTrack();   // the accurate client numbers its tracks separately
+        runOnUiThread(() -> {
+            if (provider == null || session.isDone() || isFinishing()) return;
+            try {
+                provider.unbind(analysis);
+                analysis = buildAnalysis(DetectorProfiles.Mode.IDENTITY);
+                provider.bindToLifecycle(this, CameraSelector.DEFAULT_FRONT_CAMERA, analysis);
+            } catch (Exception e) {
+                Log.w(TAG, "analysis rebind failed", e);
+            }
+        });
+    }
+
+    /* ---------------- pipeline callbacks ---------------- */
+
+    /** Detect thread: the session runs liveness and the quality gate and says whether to embed. */
+    @Override
+    public boolean onFace(@NonNull Face face, @NonNull ImageProxy image) {
+        boolean embed = session.onFace(face, image);
+        if (detectors.mode() == DetectorProfiles.Mode.LIVENESS && session.isLivenessPassed()) {
+            switchToIdentityMode();
+        }
+        return embed;
+    }
+
+    @Override
+    public void onNoFace() {
+        if (!session.isDone()) updateHint("No face detected.");
+    }
+
+    /** Inference thread: probe is already L2-normalized. */
+    @Override
+    public void onEmbedded(@NonNull Face face, @NonNull float[] probe) {
+        if (session.isDone()) return;
+        // Check against gallery (one pass: best score + agree count)
+        FaceTemplates t = templates;
+        boolean ok = t != null
+                ? FaceMatcher.acceptForUser(probe, t, model.strongThreshold, model.secondaryThreshold,
+                        MIN_AGREE_REQUIRED, scores)
+                : FaceMatcher.acceptForUser(probe, gallery, model.strongThreshold, model.secondaryThreshold,
+                        MIN_AGREE_REQUIRED, scores);
+        lastBestScore = scores.best;   // for the debug toast
+        session.onScore(face, scores.best, ok);
+    }
+
+    /* ---------------- session callbacks ---------------- */
+
+    @Override
+    public void onHint(@NonNull String hint) {
+        updateHint(hint);
+    }
+
+    @Override
+    public void onOutcome(@NonNull VerificationSession.Outcome outcome) {
+        if (outcome == VerificationSession.Outcome.TRACK_CHANGED) {
+            runOnUiThread(() -> {
+                Toast.makeText(this, "A different face appeared. Try again.", Toast.LENGTH_LONG).show();
+                finish();
+            });
+            return;
         }
+        finishDecision(outcome == VerificationSession.Outcome.ACCEPTED);
     }
 
     private void finishDecision(boolean pass) {
@@ -0,0 +1,213 @@
+package com.example.proffpresenceapp.ui;
+
+import android.Manifest;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.Preview;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+
+import com.example.proffpresenceapp.R;
+import com.example.proffpresenceapp.ui.data.GalleryRepository;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingEngine;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingProcessor;
+import com.example.proffpresenceapp.ui.ml.IdentificationIndex;
+import com.example.proffpresenceapp.ui.ml.ModelDescriptor;
+import com.example.proffpresenceapp.ui.ml.ModelRegistry;
+import com.example.proffpresenceapp.ui.verify.DetectorProfiles;
+import com.example.proffpresenceapp.ui.verify.FrameQualityGate;
+import com.example.proffpresenceapp.ui.verify.TrackCache;
+import com.example.proffpresenceapp.ui.verify.VerificationPipeline;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared entrance tablet: identifies whoever faces the camera against every enrolled gallery
+ * ({@link IdentificationIndex}). A track that identified as the same person on
+ * {@link #CONFIRM_FRAMES} consecutive embeds keeps that identity ({@link TrackCache}); its still
+ * frames then skip the model, and any embed that disagrees drops it again.
+ * <p>
+ * Display only: there is no liveness challenge here, so nothing is written to attendance.
+ */
+public class KioskActivity extends AppCompatActivity implements VerificationPipeline.Listener {
+
+    private static final String TAG = "Kiosk";
+
+    // === Tunables ===
+    private static final int CONFIRM_FRAMES = 2;   // agreeing identifications before a track is bound
+
+    private PreviewView preview;
+    private TextView tvHint;
+
+    private ProcessCameraProvider provider;
+    private ExecutorService exec;
+    private DetectorProfiles detectors;
+    private FaceEmbeddingProcessor embedder;
+    private ModelDescriptor model;
+    private VerificationPipeline pipeline;
+
+    private volatile IdentificationIndex index;
+    private final FrameQualityGate gate = new FrameQualityGate();
+    private final FrameQualityGate.Verdict verdict = new FrameQualityGate.Verdict();
+    private final TrackCache track = new TrackCache();
+
+    // Inference thread only: candidate identity of the current track and its agreeing embeds
+    @Nullable private Integer candidateTrack;
+    @Nullable private String candidate;
+    private int streak = 0;
+
+    private ActivityResultLauncher<String> camPerm;
+
+    @Override
+    protected void onCreate(Bundle b) {
+        super.onCreate(b);
+        setContentView(R.layout.activity_face_recognition);
+
+        preview = findViewById(R.id.previewFr);
+        tvHint  = findViewById(R.id.tvHint);
+
+        exec = Executors.newSingleThreadExecutor();
+        detectors = new DetectorProfiles();
+        detectors.setMode(DetectorProfiles.Mode.IDENTITY);   // landmarks for alignment, every frame
+
+        try {
+            embedder = FaceEmbeddingEngine.get(this);
+            model = embedder.getDescriptor();
+        } catch (Exception e) {
+            Toast.makeText(this, "Model load failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            finish();
+            return;
+        }
+
+        camPerm = registerForActivityResult(
+                new ActivityResultContracts.RequestPermission(),
+                g -> { if (g) loadIndexThenStart(); else finish(); });
+
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                != PackageManager.PERMISSION_GRANTED) {
+            camPerm.launch(Manifest.permission.CAMERA);
+        } else {
+            loadIndexThenStart();
+        }
+    }
+
+    @Override protected void onDestroy() {
+        super.onDestroy();
+        try { if (provider!=null) provider.unbindAll(); } catch (Exception ignored) {}
+        if (pipeline!=null) pipeline.close();
+        if (detectors!=null) detectors.close();
+        if (exec!=null) exec.shutdown();
+    }
+
+    private void loadIndexThenStart() {
+        tvHint.setText("Loading enrolled faces…");
+        GalleryRepository.loadIdentificationIndex(model, ModelRegistry.projection(this, model),
+                new GalleryRepository.IndexCallback() {
+                    @Override public void onLoaded(@NonNull IdentificationIndex i) {
+                        if (isFinishing()) return;
+                        Log.d(TAG, i.identityCount() + " identities, " + i.sampleCount() + " samples");
+                        index = i;
+                        startCamera();
+                    }
+                    @Override public void onError(@NonNull String message) {
+                        Toast.makeText(KioskActivity.this, message, Toast.LENGTH_LONG).show();
+                        finish();
+                    }
+                });
+    }
+
+    private void startCamera() {
+        tvHint.setText("Look at the camera.");
+        ListenableFuture<ProcessCameraProvider> fut = ProcessCameraProvider.getInstance(this);
+        fut.addListener(() -> {
+            try {
+                provider = fut.get();
+                provider.unbindAll();
+
+                Preview p = new Preview.Builder().build();
+                p.setSurfaceProvider(preview.getSurfaceProvider());
+
+                pipeline = new VerificationPipeline(detectors, embedder, this);
+                ImageAnalysis ia = new ImageAnalysis.Builder()
+                        .setTargetResolution(DetectorProfiles.Mode.IDENTITY.resolution)
+                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                        .build();
+                ia.setAnalyzer(exec, pipeline);
+
+                provider.bindToLifecycle(this, CameraSelector.DEFAULT_FRONT_CAMERA, p, ia);
+            } catch (Exception e) {
+                Toast.makeText(this, "Camera start failed: "+e.getMessage(), Toast.LENGTH_LONG).show();
+                finish();
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
+
+    /* ---------------- pipeline callbacks ---------------- */
+
+    /** Detect thread: a bound track that has not moved keeps its identity without an embed. */
+    @Override
+    public boolean onFace(@NonNull Face face, @NonNull ImageProxy image) {
+        String uid = track.identityFor(face);
+        if (uid != null && track.shouldReuse(face)) {
+            updateHint("Welcome, " + uid);
+            return false;
+        }
+        if (!gate.check(face, image, verdict).ok) {
+            if (uid == null) updateHint(verdict.reason.hint);
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void onNoFace() {
+        updateHint("Look at the camera.");
+    }
+
+    /** Inference thread: probe is already L2-normalized. */
+    @Override
+    public void onEmbedded(@NonNull Face face, @NonNull float[] probe) {
+        IdentificationIndex idx = index;
+        if (idx == null) return;
+        IdentificationIndex.Match m = idx.identify(probe);
+        track.onEmbedded(face, m != null ? m.score : -2f, m != null);
+
+        Integer id = face.getTrackingId();
+        if (!Objects.equals(id, candidateTrack)) { candidateTrack = id; candidate = null; streak = 0; }
+        if (m == null || !m.uid.equals(candidate)) {
+            candidate = m != null ? m.uid : null;
+            streak = m != null ? 1 : 0;
+            track.clearIdentity();
+        } else {
+            streak++;
+        }
+
+        if (candidate != null && streak >= CONFIRM_FRAMES) {
+            track.bindIdentity(candidate, m.score);
+            updateHint("Welcome, " + candidate);
+        } else {
+            updateHint(m == null ? "Not recognized." : "Hold still…");
+        }
+    }
+
+    private void updateHint(String s) {
+        runOnUiThread(() -> tvHint.setText(s));
+    }
+}
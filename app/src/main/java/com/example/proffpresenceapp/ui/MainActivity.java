@@ -19,7 +19,10 @@ import androidx.core.app.ActivityCompat;
 
 import com.example.proffpresenceapp.R;
 import com.example.proffpresenceapp.ui.core.NotificationHelper;
+import com.example.proffpresenceapp.ui.data.EnrollmentCommitter;
+import com.example.proffpresenceapp.ui.data.GalleryMigration;
 import com.example.proffpresenceapp.ui.geo.GeofenceReceiver;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingEngine;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingClient;
@@ -46,7 +49,7 @@ public class MainActivity extends AppCompatActivity {
     private static final int GEOFENCE_REQ_CODE = 1000;
 
     private TextView tvHello;
-    private Button btnTestDb, btnArm, btnEnrollFace, btnOpenLiveness;
+    private Button btnTestDb, btnArm, btnEnrollFace, btnOpenLiveness, btnKiosk;
 
     private GeofencingClient geofencingClient;
     private FusedLocationProviderClient fusedLoc;
@@ -82,6 +85,7 @@ public class MainActivity extends AppCompatActivity {
         btnArm          = findViewById(R.id.btnArm);
         btnEnrollFace   = findViewById(R.id.btnEnrollFace);
         btnOpenLiveness = findViewById(R.id.btnOpenLiveness);
+        btnKiosk        = findViewById(R.id.btnKiosk);
 
         FirebaseUser u = FirebaseAuth.getInstance().getCurrentUser();
         if (u != null) {
@@ -94,6 +98,13 @@ public class MainActivity extends AppCompatActivity {
         // Ensure the notifications channel exists (Android 8.0+)
         NotificationHelper.ensureChannel(this);
 
+        // Map + warm the face model in the background; verification/enrollment reuse it
+        FaceEmbeddingEngine.warmUpAsync(this);
+        // Opt-in: move this user's gallery to a new model version from the kept crops
+        GalleryMigration.runIfNeeded(this, null);
+        // An enrollment that was still uploading when the app died
+        EnrollmentCommitter.resumePending(this, null);
+
         setupPermissionLaunchers();
         loadCampusFromDB();
         ensureProfessorNode();
@@ -104,6 +115,8 @@ public class MainActivity extends AppCompatActivity {
                 startActivity(new Intent(this, RegisterFaceActivity.class)));
         btnOpenLiveness.setOnClickListener(v ->
                 startActivity(new Intent(this, LivenessActivity.class)));
+        btnKiosk.setOnClickListener(v ->
+                startActivity(new Intent(this, KioskActivity.class)));
     }
 
     /** Make sure the professor row at /professors/<uid> has an email */
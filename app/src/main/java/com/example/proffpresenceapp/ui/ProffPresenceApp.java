@@ -0,0 +1,17 @@
+package com.example.proffpresenceapp.ui;
+
+import android.app.Application;
+
+import com.example.proffpresenceapp.ui.data.ClientRollout;
+import com.example.proffpresenceapp.ui.platform.AndroidPlatform;
+
+/** Process entry point (activities and the geofence receiver alike): wires the core module. */
+public class ProffPresenceApp extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        AndroidPlatform.install();
+        ClientRollout.refresh(this);
+    }
+}
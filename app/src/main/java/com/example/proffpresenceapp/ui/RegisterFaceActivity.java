@@ -1,9 +1,11 @@
 package com.example.proffpresenceapp.ui;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
 import android.util.Size;
 import android.widget.Button;
 import android.widget.TextView;
@@ -25,12 +27,16 @@ import androidx.core.content.ContextCompat;
 
 import com.example.proffpresenceapp.R;
 import com.example.proffpresenceapp.ui.core.NotificationHelper;
+import com.example.proffpresenceapp.ui.data.EnrollmentCommitter;
+import com.example.proffpresenceapp.ui.data.FaceCropVault;
+import com.example.proffpresenceapp.ui.ml.FaceAligner;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingEngine;
 import com.example.proffpresenceapp.ui.ml.FaceEmbeddingProcessor;
-import com.example.proffpresenceapp.ui.ml.FaceUtils;
+import com.example.proffpresenceapp.ui.ml.ModelDescriptor;
+import com.example.proffpresenceapp.ui.verify.EnrollmentCollector;
+import com.example.proffpresenceapp.ui.verify.FrameQualityGate;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.Face;
 import com.google.mlkit.vision.face.FaceDetection;
@@ -38,17 +44,17 @@ import com.google.mlkit.vision.face.FaceDetector;
 import com.google.mlkit.vision.face.FaceDetectorOptions;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
- * Enrollment: capture 5 face samples -> save to RTDB -> flip professors/{uid} to enrolled.
+ * Enrollment: collect 5 face samples from one continuously bound camera session -> save to RTDB
+ * -> flip professors/{uid} to enrolled.
  */
 public class RegisterFaceActivity extends AppCompatActivity {
 
+    private static final String TAG = "RegisterFace";
     private static final int TARGET_SAMPLES = 5;
 
     private PreviewView preview;
@@ -56,17 +62,27 @@ public class RegisterFaceActivity extends AppCompatActivity {
     private TextView tvSteps;
 
     private final List<float[]> samples = new ArrayList<>(TARGET_SAMPLES);
+    private final List<int[]> crops = new ArrayList<>(TARGET_SAMPLES);   // only if the crop vault is on
+    private FaceAligner aligner;          // sized for the active model
+    private float[] faceTensor;
 
     private ExecutorService cameraExecutor;
     private ProcessCameraProvider cameraProvider;
-    private ImageAnalysis idleAnalysis;
-    private ImageAnalysis oneShotAnalysis;
+    private ImageAnalysis analysis;       // bound once, for the whole enrollment
 
     private FaceDetector detector;
     private FaceEmbeddingProcessor embedder;
 
-    private boolean saving = false;     // prevents double “save”
-    private boolean analyzing = false;  // prevents double-frame per tap
+    // Auto mode: after "Start", every good frame of the tracked face becomes a candidate and the
+    // best TARGET_SAMPLES (quality + pose spread) are kept. Manual mode: one good frame per tap.
+    private static final boolean AUTO_CAPTURE = true;
+    private final FrameQualityGate gate = new FrameQualityGate();
+    private final FrameQualityGate.Verdict verdict = new FrameQualityGate.Verdict();
+    private final EnrollmentCollector collector = new EnrollmentCollector(TARGET_SAMPLES);
+
+    private volatile boolean saving = false;            // prevents double “save”
+    private volatile boolean collecting = false;        // auto mode running
+    private volatile boolean captureRequested = false;  // manual mode: next good frame
 
     private ActivityResultLauncher<String> camPerm;
 
@@ -84,13 +100,16 @@ public class RegisterFaceActivity extends AppCompatActivity {
         detector = FaceDetection.getClient(
                 new FaceDetectorOptions.Builder()
                         .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
-                        .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_NONE)
+                        .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)   // for alignment
+                        .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)   // eyes-open gate
                         .enableTracking()
                         .build()
         );
 
         try {
-            embedder = new FaceEmbeddingProcessor(getAssets());
+            embedder = FaceEmbeddingEngine.get(this);   // shared, usually pre-warmed
+            aligner = new FaceAligner(embedder.getInputSize());
+            faceTensor = new float[embedder.getInputSize() * embedder.getInputSize() * 3];
         } catch (Exception e) {
             Toast.makeText(this, "Model load failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
             finish();
@@ -114,27 +133,28 @@ public class RegisterFaceActivity extends AppCompatActivity {
             startCamera();
         }
 
-        btnCapture.setOnClickListener(v -> captureOne());
+        if (AUTO_CAPTURE) btnCapture.setText("Start");
+        btnCapture.setOnClickListener(v -> onCaptureTapped());
         updateCounter();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        try { if (idleAnalysis != null) idleAnalysis.clearAnalyzer(); } catch (Exception ignored) {}
-        try { if (oneShotAnalysis != null) oneShotAnalysis.clearAnalyzer(); } catch (Exception ignored) {}
+        try { if (analysis != null) analysis.clearAnalyzer(); } catch (Exception ignored) {}
         try { if (cameraProvider != null) cameraProvider.unbindAll(); } catch (Exception ignored) {}
         try { if (detector != null) detector.close(); } catch (Exception ignored) {}
-        try { if (embedder != null) embedder.close(); } catch (Exception ignored) {}
         if (cameraExecutor != null) cameraExecutor.shutdown();
     }
 
     private void updateCounter() {
-        tvSteps.setText("Captured " + samples.size() + " / " + TARGET_SAMPLES);
+        if (collecting) tvSteps.setText("Collected " + collector.count() + " frames");
+        else tvSteps.setText("Captured " + samples.size() + " / " + TARGET_SAMPLES);
     }
 
     /* ---------------- Camera binding ---------------- */
 
+    /** Bind preview + analysis once; frames are ignored until a capture is armed. */
     @OptIn(markerClass = ExperimentalGetImage.class)
     private void startCamera() {
         ListenableFuture<ProcessCameraProvider> fut = ProcessCameraProvider.getInstance(this);
@@ -146,17 +166,17 @@ public class RegisterFaceActivity extends AppCompatActivity {
                 Preview p = new Preview.Builder().build();
                 p.setSurfaceProvider(preview.getSurfaceProvider());
 
-                idleAnalysis = new ImageAnalysis.Builder()
+                analysis = new ImageAnalysis.Builder()
                         .setTargetResolution(new Size(640, 480))
                         .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                         .build();
-                idleAnalysis.setAnalyzer(cameraExecutor, ImageProxy::close);
+                analysis.setAnalyzer(cameraExecutor, this::analyzeFrame);
 
                 cameraProvider.bindToLifecycle(
                         this,
                         CameraSelector.DEFAULT_FRONT_CAMERA,
                         p,
-                        idleAnalysis
+                        analysis
                 );
 
             } catch (Exception e) {
@@ -166,161 +186,165 @@ public class RegisterFaceActivity extends AppCompatActivity {
         }, ContextCompat.getMainExecutor(this));
     }
 
-    /* ------------- One-tap → one frame → one vector ------------- */
-
-    @OptIn(markerClass = ExperimentalGetImage.class)
-    private void captureOne() {
+    private void onCaptureTapped() {
         if (saving) return;
-        if (samples.size() >= TARGET_SAMPLES) return;
         if (cameraProvider == null) {
             Toast.makeText(this, "Camera not ready", Toast.LENGTH_SHORT).show();
             return;
         }
-        analyzing = false; // reset flag for this capture
-
-        oneShotAnalysis = new ImageAnalysis.Builder()
-                .setTargetResolution(new Size(640, 480))
-                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                .build();
-
-        oneShotAnalysis.setAnalyzer(cameraExecutor, this::analyzeOneFrame);
-
-        cameraProvider.unbindAll();
-        Preview p = new Preview.Builder().build();
-        p.setSurfaceProvider(preview.getSurfaceProvider());
-
-        cameraProvider.bindToLifecycle(
-                this,
-                CameraSelector.DEFAULT_FRONT_CAMERA,
-                p,
-                oneShotAnalysis
-        );
+        if (AUTO_CAPTURE) {
+            samples.clear();
+            crops.clear();
+            collector.reset();
+            collecting = true;
+            btnCapture.setEnabled(false);
+            updateCounter();
+        } else if (samples.size() < TARGET_SAMPLES) {
+            captureRequested = true;
+        }
     }
 
+    /* ------------- Analyzer: detect -> gate -> align + embed ------------- */
+
     @OptIn(markerClass = ExperimentalGetImage.class)
-    private void analyzeOneFrame(@NonNull ImageProxy image) {
+    private void analyzeFrame(@NonNull ImageProxy image) {
+        if (saving || !(collecting || captureRequested) || image.getImage() == null) {
+            image.close();
+            return;
+        }
         try {
-            if (image.getImage() == null) { image.close(); return; }
-
-            // Debounce: ensure exactly one frame processed per tap
-            if (analyzing) { image.close(); return; }
-            analyzing = true;
-
-            // Disarm analyzer soon to avoid multiple callbacks
-            if (oneShotAnalysis != null) oneShotAnalysis.clearAnalyzer();
-
             int rot = image.getImageInfo().getRotationDegrees();
             InputImage ii = InputImage.fromMediaImage(image.getImage(), rot);
 
+            // Listeners on the analyzer thread; the frame stays open (and the next one queued
+            // behind it) until this one is fully processed.
             detector.process(ii)
-                    .addOnSuccessListener(faces -> {
-                        if (faces == null || faces.isEmpty()) return;
-
-                        Bitmap frame = FaceUtils.imageProxyToBitmap(image);
-                        if (frame == null) {
-                            runOnUiThread(() -> Toast.makeText(this, "Frame convert failed", Toast.LENGTH_SHORT).show());
-                            return;
-                        }
-
-                        Face f = faces.get(0);
-                        Bitmap faceBmp = FaceUtils.cropAlignResize(frame, f, FaceEmbeddingProcessor.INPUT_SIZE);
-                        if (faceBmp == null) return;
-
-                        float[][][][] in = FaceUtils.bitmapToInput(faceBmp);
-                        float[] vec = embedder.embed(in);
-                        if (vec == null) return;
-
-                        samples.add(vec);
-                        runOnUiThread(() -> {
-                            Toast.makeText(this, "Sample " + samples.size() + " captured", Toast.LENGTH_SHORT).show();
-                            updateCounter();
-
-                            if (samples.size() >= TARGET_SAMPLES) {
-                                saving = true;
-                                btnCapture.setEnabled(false);
-                                try { if (cameraProvider != null) cameraProvider.unbindAll(); } catch (Exception ignored) {}
-                                saveAllToFirebase();   // <- STEP 3: save & enroll
-                            } else {
-                                startCamera(); // go back to idle preview
-                            }
-                        });
-                    })
-                    .addOnFailureListener(e ->
-                            runOnUiThread(() ->
-                                    Toast.makeText(this, "Detect failed: " + e.getMessage(), Toast.LENGTH_SHORT).show()))
-                    .addOnCompleteListener(t -> image.close());
-
+                    .addOnSuccessListener(cameraExecutor, faces -> onFaces(faces, image))
+                    .addOnFailureListener(cameraExecutor, e -> Log.w(TAG, "Detect failed: " + e.getMessage()))
+                    .addOnCompleteListener(cameraExecutor, t -> image.close());
         } catch (Exception e) {
             image.close();
         }
     }
 
-    /** STEP 3: push embeddings and atomically flip professors/{uid} to enrolled */
+    private void onFaces(List<Face> faces, ImageProxy image) {
+        if (saving) return;
+        if (faces == null || faces.size() != 1) {
+            setHint(faces == null || faces.isEmpty() ? "No face detected." : "Only one face, please.");
+            return;
+        }
+        Face f = faces.get(0);
+        if (!gate.check(f, image, verdict).ok) { setHint(verdict.reason.hint); return; }
+
+        long now = SystemClock.elapsedRealtime();
+        if (collecting && !collector.wants(f, now)) return;
+
+        // Same landmark-aligned preprocessing as verification
+        ModelDescriptor md = embedder.getDescriptor();
+        int[] crop = FaceCropVault.isEnabled(this) ? new int[md.inputSize * md.inputSize] : null;
+        if (!aligner.alignToTensor(image, f, md.mean, md.std, faceTensor, crop, md.aligned)) return;
+        if (md.aligned && !aligner.lastAligned()) return;
+
+        // Fresh array per sample: candidates are kept until upload
+        float[] vec = embedder.embedTensor(faceTensor, new float[embedder.getOutputLength()]);
+        if (vec == null) return;
+
+        if (collecting) {
+            collector.add(f, verdict, vec, crop, now);
+            if (collector.isComplete(now)) {
+                collecting = false;
+                for (EnrollmentCollector.Candidate c : collector.select()) {
+                    samples.add(c.embedding);
+                    if (c.crop != null) crops.add(c.crop);
+                }
+                runOnUiThread(this::finishCapture);
+            } else {
+                String hint = collector.hint();
+                runOnUiThread(() -> {
+                    updateCounter();
+                    if (hint != null) tvSteps.append("\n" + hint);
+                });
+            }
+        } else if (captureRequested) {
+            captureRequested = false;
+            samples.add(vec);
+            if (crop != null) crops.add(crop);
+            runOnUiThread(() -> {
+                Toast.makeText(this, "Sample " + samples.size() + " captured", Toast.LENGTH_SHORT).show();
+                updateCounter();
+                if (samples.size() >= TARGET_SAMPLES) finishCapture();
+            });
+        }
+    }
+
+    /** Samples complete: stop the camera and upload. */
+    private void finishCapture() {
+        if (saving) return;
+        saving = true;
+        btnCapture.setEnabled(false);
+        updateCounter();
+        try { if (cameraProvider != null) cameraProvider.unbindAll(); } catch (Exception ignored) {}
+        saveAllToFirebase();   // <- STEP 3: save & enroll
+    }
+
+    /** Upload failed: start over with a fresh sample set. */
+    private void restartCapture() {
+        saving = false;
+        collecting = false;
+        samples.clear();
+        crops.clear();
+        collector.reset();
+        btnCapture.setEnabled(true);
+        updateCounter();
+        startCamera();
+    }
+
+    private void setHint(String hint) {
+        if (!collecting) return;
+        runOnUiThread(() -> {
+            updateCounter();
+            tvSteps.append("\n" + hint);
+        });
+    }
+
+    /** STEP 3: write the embeddings and flip professors/{uid} to enrolled, atomically */
     private void saveAllToFirebase() {
         String uid = FirebaseAuth.getInstance().getCurrentUser() != null
                 ? FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
 
         if (uid == null) {
             Toast.makeText(this, "Not signed in.", Toast.LENGTH_LONG).show();
-            saving = false;
-            btnCapture.setEnabled(true);
-            startCamera();
+            restartCapture();
             return;
         }
 
-        long now = System.currentTimeMillis();
-        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
-        DatabaseReference embRef = root.child("faceEmbeddings").child(uid);
-
-        // 1) Push all samples (requires professors/{uid}/allowEnroll === true)
-        //    We push sequentially to surface any permission errors early.
-        pushNextEmbedding(embRef, 0, now, new Runnable() {
-            @Override public void run() {
-                // 2) Atomic update on professors/{uid} to satisfy your write rule:
-                //    allowEnroll: true -> false, enrollmentStatus: "pending" -> "enrolled"
-                DatabaseReference profRef = root.child("professors").child(uid);
-                Map<String,Object> upd = new HashMap<>();
-                upd.put("allowEnroll", false);
-                upd.put("enrollmentStatus", "enrolled");
-
-                profRef.updateChildren(upd)
-                        .addOnSuccessListener(unused -> {
-                            NotificationHelper.showSimple(
-                                    RegisterFaceActivity.this,
-                                    "Enrollment complete", "You're enrolled.", 2024);
-                            finish();
-                        })
-                        .addOnFailureListener(e -> {
-                            saving = false;
-                            btnCapture.setEnabled(true);
-                            Toast.makeText(RegisterFaceActivity.this,
-                                    "Enroll flip failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                            startCamera();
-                        });
+        // Rows + blob + enroll flip in one update (requires professors/{uid}/allowEnroll === true)
+        EnrollmentCommitter.commit(this, uid, samples, embedder.getDescriptor().version,
+                new EnrollmentCommitter.Callback() {
+            @Override public void onSuccess() {
+                keepCrops(uid);
+                NotificationHelper.showSimple(
+                        RegisterFaceActivity.this,
+                        "Enrollment complete", "You're enrolled.", 2024);
+                finish();
+            }
+            @Override public void onError(@NonNull String message) {
+                if (isFinishing() || isDestroyed()) return;
+                Toast.makeText(RegisterFaceActivity.this, message, Toast.LENGTH_LONG).show();
+                restartCapture();
             }
         });
     }
 
-    /** Push embeddings one-by-one to catch any RTDB permission errors clearly. */
-    private void pushNextEmbedding(DatabaseReference embRef, int index, long ts, Runnable onAllDone) {
-        if (index >= samples.size()) {
-            onAllDone.run();
-            return;
-        }
-        float[] vec = samples.get(index);
-        String b64 = FaceUtils.floatsToBase64(vec);
-
-        Map<String,Object> row = new HashMap<>();
-        row.put("vec", b64);
-        row.put("ts", ts);
-
-        embRef.push().setValue(row)
-                .addOnSuccessListener(unused -> pushNextEmbedding(embRef, index + 1, ts, onAllDone))
-                .addOnFailureListener(e -> {
-                    saving = false;
-                    btnCapture.setEnabled(true);
-                    Toast.makeText(this, "Upload failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                    startCamera();
-                });
+    /** Opt-in: keep the aligned crops (encrypted, on this device) for future model migrations. */
+    private void keepCrops(String uid) {
+        if (crops.size() != samples.size() || crops.isEmpty()) return;
+        List<int[]> copy = new ArrayList<>(crops);
+        int size = embedder.getInputSize();
+        Context app = getApplicationContext();
+        new Thread(() -> {
+            try { FaceCropVault.save(app, uid, copy, size); }
+            catch (Exception e) { Log.w(TAG, "Crop vault save failed: " + e.getMessage()); }
+        }, "crop-vault").start();
     }
 }
@@ -6,17 +6,16 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.example.proffpresenceapp.ui.attendance.AttendanceSessions;
+import com.example.proffpresenceapp.ui.platform.Platform;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * Attendance session helper.
@@ -27,6 +26,7 @@ import java.util.Map;
  * Data model:
  * presenceOpen/<uid> = { date, key, start }
  * attendance/<date>/<uid>/<key> = { start, end?, durationMs?, status, method, geofenceId, timestamp }
+ * The rows themselves come from {@link AttendanceSessions}; this class only reads and writes them.
  */
 public final class AttendanceHelper {
 
@@ -41,10 +41,17 @@ public final class AttendanceHelper {
         return FirebaseDatabase.getInstance().getReference();
     }
 
-    /** Local day yyyy-MM-dd (matches the dashboard). */
-    private static String localDay() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-        return sdf.format(new Date());
+    private static long now() {
+        return Platform.clock().nowMs();
+    }
+
+    private static String localDay(long now) {
+        return AttendanceSessions.dayKey(now, TimeZone.getDefault());
+    }
+
+    private static AttendanceSessions.Open open(DataSnapshot s) {
+        return new AttendanceSessions.Open(s.child("date").getValue(), s.child("key").getValue(),
+                s.child("start").getValue(Long.class));
     }
 
     private static DatabaseReference presenceRef(String uid) {
@@ -59,36 +66,23 @@ public final class AttendanceHelper {
 
     /** Start/resume the user's open session for today. Safe to call multiple times. */
     public static void onEnter(@NonNull String uid) {
-        final long now = System.currentTimeMillis();
-        final String today = localDay();
+        final long now = now();
+        final String today = localDay(now);
 
         presenceRef(uid).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override public void onDataChange(@NonNull DataSnapshot snap) {
-                // If there's an open session AND same date, do nothing.
-                if (snap.exists()) {
-                    String date = String.valueOf(snap.child("date").getValue());
-                    if (today.equals(date)) {
-                        Log.d(TAG, "onEnter: already open for today.");
-                        return;
-                    }
+                if (!AttendanceSessions.shouldOpen(snap.exists() ? open(snap) : null, today)) {
+                    Log.d(TAG, "onEnter: already open for today.");
+                    return;
                 }
 
                 // Create new attendance row with 'start'
                 DatabaseReference rowRef = attendanceDayRef(today, uid).push();
-                Map<String, Object> row = new HashMap<>();
-                row.put("start", now);
-                row.put("status", "present");
-                row.put("method", "geofence"); // liveness/FR can upgrade this later
-                row.put("geofenceId", GEOFENCE_ID);
-                row.put("timestamp", now);
-
-                rowRef.setValue(row).addOnCompleteListener(t -> {
+                String key = rowRef.getKey();
+                if (key == null) return;
+                rowRef.setValue(AttendanceSessions.startRow(now, GEOFENCE_ID)).addOnCompleteListener(t -> {
                     if (t.isSuccessful()) {
-                        Map<String, Object> open = new HashMap<>();
-                        open.put("date", today);
-                        open.put("key", rowRef.getKey());
-                        open.put("start", now);
-                        presenceRef(uid).setValue(open);
+                        presenceRef(uid).setValue(AttendanceSessions.openPointer(today, key, now));
                         Log.d(TAG, "onEnter: session opened " + rowRef.getKey());
                     } else {
                         Log.w(TAG, "onEnter: failed to write start", t.getException());
@@ -112,24 +106,22 @@ public final class AttendanceHelper {
     public static void writePresent(@Nullable Context context,
                                     @NonNull String uid,
                                     @NonNull String method) {
-        final String today = localDay();
+        final long now = now();
+        final String today = localDay(now);
         presenceRef(uid).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override public void onDataChange(@NonNull DataSnapshot s) {
                 if (!s.exists()) {
                     Log.w(TAG, "writePresent: no open session for uid=" + uid);
                     return;
                 }
-                String key = String.valueOf(s.child("key").getValue());
-                if (key == null || key.isEmpty()) {
+                AttendanceSessions.Open open = open(s);
+                if (!open.hasKey()) {
                     Log.w(TAG, "writePresent: open session missing key");
                     return;
                 }
 
-                Map<String, Object> upd = new HashMap<>();
-                upd.put("method", method);
-                upd.put("timestamp", System.currentTimeMillis());
-
-                attendanceDayRef(today, uid).child(key).updateChildren(upd)
+                Map<String, Object> upd = AttendanceSessions.presentUpdate(method, now);
+                attendanceDayRef(today, uid).child(open.key).updateChildren(upd)
                         .addOnFailureListener(e ->
                                 Log.w(TAG, "writePresent: update failed: " + e.getMessage()));
             }
@@ -144,8 +136,7 @@ public final class AttendanceHelper {
      * Safe to call multiple times.
      */
     public static void onExit(@NonNull String uid) {
-        final long end = System.currentTimeMillis();
-        final String today = localDay();
+        final long end = now();
 
         presenceRef(uid).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override public void onDataChange(@NonNull DataSnapshot s) {
@@ -153,26 +144,18 @@ public final class AttendanceHelper {
                     Log.d(TAG, "onExit: no open session; nothing to do.");
                     return;
                 }
-                String key = String.valueOf(s.child("key").getValue());
-                Long start = s.child("start").getValue(Long.class);
-                String date = String.valueOf(s.child("date").getValue());
-
-                if (key == null || start == null) {
+                AttendanceSessions.Open open = open(s);
+                if (!open.isClosable()) {
                     Log.w(TAG, "onExit: invalid open session");
                     presenceRef(uid).removeValue();
                     return;
                 }
 
-                // If the open session was from a previous day, we still close it in that day bucket.
-                final String bucketDate = today.equals(date) ? today : date;
-
-                long duration = Math.max(0L, end - start);
-
-                Map<String, Object> upd = new HashMap<>();
-                upd.put("end", end);
-                upd.put("durationMs", duration);
-
-                attendanceDayRef(bucketDate, uid).child(key).updateChildren(upd)
+                // A session from a previous day is still closed in that day's bucket
+                Map<String, Object> upd = AttendanceSessions.closeUpdate(open.start, end);
+                Object duration = upd.get("durationMs");
+                String key = open.key;
+                attendanceDayRef(open.date, uid).child(key).updateChildren(upd)
                         .addOnCompleteListener(t -> {
                             presenceRef(uid).removeValue();
                             if (t.isSuccessful()) {
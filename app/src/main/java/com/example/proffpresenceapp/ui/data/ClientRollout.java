@@ -0,0 +1,46 @@
+package com.example.proffpresenceapp.ui.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.proffpresenceapp.ui.ml.EmbeddingCodec;
+import com.google.firebase.database.FirebaseDatabase;
+
+/**
+ * Oldest client build still in use, published by operators at config/minClientVersion once
+ * older builds are retired. Storage formats that older builds cannot read are gated on it;
+ * the last value seen is kept locally, and until one has been seen everything stays compatible.
+ */
+public final class ClientRollout {
+    private static final String TAG = "ClientRollout";
+    private static final String PREF = "client_rollout";
+    private static final String KEY_MIN_VERSION = "min_client_version";
+
+    private ClientRollout() {}
+
+    /** Fetch config/minClientVersion in the background; the next writes use it. */
+    public static void refresh(@NonNull Context ctx) {
+        Context app = ctx.getApplicationContext();
+        FirebaseDatabase.getInstance().getReference("config").child("minClientVersion").get()
+                .addOnSuccessListener(s -> {
+                    Long v = s.getValue(Long.class);
+                    if (v == null) return;
+                    app.getSharedPreferences(PREF, Context.MODE_PRIVATE).edit()
+                            .putInt(KEY_MIN_VERSION, v.intValue()).apply();
+                })
+                .addOnFailureListener(e -> Log.w(TAG, "minClientVersion: " + e.getMessage()));
+    }
+
+    public static int minClientVersion(@NonNull Context ctx) {
+        return ctx.getApplicationContext().getSharedPreferences(PREF, Context.MODE_PRIVATE)
+                .getInt(KEY_MIN_VERSION, 0);
+    }
+
+    /** dtype for new faceEmbeddings rows. */
+    @NonNull
+    public static EmbeddingCodec.Dtype rowDtype(@NonNull Context ctx) {
+        return EmbeddingCodec.rowDtype(minClientVersion(ctx));
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.proffpresenceapp.ui.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.proffpresenceapp.ui.ml.EmbeddingCodec;
+import com.example.proffpresenceapp.ui.ml.GalleryBlob;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The one enrollment writer: every sample row, the packed gallery blob and the
+ * allowEnroll/enrollmentStatus flip go out in a single multi-path updateChildren, so the server
+ * either has the whole gallery or none of it.
+ * <ul>
+ *   <li>Row keys are &lt;sessionId&gt;_&lt;i&gt;, so re-sending the same session overwrites instead of
+ *       adding rows.</li>
+ *   <li>No retry loop: while offline the database client queues the write and sends it itself,
+ *       so a failure callback means the server rejected it, which a resend would not change.
+ *       That queue lives in memory (no disk persistence), so the session is kept in prefs until
+ *       it lands and {@link #resumePending} re-sends it after a restart. The kept samples are
+ *       sealed with {@link FaceCropVault}'s Keystore key.</li>
+ *   <li>The flip records professors/&lt;uid&gt;/enrollmentSession. A retry rejected by the rules
+ *       (allowEnroll already false) is a success if that is our session.</li>
+ * </ul>
+ */
+public final class EnrollmentCommitter {
+    private static final String TAG = "EnrollmentCommitter";
+
+    private static final String PREF = "enroll_commit";
+    private static final String KEY_SESSION = "session.";   // + uid
+    private static final String KEY_BLOB = "blob.";         // + uid, sealed f32 GalleryBlob of the samples
+
+    private EnrollmentCommitter() {}
+
+    public interface Callback {
+        void onSuccess();
+        void onError(@NonNull String message);
+    }
+
+    /** Commit {@code samples} (all produced by {@code modelVersion}) as {@code uid}'s gallery. */
+    public static void commit(@NonNull Context ctx, @NonNull String uid, @NonNull List<float[]> samples,
+                              @NonNull String modelVersion, @NonNull Callback cb) {
+        if (samples.isEmpty()) { cb.onError("No samples"); return; }
+        Context app = ctx.getApplicationContext();
+        String session = FirebaseDatabase.getInstance().getReference().push().getKey();
+        if (session == null) { cb.onError("No session id"); return; }
+
+        byte[] blob = GalleryBlob.encode(samples, samples.get(0).length, EmbeddingCodec.Dtype.F32, modelVersion);
+        try {
+            prefs(app).edit()
+                    .putString(KEY_SESSION + uid, session)
+                    .putString(KEY_BLOB + uid, GalleryBlob.toBase64(FaceCropVault.seal(blob, uid)))
+                    .apply();
+        } catch (GeneralSecurityException | IOException e) {
+            Log.w(TAG, "Not kept for resume: " + e.getMessage());   // this send still goes out
+        }
+        attempt(app, uid, session, new ArrayList<>(samples), modelVersion, cb);
+    }
+
+    /** Re-send the signed-in user's enrollment if an earlier one never landed (app start). */
+    public static void resumePending(@NonNull Context ctx, @Nullable Callback cb) {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) return;
+        Context app = ctx.getApplicationContext();
+        String uid = user.getUid();
+        SharedPreferences sp = prefs(app);
+        String session = sp.getString(KEY_SESSION + uid, null);
+        byte[] sealed = GalleryBlob.fromBase64(sp.getString(KEY_BLOB + uid, null));
+        if (session == null || sealed == null) return;
+        byte[] blob;
+        try {
+            blob = FaceCropVault.open(sealed, uid);
+        } catch (GeneralSecurityException | IOException e) {
+            Log.w(TAG, "Dropping unreadable pending enrollment: " + e.getMessage());
+            clearPending(app, uid);
+            return;
+        }
+
+        GalleryBlob.Header h = GalleryBlob.readHeader(blob, new GalleryBlob.Header());
+        if (h == null || h.count == 0) { clearPending(app, uid); return; }
+        float[] all = new float[h.count * h.dim];
+        GalleryBlob.decodeInto(blob, h, all);
+        List<float[]> samples = new ArrayList<>(h.count);
+        for (int i = 0; i < h.count; i++) {
+            float[] v = new float[h.dim];
+            System.arraycopy(all, i * h.dim, v, 0, h.dim);
+            samples.add(v);
+        }
+        Log.i(TAG, "Resuming enrollment " + session);
+        attempt(app, uid, session, samples, h.model, cb != null ? cb : new Callback() {
+            @Override public void onSuccess() { }
+            @Override public void onError(@NonNull String message) { Log.w(TAG, message); }
+        });
+    }
+
+    /** The whole enrollment as one multi-path update relative to the database root. */
+    @NonNull
+    static Map<String, Object> buildUpdate(@NonNull String uid, @NonNull String session,
+                                           @NonNull List<float[]> samples, @NonNull String modelVersion,
+                                           @NonNull EmbeddingCodec.Dtype rowDtype) {
+        Map<String, Object> upd = new HashMap<>();
+        for (int i = 0; i < samples.size(); i++) {
+            String k = "faceEmbeddings/" + uid + "/" + session + "_" + i + "/";
+            upd.put(k + "vec", EmbeddingCodec.encode(samples.get(i), rowDtype));
+            upd.put(k + "dtype", rowDtype.tag);
+            upd.put(k + "model", modelVersion);
+            upd.put(k + "ts", ServerValue.TIMESTAMP);
+        }
+        upd.put("faceGalleries/" + uid, GalleryBlob.toBase64(GalleryBlob.encode(
+                samples, samples.get(0).length, EmbeddingCodec.BLOB_DTYPE, modelVersion)));
+
+        // Rules: allowEnroll true -> false, enrollmentStatus "pending" -> "enrolled"
+        String p = "professors/" + uid + "/";
+        upd.put(p + "allowEnroll", false);
+        upd.put(p + "enrollmentStatus", "enrolled");
+        upd.put(p + "enrollmentSession", session);
+        upd.put(p + "galleryModel", modelVersion);
+        upd.put(p + "galleryVersion", ServerValue.TIMESTAMP);   // invalidates on-device caches
+        return upd;
+    }
+
+    private static void attempt(Context app, String uid, String session, List<float[]> samples,
+                                String modelVersion, Callback cb) {
+        FirebaseDatabase.getInstance().getReference()
+                .updateChildren(buildUpdate(uid, session, samples, modelVersion, ClientRollout.rowDtype(app)))
+                .addOnSuccessListener(unused -> {
+                    clearPending(app, uid);
+                    cb.onSuccess();
+                })
+                .addOnFailureListener(e -> {
+                    String msg = String.valueOf(e.getMessage());
+                    if (msg.contains("Permission denied")) {
+                        checkCommitted(app, uid, session, msg, cb);
+                    } else {
+                        cb.onError("Enrollment upload failed: " + msg);   // stays pending for resumePending
+                    }
+                });
+    }
+
+    /** Rejected by the rules: fine if an earlier send of this very session already landed. */
+    private static void checkCommitted(Context app, String uid, String session, String msg, Callback cb) {
+        FirebaseDatabase.getInstance().getReference("professors").child(uid).child("enrollmentSession")
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override public void onDataChange(@NonNull DataSnapshot s) {
+                        clearPending(app, uid);   // either done, or it can never succeed
+                        if (session.equals(s.getValue())) cb.onSuccess();
+                        else cb.onError("Enrollment not allowed: " + msg);
+                    }
+                    @Override public void onCancelled(@NonNull DatabaseError e) {
+                        cb.onError("Enrollment not allowed: " + msg);
+                    }
+                });
+    }
+
+    private static void clearPending(Context app, String uid) {
+        prefs(app).edit().remove(KEY_SESSION + uid).remove(KEY_BLOB + uid).apply();
+    }
+
+    private static SharedPreferences prefs(Context ctx) {
+        return ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.proffpresenceapp.ui.data;
+
+import android.content.Context;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Opt-in local store of the aligned enrollment crops, so galleries can be re-embedded when the
+ * face model changes (see {@link GalleryMigration}). Crops never leave the device; each user's set
+ * is one file encrypted with AES-256/GCM under a non-exportable Android Keystore key, with the uid
+ * as associated data so a file cannot be swapped between accounts. {@link #seal} / {@link #open}
+ * let other on-device face data (the {@link GalleryCache}) use the same key.
+ * <p>
+ * File: IV(12) | GCM( magic "FCV1", size, count, count * size * size * RGB bytes ).
+ */
+public final class FaceCropVault {
+
+    private static final String PREF = "face_crop_vault";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String KEY_ALIAS = "face_crop_vault";
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String TRANSFORM = "AES/GCM/NoPadding";
+    private static final String DIR = "face_crops";
+    private static final int MAGIC = 0x46435631;   // "FCV1"
+    private static final int IV_LEN = 12;
+    private static final int TAG_BITS = 128;
+
+    private FaceCropVault() {}
+
+    /** Aligned crops of one user, ARGB (alpha ignored), {@code size} x {@code size} each. */
+    public static final class Crops {
+        public final int size;
+        public final List<int[]> pixels;
+        Crops(int size, List<int[]> pixels) { this.size = size; this.pixels = pixels; }
+    }
+
+    public static boolean isEnabled(@NonNull Context ctx) {
+        return ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE).getBoolean(KEY_ENABLED, false);
+    }
+
+    /** Turning it off also deletes every stored crop. */
+    public static void setEnabled(@NonNull Context ctx, boolean enabled) {
+        ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE).edit().putBoolean(KEY_ENABLED, enabled).apply();
+        if (!enabled) {
+            File[] files = dir(ctx).listFiles();
+            if (files != null) for (File f : files) //noinspection ResultOfMethodCallIgnored
+                f.delete();
+        }
+    }
+
+    /** Replace {@code uid}'s stored crops. */
+    public static void save(@NonNull Context ctx, @NonNull String uid, @NonNull List<int[]> crops, int size)
+            throws GeneralSecurityException, IOException {
+        int n = size * size;
+        ByteBuffer plain = ByteBuffer.allocate(12 + crops.size() * n * 3);
+        plain.putInt(MAGIC).putInt(size).putInt(crops.size());
+        for (int[] px : crops) {
+            for (int i = 0; i < n; i++) {
+                int c = px[i];
+                plain.put((byte) (c >> 16)).put((byte) (c >> 8)).put((byte) c);
+            }
+        }
+
+        byte[] sealed = seal(plain.array(), uid);
+        File tmp = new File(dir(ctx), fileName(uid) + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(sealed);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(new File(dir(ctx), fileName(uid)))) throw new IOException("rename failed");
+    }
+
+    /** Stored crops for {@code uid}, or null if there are none. */
+    @Nullable
+    public static Crops load(@NonNull Context ctx, @NonNull String uid)
+            throws GeneralSecurityException, IOException {
+        File f = new File(dir(ctx), fileName(uid));
+        if (!f.exists()) return null;
+        byte[] all = readAll(new FileInputStream(f));
+        if (all.length <= IV_LEN) return null;
+        ByteBuffer bb = ByteBuffer.wrap(open(all, uid));
+
+        if (bb.getInt() != MAGIC) throw new IOException("bad crop file");
+        int size = bb.getInt(), count = bb.getInt(), n = size * size;
+        if (size <= 0 || count < 0 || bb.remaining() != count * n * 3) throw new IOException("bad crop file");
+        List<int[]> out = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int[] px = new int[n];
+            for (int i = 0; i < n; i++) {
+                px[i] = 0xff000000 | ((bb.get() & 0xff) << 16) | ((bb.get() & 0xff) << 8) | (bb.get() & 0xff);
+            }
+            out.add(px);
+        }
+        return new Crops(size, out);
+    }
+
+    public static void clear(@NonNull Context ctx, @NonNull String uid) {
+        //noinspection ResultOfMethodCallIgnored
+        new File(dir(ctx), fileName(uid)).delete();
+    }
+
+    /* ---------------- sealing, shared with other on-device face data ---------------- */
+
+    /** IV(12) | AES-GCM({@code plain}) under the vault's Keystore key, bound to {@code uid}. */
+    @NonNull
+    static byte[] seal(@NonNull byte[] plain, @NonNull String uid) throws GeneralSecurityException, IOException {
+        Cipher cipher = Cipher.getInstance(TRANSFORM);
+        cipher.init(Cipher.ENCRYPT_MODE, key());
+        cipher.updateAAD(uid.getBytes(StandardCharsets.UTF_8));
+        byte[] sealed = cipher.doFinal(plain);
+        byte[] iv = cipher.getIV();
+        byte[] out = new byte[iv.length + sealed.length];
+        System.arraycopy(iv, 0, out, 0, iv.length);
+        System.arraycopy(sealed, 0, out, iv.length, sealed.length);
+        return out;
+    }
+
+    /** Inverse of {@link #seal}; throws if the data was altered or sealed for another uid. */
+    @NonNull
+    static byte[] open(@NonNull byte[] sealed, @NonNull String uid) throws GeneralSecurityException, IOException {
+        if (sealed.length <= IV_LEN) throw new IOException("truncated");
+        Cipher cipher = Cipher.getInstance(TRANSFORM);
+        cipher.init(Cipher.DECRYPT_MODE, key(), new GCMParameterSpec(TAG_BITS, sealed, 0, IV_LEN));
+        cipher.updateAAD(uid.getBytes(StandardCharsets.UTF_8));
+        return cipher.doFinal(sealed, IV_LEN, sealed.length - IV_LEN);
+    }
+
+    /* ---------------- internals ---------------- */
+
+    private static SecretKey key() throws GeneralSecurityException, IOException {
+        KeyStore ks = KeyStore.getInstance(KEYSTORE);
+        ks.load(null);
+        if (ks.containsAlias(KEY_ALIAS)) return (SecretKey) ks.getKey(KEY_ALIAS, null);
+
+        KeyGenerator gen = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        gen.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return gen.generateKey();
+    }
+
+    private static File dir(Context ctx) {
+        File d = new File(ctx.getFilesDir(), DIR);
+        //noinspection ResultOfMethodCallIgnored
+        d.mkdirs();
+        return d;
+    }
+
+    /** uids are Firebase push-style ids, but keep the file name safe regardless. */
+    private static String fileName(String uid) {
+        return uid.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin";
+    }
+
+    static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buf = new byte[16 * 1024];
+            for (int r; (r = is.read(buf)) > 0; ) bos.write(buf, 0, r);
+            return bos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.proffpresenceapp.ui.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.proffpresenceapp.ui.ml.FaceGallery;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * On-device copy of a user's gallery so verification can start without a network round trip.
+ * One file per uid holding the packed, already L2-normalized rows of one model, stamped with the
+ * professors/&lt;uid&gt;/galleryVersion it was built from and the last time the server confirmed
+ * that version. Past {@link #MAX_OFFLINE_AGE_MS} without a confirmation the copy is no longer
+ * trusted on its own, so a revoked or replaced gallery stops verifying offline within that window.
+ * <p>
+ * Templates are biometric data: the file is sealed with {@link FaceCropVault}'s Keystore key.
+ * File: {@link FaceCropVault#seal}( little-endian magic "GCV2" | format | stamp(long) |
+ * checkedAt(long) | dim | count | modelLen | model (UTF-8, padded to 4) | count * dim float32 ).
+ */
+public final class GalleryCache {
+    private static final String TAG = "GalleryCache";
+
+    // ---- Tunables ----
+    public static final long MAX_OFFLINE_AGE_MS = TimeUnit.DAYS.toMillis(7);
+
+    private static final String DIR = "gallery_cache";
+    private static final int MAGIC = 0x47435632;   // "GCV2"
+    private static final int FORMAT = 2;
+    private static final int HEADER = 36;
+    private static final int MAX_MODEL_LEN = 64;
+
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor();
+
+    private GalleryCache() {}
+
+    /** A cached gallery and what it was built from. */
+    public static final class Entry {
+        /** galleryVersion at build time; 0 if the server had none. */
+        public final long stamp;
+        public final String model;
+        public final FaceGallery gallery;
+        /** Wall-clock time the server last confirmed {@link #stamp}. */
+        public final long checkedAt;
+
+        /** A gallery just read from the server. */
+        public Entry(long stamp, @NonNull String model, @NonNull FaceGallery gallery) {
+            this(stamp, model, gallery, System.currentTimeMillis());
+        }
+
+        Entry(long stamp, @NonNull String model, @NonNull FaceGallery gallery, long checkedAt) {
+            this.stamp = stamp;
+            this.model = model;
+            this.gallery = gallery;
+            this.checkedAt = checkedAt;
+        }
+
+        /** Same gallery, confirmed by the server at {@code now}. */
+        @NonNull
+        public Entry confirmed(long now) { return new Entry(stamp, model, gallery, now); }
+
+        /** Usable without the server: confirmed within the limit (and not in the future). */
+        public boolean isFresh(long now) {
+            long age = now - checkedAt;
+            return age >= 0 && age <= MAX_OFFLINE_AGE_MS;
+        }
+    }
+
+    /** Cached gallery of {@code uid}, or null if absent or unreadable (which also deletes it). */
+    @Nullable
+    public static Entry load(@NonNull Context ctx, @NonNull String uid) {
+        File f = file(ctx, uid);
+        if (!f.exists()) return null;
+        try {
+            ByteBuffer bb = ByteBuffer.wrap(FaceCropVault.open(FaceCropVault.readAll(new FileInputStream(f)), uid))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (bb.remaining() < HEADER || bb.getInt() != MAGIC || bb.getInt() != FORMAT) {
+                throw new IOException("bad header");
+            }
+            long stamp = bb.getLong(), checkedAt = bb.getLong();
+            int dim = bb.getInt(), count = bb.getInt(), len = bb.getInt();
+            if (dim <= 0 || count <= 0 || len <= 0 || len > MAX_MODEL_LEN) throw new IOException("bad header");
+            byte[] m = new byte[len];
+            bb.get(m);
+            bb.position(bb.position() + pad(len));
+            if (bb.remaining() != (long) count * dim * 4) throw new IOException("bad length");
+
+            FaceGallery g = new FaceGallery(dim, count);
+            g.addNormalized(bb.asFloatBuffer(), count);
+            return new Entry(stamp, new String(m, StandardCharsets.UTF_8), g, checkedAt);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            // Includes caches from before sealing, and files sealed for another account
+            Log.w(TAG, "Dropping unreadable cache: " + e.getMessage());
+            clear(ctx, uid);
+            return null;
+        }
+    }
+
+    /** Replace {@code uid}'s cache in the background (write to a temp file, then rename). */
+    public static void saveAsync(@NonNull Context ctx, @NonNull String uid, @NonNull Entry e) {
+        Context app = ctx.getApplicationContext();
+        IO.execute(() -> {
+            try {
+                save(app, uid, e);
+            } catch (IOException | GeneralSecurityException ex) {
+                Log.w(TAG, "Cache write failed: " + ex.getMessage());
+            }
+        });
+    }
+
+    static void save(Context ctx, String uid, Entry e) throws IOException, GeneralSecurityException {
+        FaceGallery g = e.gallery;
+        byte[] m = e.model.getBytes(StandardCharsets.UTF_8);
+        if (m.length == 0 || m.length > MAX_MODEL_LEN) throw new IOException("bad model tag");
+        int header = HEADER + m.length + pad(m.length);
+        ByteBuffer bb = ByteBuffer.allocate(header + g.size() * g.dim() * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(MAGIC).putInt(FORMAT).putLong(e.stamp).putLong(e.checkedAt)
+                .putInt(g.dim()).putInt(g.size()).putInt(m.length).put(m);
+        bb.position(header);
+        bb.asFloatBuffer().put(g.raw(), 0, g.size() * g.dim());
+
+        File dst = file(ctx, uid);
+        File tmp = new File(dst.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(FaceCropVault.seal(bb.array(), uid));
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(dst)) throw new IOException("rename failed");
+    }
+
+    /**
+     * Delete {@code uid}'s cache. Queued on the same executor as {@link #saveAsync}, so a save
+     * still pending when the gallery was emptied cannot rename its file back afterwards.
+     */
+    public static void clear(@NonNull Context ctx, @NonNull String uid) {
+        Context app = ctx.getApplicationContext();
+        IO.execute(() -> {
+            File f = file(app, uid);
+            //noinspection ResultOfMethodCallIgnored
+            new File(f.getPath() + ".tmp").delete();
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+        });
+    }
+
+    private static int pad(int len) { return (4 - (len & 3)) & 3; }
+
+    private static File file(Context ctx, String uid) {
+        File d = new File(ctx.getFilesDir(), DIR);
+        //noinspection ResultOfMethodCallIgnored
+        d.mkdirs();
+        return new File(d, uid.replaceAll("[^A-Za-z0-9_-]", "_") + ".bin");
+    }
+}
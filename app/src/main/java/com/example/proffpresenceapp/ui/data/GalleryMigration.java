@@ -0,0 +1,182 @@
+package com.example.proffpresenceapp.ui.data;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.proffpresenceapp.ui.ml.EmbeddingCodec;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingEngine;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingProcessor;
+import com.example.proffpresenceapp.ui.ml.FaceGallery;
+import com.example.proffpresenceapp.ui.ml.GalleryBlob;
+import com.example.proffpresenceapp.ui.ml.ModelDescriptor;
+import com.example.proffpresenceapp.ui.ml.ModelRegistry;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ServerValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Moves the signed-in user's gallery to the active model without re-enrollment, using the crops
+ * kept by {@link FaceCropVault} (opt-in):
+ * <ol>
+ *   <li>re-embed the crops with the new model, a few at a time on a background thread;</li>
+ *   <li>write the new rows next to the old ones (tagged with the new "model"), one multi-path
+ *       update with deterministic keys so a retry overwrites instead of duplicating;</li>
+ *   <li>read them back and check count, dimension, round-trip fidelity and that the samples
+ *       agree with each other;</li>
+ *   <li>only then flip professors/&lt;uid&gt;/galleryModel, which verification follows.</li>
+ * </ol>
+ * Old rows are kept, so switching galleryModel back is a rollback.
+ */
+public final class GalleryMigration {
+    private static final String TAG = "GalleryMigration";
+
+    private static final ExecutorService EXEC = Executors.newSingleThreadExecutor();
+    private static final int BATCH = 4;
+    private static final long BATCH_PAUSE_MS = 50;       // keep the UI thread's cores free
+    private static final float MIN_ROUND_TRIP_COS = 0.99f;
+
+    private GalleryMigration() {}
+
+    public interface Callback {
+        void onSuccess(@NonNull String newVersion);
+        void onError(@NonNull String message);
+    }
+
+    /** No-op unless the vault is enabled, has crops, and the gallery is on another model. */
+    public static void runIfNeeded(@NonNull Context ctx, @Nullable Callback cb) {
+        Context app = ctx.getApplicationContext();
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null || !FaceCropVault.isEnabled(app)) return;
+        String uid = user.getUid();
+        EXEC.execute(() -> {
+            try {
+                String done = migrate(app, uid);
+                if (done != null && cb != null) cb.onSuccess(done);
+            } catch (Exception e) {
+                Log.w(TAG, "Migration failed: " + e.getMessage());
+                if (cb != null) cb.onError(String.valueOf(e.getMessage()));
+            }
+        });
+    }
+
+    /** Blocking; returns the new version, or null if nothing needed doing. */
+    @Nullable
+    private static String migrate(Context app, String uid) throws Exception {
+        DatabaseReference root = FirebaseDatabase.getInstance().getReference();
+        DatabaseReference prof = root.child("professors").child(uid);
+        ModelDescriptor target = ModelRegistry.active(app);
+
+        DataSnapshot current = Tasks.await(prof.child("galleryModel").get());
+        if (target.version.equals(ModelDescriptor.versionOf(current.getValue()))) return null;
+
+        FaceCropVault.Crops crops = FaceCropVault.load(app, uid);
+        if (crops == null || crops.pixels.isEmpty()) return null;
+
+        // 1) Re-embed
+        FaceEmbeddingProcessor p = FaceEmbeddingEngine.get(app, target);
+        int size = p.getInputSize();
+        int[] resized = new int[size * size];
+        List<float[]> vecs = new ArrayList<>(crops.pixels.size());
+        for (int i = 0; i < crops.pixels.size(); i++) {
+            int[] px = crops.pixels.get(i);
+            if (crops.size != size) px = resizeBilinear(px, crops.size, size, resized);
+            float[] v = p.embedPixels(px, new float[p.getOutputLength()]);
+            if (v == null) throw new IllegalStateException("embed failed");
+            vecs.add(v);
+            if ((i + 1) % BATCH == 0) Thread.sleep(BATCH_PAUSE_MS);
+        }
+
+        // 2) Write next to the old rows
+        String prefix = "m_" + target.version.replaceAll("[^A-Za-z0-9_-]", "_") + "_";
+        EmbeddingCodec.Dtype rowDtype = ClientRollout.rowDtype(app);
+        Map<String, Object> upd = new HashMap<>();
+        for (int i = 0; i < vecs.size(); i++) {
+            String k = "faceEmbeddings/" + uid + "/" + prefix + i + "/";
+            upd.put(k + "vec", EmbeddingCodec.encode(vecs.get(i), rowDtype));
+            upd.put(k + "dtype", rowDtype.tag);
+            upd.put(k + "model", target.version);
+            upd.put(k + "ts", ServerValue.TIMESTAMP);
+        }
+        Tasks.await(root.updateChildren(upd));
+
+        // 3) Consistency check on what the server now holds
+        DataSnapshot rows = Tasks.await(root.child("faceEmbeddings").child(uid).get());
+        String problem = check(rows, target, prefix, vecs);
+        if (problem != null) throw new IllegalStateException("consistency check: " + problem);
+
+        // 4) Switch, replacing the packed blob in the same update
+        String pp = "professors/" + uid + "/";
+        Map<String, Object> flip = new HashMap<>();
+        flip.put(pp + "galleryModel", target.version);
+        flip.put(pp + "galleryMigratedAt", ServerValue.TIMESTAMP);
+        flip.put(pp + "galleryVersion", ServerValue.TIMESTAMP);
+        flip.put("faceGalleries/" + uid, GalleryBlob.toBase64(
+                GalleryBlob.encode(vecs, target.outputDim, EmbeddingCodec.BLOB_DTYPE, target.version)));
+        Tasks.await(root.updateChildren(flip));
+        Log.i(TAG, "Gallery of " + uid + " moved to " + target.version + " (" + vecs.size() + " rows)");
+        return target.version;
+    }
+
+    /** Null if the stored rows are complete, decode to what was written, and agree with each other. */
+    @Nullable
+    static String check(DataSnapshot rows, ModelDescriptor target, String prefix, List<float[]> written) {
+        FaceGallery g = new FaceGallery(target.outputDim, written.size());
+        for (int i = 0; i < written.size(); i++) {
+            DataSnapshot row = rows.child(prefix + i);
+            float[] v = GalleryRepository.decodeRow(row, target);
+            if (v == null) return "row " + i + " missing";
+            if (v.length != target.outputDim) return "row " + i + " has dim " + v.length;
+            float[] w = written.get(i);
+            FaceEmbeddingProcessor.l2normInPlace(v);
+            if (FaceGallery.dot(v, 0, w, 0, v.length) < MIN_ROUND_TRIP_COS) return "row " + i + " round trip";
+            g.add(v);
+        }
+        // Same person: each sample should clear the model's vote threshold against half the others
+        FaceGallery.Scores s = new FaceGallery.Scores();
+        for (float[] w : written) {
+            g.score(w, target.secondaryThreshold, s);
+            int others = s.agree - 1;   // minus itself
+            if (others < (g.size() - 1) / 2) return "samples disagree (agree=" + others + ")";
+        }
+        return null;
+    }
+
+    /** Square ARGB resize for a model with another input size. */
+    static int[] resizeBilinear(int[] src, int from, int to, int[] dst) {
+        float scale = from / (float) to;
+        for (int y = 0; y < to; y++) {
+            float sy = Math.max(0f, (y + 0.5f) * scale - 0.5f);
+            int y0 = Math.min((int) sy, from - 1), y1 = Math.min(y0 + 1, from - 1);
+            float fy = sy - y0;
+            for (int x = 0; x < to; x++) {
+                float sx = Math.max(0f, (x + 0.5f) * scale - 0.5f);
+                int x0 = Math.min((int) sx, from - 1), x1 = Math.min(x0 + 1, from - 1);
+                float fx = sx - x0;
+                int c00 = src[y0 * from + x0], c01 = src[y0 * from + x1];
+                int c10 = src[y1 * from + x0], c11 = src[y1 * from + x1];
+                int out = 0xff000000;
+                for (int sh = 16; sh >= 0; sh -= 8) {
+                    float top = ((c00 >> sh) & 0xff) * (1 - fx) + ((c01 >> sh) & 0xff) * fx;
+                    float bot = ((c10 >> sh) & 0xff) * (1 - fx) + ((c11 >> sh) & 0xff) * fx;
+                    out |= ((int) (top + (bot - top) * fy + 0.5f) & 0xff) << sh;
+                }
+                dst[y * to + x] = out;
+            }
+        }
+        return dst;
+    }
+}
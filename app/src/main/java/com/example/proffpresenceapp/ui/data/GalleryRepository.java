@@ -0,0 +1,176 @@
+package com.example.proffpresenceapp.ui.data;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.proffpresenceapp.ui.ml.EmbeddingCodec;
+import com.example.proffpresenceapp.ui.ml.FaceGallery;
+import com.example.proffpresenceapp.ui.ml.GalleryBlob;
+import com.example.proffpresenceapp.ui.ml.IdentificationIndex;
+import com.example.proffpresenceapp.ui.ml.ModelDescriptor;
+import com.example.proffpresenceapp.ui.ml.ModelRegistry;
+import com.example.proffpresenceapp.ui.ml.PcaProjection;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+/**
+ * Loads enrolled face galleries. A user's gallery is read from the packed blob at
+ * faceGalleries/<uid> ({@link GalleryBlob}) when it matches the model, else from the per-sample
+ * rows faceEmbeddings/<uid>/<pushId>/{vec,dtype,model}. Only data produced by the requested model
+ * version is used; untagged rows are the built-in model.
+ */
+public final class GalleryRepository {
+
+    private GalleryRepository() {}
+
+    public interface IndexCallback {
+        void onLoaded(@NonNull IdentificationIndex index);
+        void onError(@NonNull String message);
+    }
+
+    public interface UserGalleryCallback {
+        /** The cached gallery is still current (its confirmation time is refreshed). */
+        void onUnchanged();
+        /** Fresh gallery (possibly empty), already written to {@link GalleryCache}. */
+        void onLoaded(@NonNull GalleryCache.Entry entry);
+        void onError(@NonNull String message);
+    }
+
+    /**
+     * Refresh one user's gallery against {@code cached}: reads professors/<uid> first and only
+     * downloads the gallery if galleryVersion or galleryModel differ from the cache
+     * (always, when the server has no galleryVersion yet). The gallery is decoded for the model
+     * named by galleryModel, falling back to the active one.
+     */
+    public static void loadUserGallery(@NonNull Context ctx, @NonNull String uid,
+                                       @Nullable GalleryCache.Entry cached, @NonNull UserGalleryCallback cb) {
+        Context app = ctx.getApplicationContext();
+        FirebaseDatabase db = FirebaseDatabase.getInstance();
+        db.getReference("professors").child(uid).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override public void onDataChange(@NonNull DataSnapshot prof) {
+                Long stamp = prof.child("galleryVersion").getValue(Long.class);
+                long version = stamp != null ? stamp : 0L;
+                ModelDescriptor d = ModelRegistry.get(app,
+                        ModelDescriptor.versionOf(prof.child("galleryModel").getValue()));
+                if (d == null) d = ModelRegistry.active(app);
+
+                if (cached != null && version != 0L && version == cached.stamp && d.version.equals(cached.model)) {
+                    GalleryCache.saveAsync(app, uid, cached.confirmed(System.currentTimeMillis()));
+                    cb.onUnchanged();
+                    return;
+                }
+                ModelDescriptor model = d;
+                db.getReference("faceGalleries").child(uid).addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override public void onDataChange(@NonNull DataSnapshot blob) {
+                        FaceGallery g = decodeBlob(blob.getValue(), model);
+                        if (g != null) { done(app, uid, new GalleryCache.Entry(version, model.version, g), cb); return; }
+                        loadRows(app, uid, version, model, cb);   // enrolled before blobs existed
+                    }
+                    @Override public void onCancelled(@NonNull DatabaseError e) {
+                        loadRows(app, uid, version, model, cb);
+                    }
+                });
+            }
+            @Override public void onCancelled(@NonNull DatabaseError e) {
+                cb.onError("Failed to read gallery version: " + e.getMessage());
+            }
+        });
+    }
+
+    private static void loadRows(Context app, String uid, long version, ModelDescriptor model,
+                                 UserGalleryCallback cb) {
+        FirebaseDatabase.getInstance().getReference("faceEmbeddings").child(uid)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override public void onDataChange(@NonNull DataSnapshot rows) {
+                FaceGallery g = new FaceGallery(model.outputDim, (int) rows.getChildrenCount());
+                for (DataSnapshot row : rows.getChildren()) {
+                    float[] v = decodeRow(row, model);
+                    if (v != null) g.add(v);   // copied + L2-normalized into the packed matrix
+                }
+                done(app, uid, new GalleryCache.Entry(version, model.version, g), cb);
+            }
+            @Override public void onCancelled(@NonNull DatabaseError e) {
+                cb.onError("Failed to load gallery: " + e.getMessage());
+            }
+        });
+    }
+
+    private static void done(Context app, String uid, GalleryCache.Entry e, UserGalleryCallback cb) {
+        if (e.gallery.isEmpty()) GalleryCache.clear(app, uid);
+        else GalleryCache.saveAsync(app, uid, e);
+        cb.onLoaded(e);
+    }
+
+    /**
+     * Build a 1:N index over every user's gallery (kiosk). Optional per-identity thresholds are
+     * read from professors/<uid>/matchThreshold. Used by {@code KioskActivity}; the per-professor
+     * verification path loads only its own gallery.
+     */
+    public static void loadIdentificationIndex(@NonNull ModelDescriptor model, @NonNull IndexCallback cb) {
+        loadIdentificationIndex(model, null, cb);
+    }
+
+    /** As above, shortlisting on {@code projection} (see {@link ModelRegistry#projection}). */
+    public static void loadIdentificationIndex(@NonNull ModelDescriptor model,
+                                               @Nullable PcaProjection projection,
+                                               @NonNull IndexCallback cb) {
+        int dim = model.outputDim;
+        FirebaseDatabase db = FirebaseDatabase.getInstance();
+        db.getReference("faceEmbeddings").addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override public void onDataChange(@NonNull DataSnapshot all) {
+                IdentificationIndex index = new IdentificationIndex(dim);
+                index.useTwoStage(projection, IdentificationIndex.DEFAULT_SHORTLIST);
+                for (DataSnapshot user : all.getChildren()) {
+                    String uid = user.getKey();
+                    if (uid == null) continue;
+                    for (DataSnapshot row : user.getChildren()) {
+                        float[] v = decodeRow(row, model);
+                        if (v != null) index.add(uid, v);
+                    }
+                }
+                db.getReference("professors").addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override public void onDataChange(@NonNull DataSnapshot profs) {
+                        for (DataSnapshot p : profs.getChildren()) {
+                            Double t = p.child("matchThreshold").getValue(Double.class);
+                            if (p.getKey() != null && t != null) index.setThreshold(p.getKey(), t.floatValue());
+                        }
+                        cb.onLoaded(index);
+                    }
+                    @Override public void onCancelled(@NonNull DatabaseError e) {
+                        cb.onLoaded(index);   // thresholds are optional; defaults apply
+                    }
+                });
+            }
+            @Override public void onCancelled(@NonNull DatabaseError e) {
+                cb.onError("Failed to load galleries: " + e.getMessage());
+            }
+        });
+    }
+
+    /** One stored row -> floats, or null if another model produced it. No "dtype" = float32. */
+    @Nullable
+    public static float[] decodeRow(@NonNull DataSnapshot row, @NonNull ModelDescriptor model) {
+        if (!model.version.equals(ModelDescriptor.versionOf(row.child("model").getValue()))) return null;
+        return EmbeddingCodec.decode(String.valueOf(row.child("vec").getValue()),
+                EmbeddingCodec.Dtype.fromTag(row.child("dtype").getValue()));
+    }
+
+    /**
+     * faceGalleries/<uid> value -> L2-normalized gallery, or null if absent, corrupt (checksum) or
+     * produced by another model.
+     */
+    @Nullable
+    public static FaceGallery decodeBlob(@Nullable Object value, @NonNull ModelDescriptor model) {
+        byte[] blob = GalleryBlob.fromBase64(value);
+        if (blob == null) return null;
+        GalleryBlob.Header h = GalleryBlob.readHeader(blob, new GalleryBlob.Header());
+        if (h == null || h.count == 0 || h.dim != model.outputDim || !model.version.equals(h.model)) return null;
+        FaceGallery g = new FaceGallery(h.dim, h.count);
+        GalleryBlob.decodeInto(blob, h, g, new float[h.dim]);
+        return g;
+    }
+}
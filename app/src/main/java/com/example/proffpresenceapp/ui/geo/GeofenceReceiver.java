@@ -14,6 +14,7 @@ import androidx.core.app.ActivityCompat;
 
 import com.example.proffpresenceapp.ui.core.AttendanceHelper;
 import com.example.proffpresenceapp.ui.core.NotificationHelper;
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingEngine;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
@@ -60,6 +61,8 @@ public class GeofenceReceiver extends BroadcastReceiver {
                     }
                     // Open a session (start time will be shown in dashboard)
                     AttendanceHelper.onEnter(u.getUid());
+                    // Load + warm the face model now so the notification tap verifies fast
+                    FaceEmbeddingEngine.warmUpAsync(context);
                     // Ask the user to verify face (tap to open camera)
                     NotificationHelper.notifyFaceVerification(context);
                     Log.i(TAG, "ENTER/DWELL processed for " + which);
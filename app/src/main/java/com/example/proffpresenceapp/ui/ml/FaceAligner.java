@@ -0,0 +1,206 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import android.graphics.ImageFormat;
+import android.graphics.PointF;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
+
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceLandmark;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Landmark alignment fused with crop, resize and normalization.
+ * <p>
+ * Fits a least-squares similarity transform from the canonical 112x112 ArcFace template to the
+ * ML Kit eye / nose / mouth landmarks, then fills the NHWC RGB tensor in one pass straight from
+ * the YUV_420_888 planes: luma is sampled bilinearly, chroma from the nearest half-res sample,
+ * and each channel is written as (v - mean) / std. Without landmarks (no eyes found) it falls
+ * back to the 20% expanded box, so callers always get a tensor of the same layout; check
+ * {@link #lastAligned()} before comparing it with aligned gallery rows. The box geometry lives in
+ * {@link CropTransform#setLegacyBox}.
+ * Not thread-safe; one instance per producing thread.
+ */
+public class FaceAligner {
+
+    /** ArcFace 112x112 reference points: eye, eye, nose tip, mouth corner, mouth corner (image left first). */
+    private static final float[] TEMPLATE_112 = {
+            38.2946f, 51.6963f,
+            73.5318f, 51.5014f,
+            56.0252f, 71.7366f,
+            41.5493f, 92.3655f,
+            70.7299f, 92.2041f,
+    };
+
+    private static final float BOX_MARGIN = 0.20f;
+
+    private final int size;
+    private final float[] tmpl;            // template scaled to size
+    private final float[] src = new float[10];
+    private final float[] dst = new float[10];
+    private final CropTransform xf = new CropTransform();   // output -> upright image
+    private boolean lastAligned;
+
+    public FaceAligner(int size) {
+        this.size = size;
+        tmpl = new float[TEMPLATE_112.length];
+        float s = size / 112f;
+        for (int i = 0; i < tmpl.length; i++) tmpl[i] = TEMPLATE_112[i] * s;
+    }
+
+    /** True if the last {@link #alignToTensor} call used landmarks (false = box fallback). */
+    public boolean lastAligned() { return lastAligned; }
+
+    /**
+     * Write the aligned size x size x 3 tensor for {@code face} into {@code out}.
+     *
+     * @return false if the frame is not YUV_420_888 or no transform could be fitted
+     */
+    public boolean alignToTensor(@NonNull ImageProxy image, @NonNull Face face,
+                                 float mean, float std, @NonNull float[] out) {
+        return alignToTensor(image, face, mean, std, out, null);
+    }
+
+    /**
+     * Same, and if {@code argb} is given also keep the aligned crop as ARGB pixels (size x size)
+     * in the same pass, e.g. to re-embed it later with another model.
+     */
+    public boolean alignToTensor(@NonNull ImageProxy image, @NonNull Face face,
+                                 float mean, float std, @NonNull float[] out, @Nullable int[] argb) {
+        return alignToTensor(image, face, mean, std, out, argb, true);
+    }
+
+    /**
+     * Same, with {@code useLandmarks} false forcing the crop that
+     * {@link ModelDescriptor#MOBILE_FACE_NET_LEGACY} galleries were enrolled with: the 20% expanded
+     * box clamped to the frame and stretched to size x size. The geometry matches the old
+     * Bitmap path; what it cannot reproduce is that path's JPEG q90 round trip of the frame.
+     */
+    public boolean alignToTensor(@NonNull ImageProxy image, @NonNull Face face, float mean, float std,
+                                 @NonNull float[] out, @Nullable int[] argb, boolean useLandmarks) {
+        if (image.getFormat() != ImageFormat.YUV_420_888 || out.length < size * size * 3) return false;
+        if (argb != null && argb.length < size * size) return false;
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        if (planes == null || planes.length < 3) return false;
+
+        int w = image.getWidth(), h = image.getHeight();
+        int rotation = image.getImageInfo().getRotationDegrees();
+        boolean sideways = rotation == 90 || rotation == 270;
+        int uw = sideways ? h : w, uh = sideways ? w : h;   // upright frame, ML Kit's coordinates
+
+        lastAligned = useLandmarks && fitLandmarks(face, uw, uh);
+        if (!lastAligned) {
+            Rect box = face.getBoundingBox();
+            if (!xf.setLegacyBox(box.left, box.top, box.right, box.bottom, uw, uh, size, BOX_MARGIN)) return false;
+        }
+        ByteBuffer y = planes[0].getBuffer();
+        ByteBuffer u = planes[1].getBuffer();
+        ByteBuffer v = planes[2].getBuffer();
+        int yRow = planes[0].getRowStride(), yPix = planes[0].getPixelStride();
+        int uvRow = planes[1].getRowStride(), uvPix = planes[1].getPixelStride();
+        float inv = 1f / std;
+
+        int o = 0, k = 0;
+        for (int oy = 0; oy < size; oy++) {
+            float cy = oy + 0.5f;
+            for (int ox = 0; ox < size; ox++) {
+                float cx = ox + 0.5f;
+                float ux = xf.x(cx, cy);
+                float uy = xf.y(cx, cy);
+
+                // Upright -> sensor (continuous version of YuvFaceCropper's mapping)
+                float px, py;
+                switch (rotation) {
+                    case 90:  px = uy;     py = h - ux; break;
+                    case 180: px = w - ux; py = h - uy; break;
+                    case 270: px = w - uy; py = ux;     break;
+                    default:  px = ux;     py = uy;
+                }
+                px -= 0.5f; py -= 0.5f;   // pixel centres
+                if (px < 0f) px = 0f; else if (px > w - 1) px = w - 1;
+                if (py < 0f) py = 0f; else if (py > h - 1) py = h - 1;
+
+                int x0 = (int) px, y0 = (int) py;
+                int x1 = Math.min(x0 + 1, w - 1), y1 = Math.min(y0 + 1, h - 1);
+                float fx = px - x0, fy = py - y0;
+                int r0 = y0 * yRow, r1 = y1 * yRow;
+                float top = (y.get(r0 + x0 * yPix) & 0xff) * (1f - fx) + (y.get(r0 + x1 * yPix) & 0xff) * fx;
+                float bot = (y.get(r1 + x0 * yPix) & 0xff) * (1f - fx) + (y.get(r1 + x1 * yPix) & 0xff) * fx;
+                int yy = (int) (top + (bot - top) * fy + 0.5f);
+
+                int uvIdx = (((int) (py + 0.5f)) >> 1) * uvRow + (((int) (px + 0.5f)) >> 1) * uvPix;
+                int c = YuvFaceCropper.yuvToArgb(yy, u.get(uvIdx) & 0xff, v.get(uvIdx) & 0xff);
+                if (argb != null) argb[k++] = c;
+
+                out[o++] = (((c >> 16) & 0xff) - mean) * inv;
+                out[o++] = (((c >> 8) & 0xff) - mean) * inv;
+                out[o++] = ((c & 0xff) - mean) * inv;
+            }
+        }
+        return true;
+    }
+
+    /** Similarity fit over the available landmark pairs (both eyes required). */
+    private boolean fitLandmarks(Face face, int uw, int uh) {
+        PointF le = pos(face, FaceLandmark.LEFT_EYE), re = pos(face, FaceLandmark.RIGHT_EYE);
+        if (le == null || re == null) return false;
+        // Template is ordered by image x, so assign by x instead of relying on mirroring
+        boolean swapEyes = le.x > re.x;
+        int n = 0;
+        n = pair(n, 0, swapEyes ? re : le);
+        n = pair(n, 1, swapEyes ? le : re);
+        n = pair(n, 2, pos(face, FaceLandmark.NOSE_BASE));
+        PointF ml = pos(face, FaceLandmark.MOUTH_LEFT), mr = pos(face, FaceLandmark.MOUTH_RIGHT);
+        if (ml != null && mr != null) {
+            boolean swapMouth = ml.x > mr.x;
+            n = pair(n, 3, swapMouth ? mr : ml);
+            n = pair(n, 4, swapMouth ? ml : mr);
+        }
+        return solve(n, uw, uh);
+    }
+
+    private int pair(int n, int t, PointF p) {
+        if (p == null) return n;
+        src[2 * n] = tmpl[2 * t];
+        src[2 * n + 1] = tmpl[2 * t + 1];
+        dst[2 * n] = p.x;
+        dst[2 * n + 1] = p.y;
+        return n + 1;
+    }
+
+    /** Closed-form least-squares similarity (Umeyama without reflection) from src to dst. */
+    private boolean solve(int n, int uw, int uh) {
+        if (n < 2) return false;
+        float msx = 0, msy = 0, mdx = 0, mdy = 0;
+        for (int i = 0; i < n; i++) {
+            msx += src[2 * i]; msy += src[2 * i + 1];
+            mdx += dst[2 * i]; mdy += dst[2 * i + 1];
+        }
+        msx /= n; msy /= n; mdx /= n; mdy /= n;
+
+        float num1 = 0, num2 = 0, den = 0;
+        for (int i = 0; i < n; i++) {
+            float sx = src[2 * i] - msx, sy = src[2 * i + 1] - msy;
+            float dx = dst[2 * i] - mdx, dy = dst[2 * i + 1] - mdy;
+            num1 += sx * dx + sy * dy;
+            num2 += sx * dy - sy * dx;
+            den  += sx * sx + sy * sy;
+        }
+        if (den <= 1e-6f) return false;
+        float a = num1 / den;
+        float b = num2 / den;
+        if (a * a + b * b < 1e-6f) return false;
+        // template -> upright image: x' = a*x - b*y + tx, y' = b*x + a*y + ty
+        xf.setSimilarity(a, b, mdx - (a * msx - b * msy), mdy - (b * msx + a * msy), uw, uh);
+        return true;
+    }
+
+    private static PointF pos(Face face, int type) {
+        FaceLandmark l = face.getLandmark(type);
+        return l == null ? null : l.getPosition();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide face embedding engines, one per model version (see {@link ModelRegistry}).
+ * Maps each model and builds its interpreter once, shares it across activities and can warm the
+ * active one up in the background (app start, geofence ENTER) so the first verification after the
+ * notification does not pay model load + first-inference kernel preparation. Several versions can
+ * be loaded side by side, e.g. while galleries are being migrated to a new model.
+ * Thread count / XNNPACK come from {@link InterpreterTuner} once the device has been benchmarked.
+ * Each slot has its own lock, held only while its model is mapped and its interpreter is built.
+ * The first-launch benchmark runs outside it: {@link #get} (called from activities' onCreate on
+ * the main thread) never waits for tuning. If it comes first it builds the default config and the
+ * tuned one applies from the next launch.
+ */
+public final class FaceEmbeddingEngine {
+    private static final String TAG = "FaceEmbeddingEngine";
+
+    private static final Object LOCK = new Object();     // guards SLOTS only
+    private static final ExecutorService WARMUP = Executors.newSingleThreadExecutor();
+
+    /** Loaded state of one model version; model and processor are guarded by {@code lock}. */
+    private static final class Slot {
+        final Object lock = new Object();
+        MappedByteBuffer model;             // mapped once, shared by tuner + interpreter
+        FaceEmbeddingProcessor processor;
+        volatile InterpreterTuner.Result tuning;
+        volatile boolean warmedUp;
+    }
+
+    private static final Map<String, Slot> SLOTS = new HashMap<>();
+
+    private FaceEmbeddingEngine() {}
+
+    /** Shared processor for the active model. */
+    @NonNull
+    public static FaceEmbeddingProcessor get(@NonNull Context ctx) throws IOException {
+        return get(ctx, ModelRegistry.active(ctx));
+    }
+
+    /**
+     * Shared processor for {@code d}, loading it on the calling thread if warm-up has not finished
+     * yet. Callers must not close it; use {@link #release()} instead.
+     */
+    @NonNull
+    public static FaceEmbeddingProcessor get(@NonNull Context ctx, @NonNull ModelDescriptor d) throws IOException {
+        Slot s = slot(d);
+        synchronized (s.lock) {
+            if (s.processor == null) {
+                long t0 = System.currentTimeMillis();
+                Context app = ctx.getApplicationContext();
+                if (s.tuning == null) s.tuning = InterpreterTuner.load(app, d);
+                int threads = s.tuning != null ? s.tuning.numThreads : 2;
+                boolean xnn = s.tuning != null && s.tuning.useXnnpack;
+                s.processor = new FaceEmbeddingProcessor(mappedModel(app, d), d, threads, xnn);
+                Log.d(TAG, d.version + " loaded in " + (System.currentTimeMillis() - t0) + " ms"
+                        + " (threads=" + threads + " xnnpack=" + xnn + ")");
+            }
+            return s.processor;
+        }
+    }
+
+    /** Load the active model and run one dummy inference off the main thread. Safe to call repeatedly. */
+    public static void warmUpAsync(@NonNull Context ctx) {
+        Context app = ctx.getApplicationContext();
+        WARMUP.execute(() -> {
+            try {
+                ModelDescriptor d = ModelRegistry.active(app);
+                Slot s = slot(d);
+                // First launch on this device: benchmark before building the shared interpreter.
+                // Not under the slot lock, so a get() meanwhile builds the default config
+                // instead of waiting; the persisted result then applies next launch.
+                boolean needTune;
+                synchronized (s.lock) {
+                    if (s.tuning == null) s.tuning = InterpreterTuner.load(app, d);
+                    needTune = s.tuning == null;
+                }
+                if (needTune) s.tuning = InterpreterTuner.loadOrTune(app, d, mappedModel(app, d));
+
+                FaceEmbeddingProcessor p = get(app, d);
+                if (s.warmedUp) return;
+                long t0 = System.currentTimeMillis();
+                int n = p.getInputSize() * p.getInputSize();
+                p.embedPixels(new int[n], new float[p.getOutputLength()]);
+                s.warmedUp = true;
+                Log.d(TAG, "Warm-up inference " + (System.currentTimeMillis() - t0) + " ms");
+            } catch (Exception e) {
+                Log.w(TAG, "Warm-up failed: " + e.getMessage());
+            }
+        });
+    }
+
+    /** Per-device tuning result of the active model (chosen config + latencies), null until tuned. */
+    @Nullable
+    public static InterpreterTuner.Result getTuning(@NonNull Context ctx) {
+        return slot(ModelRegistry.active(ctx)).tuning;
+    }
+
+    public static boolean isWarm(@NonNull Context ctx) {
+        return slot(ModelRegistry.active(ctx)).warmedUp;
+    }
+
+    private static Slot slot(ModelDescriptor d) {
+        synchronized (LOCK) {
+            Slot s = SLOTS.get(d.version);
+            if (s == null) { s = new Slot(); SLOTS.put(d.version, s); }
+            return s;
+        }
+    }
+
+    private static MappedByteBuffer mappedModel(Context app, ModelDescriptor d) throws IOException {
+        Slot s = slot(d);
+        synchronized (s.lock) {
+            if (s.model == null) s.model = FaceEmbeddingProcessor.loadModel(app.getAssets(), d.asset);
+            return s.model;
+        }
+    }
+
+    /** Drop one version's interpreter (e.g. after a migration); the next get() reloads it. */
+    public static void release(@NonNull String version) {
+        Slot s;
+        synchronized (LOCK) { s = SLOTS.get(version); }
+        if (s != null) release(s);
+    }
+
+    /** Drop every interpreter (e.g. on low memory); the next get() reloads it. */
+    public static void release() {
+        List<Slot> all;
+        synchronized (LOCK) { all = new ArrayList<>(SLOTS.values()); }
+        for (Slot s : all) release(s);
+    }
+
+    private static void release(Slot s) {
+        synchronized (s.lock) {
+            if (s.processor != null) { s.processor.close(); s.processor = null; }
+            s.warmedUp = false;
+        }
+    }
+}
@@ -1,46 +1,105 @@
 package com.example.proffpresenceapp.ui.ml;
 
+import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
 
 import org.tensorflow.lite.Interpreter;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 
+/**
+ * Wraps one TFLite interpreter for the model described by a {@link ModelDescriptor}. Calls are
+ * synchronized because the interpreter and the reused buffers are shared when the instance comes
+ * from {@link FaceEmbeddingEngine}.
+ */
 public class FaceEmbeddingProcessor implements AutoCloseable {
 
-    public static final int INPUT_SIZE = 112; // adapt if your model differs
+    // Built-in model defaults; per-instance values come from the descriptor
+    public static final int INPUT_SIZE = ModelDescriptor.MOBILE_FACE_NET.inputSize;
+    public static final float INPUT_MEAN = ModelDescriptor.MOBILE_FACE_NET.mean;
+    public static final float INPUT_STD  = ModelDescriptor.MOBILE_FACE_NET.std;
+    public static final String MODEL_ASSET = ModelDescriptor.MOBILE_FACE_NET.asset;
 
     private Interpreter tflite;
+    private final ModelDescriptor descriptor;
+    private final int inputSize;
+    private final int numThreads;
+    private final boolean useXnnpack;
+    private final int outLen;
+
+    // Reused per-frame buffers: input is bound to tensor 0, so run() copies nothing extra.
+    private final ByteBuffer inBuf;
+    private final FloatBuffer inFloats;
+    private final ByteBuffer outBuf;
+    private final FloatBuffer outFloats;
+    private final int[] pixels;
 
     public FaceEmbeddingProcessor(AssetManager am) throws IOException {
-        Interpreter.Options opts = new Interpreter.Options();
-        opts.setNumThreads(2);
-        // opts.setUseXNNPACK(true); // optional
-        tflite = new Interpreter(loadModel(am, "mobile_face_net.tflite"), opts);
+        this(loadModel(am, MODEL_ASSET), ModelDescriptor.MOBILE_FACE_NET, 2, false);
     }
 
-    private MappedByteBuffer loadModel(AssetManager am, String assetPath) throws IOException {
-        try (FileInputStream fis = new FileInputStream(am.openFd(assetPath).getFileDescriptor());
-             FileChannel fc = fis.getChannel()) {
-            long start = am.openFd(assetPath).getStartOffset();
-            long len = am.openFd(assetPath).getLength();
-            return fc.map(FileChannel.MapMode.READ_ONLY, start, len);
-        }
+    public FaceEmbeddingProcessor(ByteBuffer model, int numThreads, boolean useXnnpack) {
+        this(model, ModelDescriptor.MOBILE_FACE_NET, numThreads, useXnnpack);
     }
 
-    /** Run inference: input NHWC [1,112,112,3] in [-1,1], output L2-normalized 128D */
-    public float[] embed(float[][][][] input) {
-        if (tflite == null) return null;
+    /** Build an interpreter over an already-mapped model (see {@link InterpreterTuner}). */
+    public FaceEmbeddingProcessor(ByteBuffer model, ModelDescriptor d, int numThreads, boolean useXnnpack) {
+        this.inputSize = d.inputSize;
+        this.pixels = new int[inputSize * inputSize];
+        this.numThreads = numThreads;
+        this.useXnnpack = useXnnpack;
+        Interpreter.Options opts = new Interpreter.Options();
+        opts.setNumThreads(numThreads);
+        opts.setUseXNNPACK(useXnnpack);
+        tflite = new Interpreter(model, opts);
 
-        // Determine output length dynamically (most MobileFaceNet=128)
-        int outLen = 128;
+        // Output length from the tensor (most MobileFaceNet=128); the descriptor is the fallback
+        int n = d.outputDim;
         try {
             int[] outShape = tflite.getOutputTensor(0).shape(); // [1,128]
-            if (outShape.length == 2) outLen = outShape[1];
+            if (outShape.length == 2) n = outShape[1];
         } catch (Exception ignored){}
+        outLen = n;
+        descriptor = d.withOutputDim(n);
+
+        inBuf = ByteBuffer.allocateDirect(inputSize * inputSize * 3 * 4).order(ByteOrder.nativeOrder());
+        inFloats = inBuf.asFloatBuffer();
+        outBuf = ByteBuffer.allocateDirect(outLen * 4).order(ByteOrder.nativeOrder());
+        outFloats = outBuf.asFloatBuffer();
+    }
+
+    /** Map the model asset once (single descriptor; the mapping outlives the stream). */
+    static MappedByteBuffer loadModel(AssetManager am, String assetPath) throws IOException {
+        try (AssetFileDescriptor afd = am.openFd(assetPath);
+             FileInputStream fis = new FileInputStream(afd.getFileDescriptor());
+             FileChannel fc = fis.getChannel()) {
+            return fc.map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+        }
+    }
+
+    /** Embedding dimension reported by the model's output tensor. */
+    public int getOutputLength() { return outLen; }
+
+    public int getInputSize() { return inputSize; }
+
+    @NonNull
+    public ModelDescriptor getDescriptor() { return descriptor; }
+
+    public int getNumThreads() { return numThreads; }
+    public boolean usesXnnpack() { return useXnnpack; }
+
+    /** Run inference: input NHWC [1,size,size,3] normalized per the descriptor, output L2-normalized */
+    public synchronized float[] embed(float[][][][] input) {
+        if (tflite == null) return null;
 
         float[][] out = new float[1][outLen];
         tflite.run(input, out);
@@ -49,11 +108,53 @@ public class FaceEmbeddingProcessor implements AutoCloseable {
         return v;
     }
 
-    public static void l2normInPlace(float[] v) {
-        double s=0; for (float x: v) s += x*x;
+    /**
+     * Allocation-free variant: face bitmap must be getInputSize() square.
+     * Writes the L2-normalized embedding into {@code out} (length >= getOutputLength()) and returns it.
+     */
+    public synchronized float[] embed(Bitmap face, float[] out) {
+        if (tflite == null || face == null) return null;
+        face.getPixels(pixels, 0, inputSize, 0, 0, inputSize, inputSize);
+        return embedPixels(pixels, out);
+    }
+
+    /** Same as {@link #embed(Bitmap, float[])} but from raw ARGB pixels (row-major, getInputSize()^2). */
+    public synchronized float[] embedPixels(int[] argb, float[] out) {
+        if (tflite == null || argb == null) return null;
+        InputTensors.fromArgb(argb, inputSize * inputSize, descriptor.mean, descriptor.std, inFloats);
+        return runInput(out);
+    }
+
+    /**
+     * Run on an already normalized NHWC tensor (getInputSize()^2 * 3 floats, see {@link FaceAligner});
+     * one bulk copy into the bound input buffer.
+     */
+    public synchronized float[] embedTensor(float[] input, float[] out) {
+        if (tflite == null || input == null) return null;
+        inFloats.rewind();
+        inFloats.put(input, 0, inputSize * inputSize * 3);
+        inFloats.rewind();
+        return runInput(out);
+    }
+
+    private float[] runInput(float[] out) {
+        inBuf.rewind();
+        outBuf.rewind();
+        tflite.run(inBuf, outBuf);
+        outFloats.rewind();
+        outFloats.get(out, 0, outLen);
+        l2normInPlace(out, outLen);
+        return out;
+    }
+
+    public static void l2normInPlace(float[] v) { l2normInPlace(v, v.length); }
+
+    /** L2-normalize the first {@code n} entries of {@code v}. */
+    public static void l2normInPlace(float[] v, int n) {
+        double s=0; for (int i=0;i<n;i++) s += v[i]*v[i];
         s = Math.sqrt(Math.max(s, 1e-12));
-        for (int i=0;i<v.length;i++) v[i] /= s;
+        for (int i=0;i<n;i++) v[i] /= s;
     }
 
-    @Override public void close() { if (tflite != null) { tflite.close(); tflite = null; } }
+    @Override public synchronized void close() { if (tflite != null) { tflite.close(); tflite = null; } }
 }
@@ -14,9 +14,6 @@ import com.google.mlkit.vision.face.Face;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.FloatBuffer;
-import android.util.Base64;
 
 public class FaceUtils {
 
@@ -96,33 +93,4 @@ public class FaceUtils {
         }
         return out;
     }
-
-    /* ---------- base64 helpers for embeddings ---------- */
-
-    @Nullable
-    public static String floatsToBase64(@Nullable float[] v) {
-        if (v == null) return null;
-        ByteBuffer bb = ByteBuffer.allocate(v.length * 4).order(ByteOrder.LITTLE_ENDIAN);
-        for (float f : v) bb.putFloat(f);
-        return Base64.encodeToString(bb.array(), Base64.NO_WRAP);
-    }
-
-    @Nullable
-    public static float[] base64ToFloats(@Nullable String s) {
-        if (s == null) return null;
-        try {
-            byte[] bytes = Base64.decode(s, Base64.DEFAULT);
-            FloatBuffer fb = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
-            float[] out = new float[fb.remaining()];
-            fb.get(out);
-            return out;
-        } catch (IllegalArgumentException bad) {
-            try {
-                String[] parts = s.split(",");
-                float[] out = new float[parts.length];
-                for (int i = 0; i < parts.length; i++) out[i] = Float.parseFloat(parts[i].trim());
-                return out;
-            } catch (Exception ignored) { return null; }
-        }
-    }
 }
@@ -0,0 +1,162 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Picks the fastest interpreter configuration (thread count x XNNPACK on/off) for this device.
+ * Benchmarks once per device model + model version (the same key {@link FaceEmbeddingEngine} slots
+ * use), persists the winner and the measured latencies in SharedPreferences, and reuses them on
+ * later launches.
+ */
+public final class InterpreterTuner {
+    private static final String TAG = "InterpreterTuner";
+    private static final String PREF = "tflite_tuning";
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS  = 5;
+
+    private InterpreterTuner() {}
+
+    /** Winning configuration plus every candidate's median latency ("threads/xnn" -> ms). */
+    public static final class Result {
+        public final int numThreads;
+        public final boolean useXnnpack;
+        public final Map<String, Float> latenciesMs;
+
+        Result(int numThreads, boolean useXnnpack, Map<String, Float> latenciesMs) {
+            this.numThreads = numThreads;
+            this.useXnnpack = useXnnpack;
+            this.latenciesMs = latenciesMs;
+        }
+
+        @NonNull @Override public String toString() {
+            return "threads=" + numThreads + " xnnpack=" + useXnnpack + " " + latenciesMs;
+        }
+    }
+
+    /** Persisted result for this device, or null if it has not been tuned yet. */
+    @Nullable
+    public static Result load(@NonNull Context ctx, @NonNull ModelDescriptor d) {
+        SharedPreferences p = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+        String key = key(d.version);
+        if (!p.contains(key + "_threads")) return null;
+        return new Result(
+                p.getInt(key + "_threads", 2),
+                p.getBoolean(key + "_xnn", false),
+                parseLatencies(p.getString(key + "_lat", "")));
+    }
+
+    /**
+     * Persisted result if present, otherwise benchmark now (call off the main thread). If every
+     * candidate fails the default config is returned but not persisted, so the next launch retries.
+     */
+    @NonNull
+    public static Result loadOrTune(@NonNull Context ctx, @NonNull ModelDescriptor d, @NonNull ByteBuffer model) {
+        Result r = load(ctx, d);
+        if (r != null) return r;
+        r = tune(model, d);
+        if (r.latenciesMs.isEmpty()) {
+            Log.w(TAG, "No candidate ran on " + Build.MODEL + ", keeping the default untuned");
+            return r;
+        }
+        save(ctx, d.version, r);
+        Log.i(TAG, "Tuned " + Build.MODEL + ": " + r);
+        return r;
+    }
+
+    /** Benchmark every candidate on a blank input; the fastest median wins (no latencies = none ran). */
+    @NonNull
+    public static Result tune(@NonNull ByteBuffer model, @NonNull ModelDescriptor d) {
+        Map<String, Float> lat = new LinkedHashMap<>();
+        int bestThreads = 2;
+        boolean bestXnn = false;
+        float bestMs = Float.MAX_VALUE;
+
+        int[] blank = new int[d.inputSize * d.inputSize];
+
+        for (int threads : candidateThreads()) {
+            for (boolean xnn : new boolean[] { false, true }) {
+                float ms;
+                try (FaceEmbeddingProcessor p = new FaceEmbeddingProcessor(model, d, threads, xnn)) {
+                    float[] out = new float[p.getOutputLength()];
+                    for (int i = 0; i < WARMUP_RUNS; i++) p.embedPixels(blank, out);
+                    float[] runs = new float[TIMED_RUNS];
+                    for (int i = 0; i < TIMED_RUNS; i++) {
+                        long t0 = System.nanoTime();
+                        p.embedPixels(blank, out);
+                        runs[i] = (System.nanoTime() - t0) / 1e6f;
+                    }
+                    Arrays.sort(runs);
+                    ms = runs[TIMED_RUNS / 2];
+                } catch (Exception e) {
+                    // e.g. XNNPACK unsupported for this model/device: skip the candidate
+                    Log.w(TAG, "Candidate " + label(threads, xnn) + " failed: " + e.getMessage());
+                    continue;
+                }
+                lat.put(label(threads, xnn), ms);
+                if (ms < bestMs) { bestMs = ms; bestThreads = threads; bestXnn = xnn; }
+            }
+        }
+        return new Result(bestThreads, bestXnn, lat);
+    }
+
+    /** Forget the persisted choice (e.g. after an OS/model update) so the next launch re-tunes. */
+    public static void clear(@NonNull Context ctx) {
+        ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE).edit().clear().apply();
+    }
+
+    /* ---------------- internals ---------------- */
+
+    private static TreeSet<Integer> candidateThreads() {
+        int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+        TreeSet<Integer> t = new TreeSet<>();
+        for (int c : new int[] { 1, 2, 4, cores }) if (c <= cores) t.add(c);
+        return t;
+    }
+
+    private static void save(Context ctx, String modelVersion, Result r) {
+        String key = key(modelVersion);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Float> e : r.latenciesMs.entrySet()) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(e.getKey()).append('=').append(e.getValue());
+        }
+        ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE).edit()
+                .putInt(key + "_threads", r.numThreads)
+                .putBoolean(key + "_xnn", r.useXnnpack)
+                .putString(key + "_lat", sb.toString())
+                .apply();
+    }
+
+    private static Map<String, Float> parseLatencies(String s) {
+        Map<String, Float> out = new LinkedHashMap<>();
+        if (s == null || s.isEmpty()) return out;
+        for (String part : s.split(";")) {
+            int eq = part.indexOf('=');
+            if (eq <= 0) continue;
+            try { out.put(part.substring(0, eq), Float.parseFloat(part.substring(eq + 1))); }
+            catch (NumberFormatException ignored) {}
+        }
+        return out;
+    }
+
+    private static String key(String modelVersion) {
+        return Build.MANUFACTURER + "/" + Build.MODEL + "/" + modelVersion;
+    }
+
+    private static String label(int threads, boolean xnn) {
+        return threads + "/" + (xnn ? "xnn" : "cpu");
+    }
+}
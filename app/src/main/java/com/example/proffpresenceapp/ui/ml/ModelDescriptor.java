@@ -0,0 +1,101 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Everything the app needs to know about one embedding model: where it lives, what it eats,
+ * what it returns and how its scores should be thresholded. {@link #version} is the tag written
+ * next to every stored gallery row ("model"), so vectors from different models are never mixed.
+ */
+public final class ModelDescriptor {
+
+    /** MobileFaceNet on landmark-aligned crops normalized to [-1,1]; what enrollment writes. */
+    public static final ModelDescriptor MOBILE_FACE_NET = new ModelDescriptor(
+            "mfn-112-v2", "mobile_face_net.tflite", 112, 127.5f, 127.5f, 128, 0.60f, 0.50f);
+
+    /**
+     * The same network as the app first shipped it: 20% expanded box crops (clamped to the frame,
+     * stretched to 112x112) normalized to [0,1], see {@link CropTransform#setLegacyBox}.
+     * Rows without a "model" tag were enrolled this way and are verified with it until migrated.
+     */
+    public static final ModelDescriptor MOBILE_FACE_NET_LEGACY = new ModelDescriptor(
+            "mfn-112-v1", "mobile_face_net.tflite", 112, 0f, 255f, 128, 0.60f, 0.50f, null, false);
+
+    public final String version;
+    public final String asset;
+    public final int inputSize;          // square NHWC RGB input
+    public final float mean, std;        // per-channel (v - mean) / std
+    public final int outputDim;
+    public final float strongThreshold;  // single-frame accept
+    public final float secondaryThreshold;  // per-sample vote
+    /** Optional {@link PcaProjection} file fitted to this model's embeddings (1:N shortlisting). */
+    @Nullable public final String pcaAsset;
+    /** Input is the landmark-aligned crop (see {@link FaceAligner}); false = expanded box only. */
+    public final boolean aligned;
+
+    public ModelDescriptor(@NonNull String version, @NonNull String asset, int inputSize,
+                           float mean, float std, int outputDim,
+                           float strongThreshold, float secondaryThreshold) {
+        this(version, asset, inputSize, mean, std, outputDim, strongThreshold, secondaryThreshold, null);
+    }
+
+    public ModelDescriptor(@NonNull String version, @NonNull String asset, int inputSize,
+                           float mean, float std, int outputDim,
+                           float strongThreshold, float secondaryThreshold, @Nullable String pcaAsset) {
+        this(version, asset, inputSize, mean, std, outputDim, strongThreshold, secondaryThreshold,
+                pcaAsset, true);
+    }
+
+    public ModelDescriptor(@NonNull String version, @NonNull String asset, int inputSize,
+                           float mean, float std, int outputDim,
+                           float strongThreshold, float secondaryThreshold, @Nullable String pcaAsset,
+                           boolean aligned) {
+        this.version = version;
+        this.asset = asset;
+        this.inputSize = inputSize;
+        this.mean = mean;
+        this.std = std;
+        this.outputDim = outputDim;
+        this.strongThreshold = strongThreshold;
+        this.secondaryThreshold = secondaryThreshold;
+        this.pcaAsset = pcaAsset;
+        this.aligned = aligned;
+    }
+
+    /** Same model, different output dimension (when the tensor disagrees with the descriptor). */
+    @NonNull
+    ModelDescriptor withOutputDim(int dim) {
+        return dim == outputDim ? this : new ModelDescriptor(version, asset, inputSize, mean, std,
+                dim, strongThreshold, secondaryThreshold, pcaAsset, aligned);
+    }
+
+    /** Version a stored row belongs to; untagged rows predate the registry and alignment. */
+    @NonNull
+    public static String versionOf(@Nullable Object tag) {
+        return tag == null ? MOBILE_FACE_NET_LEGACY.version : String.valueOf(tag);
+    }
+
+    /** One entry of assets/models.json. */
+    @NonNull
+    public static ModelDescriptor fromJson(@NonNull JSONObject o) throws JSONException {
+        return new ModelDescriptor(
+                o.getString("version"),
+                o.getString("asset"),
+                o.optInt("inputSize", 112),
+                (float) o.optDouble("mean", 127.5),
+                (float) o.optDouble("std", 127.5),
+                o.optInt("outputDim", 128),
+                (float) o.optDouble("strongThreshold", 0.60),
+                (float) o.optDouble("secondaryThreshold", 0.50),
+                o.has("pca") ? o.getString("pca") : null,
+                o.optBoolean("aligned", true));
+    }
+
+    @NonNull @Override public String toString() {
+        return version + " (" + asset + ", " + inputSize + "px -> " + outputDim + "d)";
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Known embedding models. The built-in {@link ModelDescriptor#MOBILE_FACE_NET} and its
+ * {@link ModelDescriptor#MOBILE_FACE_NET_LEGACY legacy preprocessing} are always present; more can
+ * ship in assets/models.json:
+ * <pre>
+ * { "active": "mfn-112-v3",
+ *   "models": [ { "version": "mfn-112-v3", "asset": "mfn_v3.tflite", "inputSize": 112,
+ *                 "mean": 127.5, "std": 127.5, "outputDim": 128,
+ *                 "strongThreshold": 0.6, "secondaryThreshold": 0.5,
+ *                 "pca": "mfn_v3.pca" } ] }
+ * </pre>
+ * The active model is a local override (set for trials) or the JSON default, else the built-in.
+ * "pca" is optional: a {@link PcaProjection} fitted offline on that model's enrolled embeddings.
+ */
+public final class ModelRegistry {
+    private static final String TAG = "ModelRegistry";
+    private static final String MODELS_ASSET = "models.json";
+    private static final String PREF = "face_model";
+    private static final String KEY_ACTIVE = "active";
+
+    private static final Object LOCK = new Object();
+    private static Map<String, ModelDescriptor> models;
+    private static String defaultVersion = ModelDescriptor.MOBILE_FACE_NET.version;
+    private static final Map<String, PcaProjection> projections = new HashMap<>();
+
+    private ModelRegistry() {}
+
+    @Nullable
+    public static ModelDescriptor get(@NonNull Context ctx, @NonNull String version) {
+        return load(ctx).get(version);
+    }
+
+    @NonNull
+    public static List<ModelDescriptor> all(@NonNull Context ctx) {
+        return new ArrayList<>(load(ctx).values());
+    }
+
+    /** Model that enrollment and verification use right now. */
+    @NonNull
+    public static ModelDescriptor active(@NonNull Context ctx) {
+        Map<String, ModelDescriptor> m = load(ctx);
+        String v = ctx.getApplicationContext().getSharedPreferences(PREF, Context.MODE_PRIVATE)
+                .getString(KEY_ACTIVE, null);
+        ModelDescriptor d = v != null ? m.get(v) : null;
+        if (d == null) d = m.get(defaultVersion);
+        return d != null ? d : ModelDescriptor.MOBILE_FACE_NET;
+    }
+
+    /** Switch the active model locally (null = back to the shipped default). */
+    public static void setActive(@NonNull Context ctx, @Nullable String version) {
+        SharedPreferences.Editor e = ctx.getApplicationContext()
+                .getSharedPreferences(PREF, Context.MODE_PRIVATE).edit();
+        if (version == null) e.remove(KEY_ACTIVE); else e.putString(KEY_ACTIVE, version);
+        e.apply();
+    }
+
+    /** The model's shipped projection, loaded once; null if it has none or it does not fit. */
+    @Nullable
+    public static PcaProjection projection(@NonNull Context ctx, @NonNull ModelDescriptor d) {
+        if (d.pcaAsset == null) return null;
+        synchronized (LOCK) {
+            if (projections.containsKey(d.version)) return projections.get(d.version);
+            PcaProjection p = null;
+            try (InputStream in = ctx.getAssets().open(d.pcaAsset)) {
+                p = PcaProjection.read(new BufferedInputStream(in));
+                if (p.inputDim() != d.outputDim) {
+                    Log.w(TAG, d.pcaAsset + " is " + p.inputDim() + "d, model is " + d.outputDim + "d");
+                    p = null;
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Bad " + d.pcaAsset + ": " + e.getMessage());
+            }
+            projections.put(d.version, p);
+            return p;
+        }
+    }
+
+    private static Map<String, ModelDescriptor> load(Context ctx) {
+        synchronized (LOCK) {
+            if (models != null) return models;
+            Map<String, ModelDescriptor> m = new LinkedHashMap<>();
+            m.put(ModelDescriptor.MOBILE_FACE_NET.version, ModelDescriptor.MOBILE_FACE_NET);
+            m.put(ModelDescriptor.MOBILE_FACE_NET_LEGACY.version, ModelDescriptor.MOBILE_FACE_NET_LEGACY);
+            try (InputStream in = ctx.getAssets().open(MODELS_ASSET)) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                byte[] buf = new byte[4096];
+                for (int n; (n = in.read(buf)) > 0; ) bos.write(buf, 0, n);
+                JSONObject root = new JSONObject(bos.toString("UTF-8"));
+                JSONArray arr = root.optJSONArray("models");
+                if (arr != null) {
+                    for (int i = 0; i < arr.length(); i++) {
+                        ModelDescriptor d = ModelDescriptor.fromJson(arr.getJSONObject(i));
+                        m.put(d.version, d);
+                    }
+                }
+                defaultVersion = root.optString("active", defaultVersion);
+            } catch (java.io.FileNotFoundException none) {
+                // Only the built-in model
+            } catch (Exception e) {
+                Log.w(TAG, "Bad " + MODELS_ASSET + ": " + e.getMessage());
+            }
+            models = m;
+            return m;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Coordinate and colour helpers for reading face pixels straight from a YUV_420_888 frame.
+ * The crop itself lives in {@link FaceAligner}, which samples the planes through a
+ * {@link CropTransform}; {@code FrameQualityGate} uses the upright -> sensor rect mapping.
+ */
+public final class YuvFaceCropper {
+
+    private YuvFaceCropper() {}
+
+    /**
+     * Map a rect in upright (ML Kit) coordinates to the sensor image of a w x h frame rotated by
+     * {@code rotation} degrees, clamped to the frame. Writes into {@code out}; false if empty.
+     */
+    public static boolean uprightToSensor(@NonNull Rect r, int w, int h, int rotation, @NonNull Rect out) {
+        switch (rotation) {
+            case 90:  out.set(r.top, h - r.right, r.bottom, h - r.left); break;
+            case 180: out.set(w - r.right, h - r.bottom, w - r.left, h - r.top); break;
+            case 270: out.set(w - r.bottom, r.left, w - r.top, r.right); break;
+            default:  out.set(r);
+        }
+        return out.intersect(0, 0, w, h);
+    }
+
+    /** Full-range BT.601 (the JPEG/NV21 conversion the old path went through), 10-bit fixed point. */
+    static int yuvToArgb(int y, int u, int v) {
+        u -= 128; v -= 128;
+        int r = y + ((1436 * v) >> 10);
+        int g = y - ((352 * u + 731 * v) >> 10);
+        int b = y + ((1815 * u) >> 10);
+        r = r < 0 ? 0 : (r > 255 ? 255 : r);
+        g = g < 0 ? 0 : (g > 255 ? 255 : g);
+        b = b < 0 ? 0 : (b > 255 ? 255 : b);
+        return 0xff000000 | (r << 16) | (g << 8) | b;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.proffpresenceapp.ui.platform;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/** Android implementations of the core platform interfaces: logcat and SharedPreferences. */
+public final class AndroidPlatform {
+
+    private AndroidPlatform() {}
+
+    public static final Logger LOGCAT = new Logger() {
+        @Override public void d(@NonNull String tag, @NonNull String msg) { Log.d(tag, msg); }
+        @Override public void w(@NonNull String tag, @NonNull String msg, @Nullable Throwable t) { Log.w(tag, msg, t); }
+    };
+
+    /** Route core logging to logcat (wall clock stays {@link Clock#SYSTEM}). */
+    public static void install() {
+        Platform.install(Clock.SYSTEM, LOGCAT);
+    }
+
+    /** The private SharedPreferences file {@code name} as a {@link KeyValueStore}. */
+    @NonNull
+    public static KeyValueStore prefs(@NonNull Context ctx, @NonNull String name) {
+        SharedPreferences sp = ctx.getApplicationContext().getSharedPreferences(name, Context.MODE_PRIVATE);
+        return new KeyValueStore() {
+            @Override public long getLong(@NonNull String key, long def) { return sp.getLong(key, def); }
+            @Override public int getInt(@NonNull String key, int def) { return sp.getInt(key, def); }
+            @Nullable @Override public String getString(@NonNull String key, @Nullable String def) {
+                return sp.getString(key, def);
+            }
+            @NonNull @Override public Editor edit() {
+                SharedPreferences.Editor e = sp.edit();
+                return new Editor() {
+                    @NonNull @Override public Editor putLong(@NonNull String key, long v) { e.putLong(key, v); return this; }
+                    @NonNull @Override public Editor putInt(@NonNull String key, int v) { e.putInt(key, v); return this; }
+                    @NonNull @Override public Editor putString(@NonNull String key, @Nullable String v) { e.putString(key, v); return this; }
+                    @NonNull @Override public Editor remove(@NonNull String key) { e.remove(key); return this; }
+                    @Override public void apply() { e.apply(); }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+import java.util.Locale;
+
+/**
+ * Two ML Kit detector configurations for one verification session, both created up front so a
+ * switch costs nothing:
+ * <ul>
+ *   <li>LIVENESS: FAST mode with classification (eye-open probabilities for the blink) and
+ *       landmarks, so frames embedded during the challenge are aligned like the gallery;
+ *       fed at a lower analysis resolution.</li>
+ *   <li>IDENTITY: ACCURATE mode with landmarks + classification for a tight box and the
+ *       eyes-open quality check.</li>
+ * </ul>
+ * Per-mode detection latency is accumulated so the split can be checked on real devices.
+ */
+public class DetectorProfiles {
+
+    public enum Mode {
+        LIVENESS(new Size(360, 480)),
+        IDENTITY(new Size(480, 640));
+
+        /** Target analysis resolution (portrait, i.e. after rotation). */
+        public final Size resolution;
+        Mode(Size resolution) { this.resolution = resolution; }
+    }
+
+    private final FaceDetector fast;
+    private final FaceDetector accurate;
+    private volatile Mode mode = Mode.LIVENESS;
+
+    // Latency stats per mode (detect thread writes, anyone reads a summary)
+    private final long[] count = new long[2];
+    private final double[] sumMs = new double[2];
+    private final float[] maxMs = new float[2];
+
+    public DetectorProfiles() {
+        fast = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
+                .enableTracking()
+                .build());
+        accurate = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
+                .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
+                .enableTracking()
+                .build());
+    }
+
+    @NonNull public Mode mode() { return mode; }
+    public void setMode(@NonNull Mode m) { mode = m; }
+
+    @NonNull
+    public FaceDetector detector(@NonNull Mode m) { return m == Mode.LIVENESS ? fast : accurate; }
+
+    public synchronized void record(@NonNull Mode m, float ms) {
+        int i = m.ordinal();
+        count[i]++;
+        sumMs[i] += ms;
+        if (ms > maxMs[i]) maxMs[i] = ms;
+    }
+
+    public synchronized float meanMs(@NonNull Mode m) {
+        int i = m.ordinal();
+        return count[i] == 0 ? 0f : (float) (sumMs[i] / count[i]);
+    }
+
+    @NonNull
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder("detect ms");
+        for (Mode m : Mode.values()) {
+            int i = m.ordinal();
+            sb.append(String.format(Locale.US, " | %s n=%d mean=%.1f max=%.1f",
+                    m, count[i], meanMs(m), maxMs[i]));
+        }
+        return sb.toString();
+    }
+
+    public void close() {
+        try { fast.close(); } catch (Exception ignored) {}
+        try { accurate.close(); } catch (Exception ignored) {}
+    }
+}
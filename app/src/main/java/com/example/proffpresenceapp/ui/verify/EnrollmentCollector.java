@@ -0,0 +1,173 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.proffpresenceapp.ui.ml.FaceMatchUtils;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Continuous enrollment: collects embedded candidate frames of one tracked face while the user
+ * looks around, then picks the best {@code target} of them by quality and head-pose diversity.
+ * <ul>
+ *   <li>Only frames that passed {@link FrameQualityGate} should be offered; quality is scored from
+ *       its sharpness / brightness plus how frontal the face is.</li>
+ *   <li>Selection is greedy: the best frame first, then the frame maximizing quality plus a bonus
+ *       for its pose distance to what is already picked. Near-duplicate embeddings are skipped.</li>
+ *   <li>A different tracking ID starts over, so the set is always one person.</li>
+ * </ul>
+ * Methods are synchronized (analyzer thread + UI thread).
+ */
+public class EnrollmentCollector {
+
+    /** One embedded frame. */
+    public static final class Candidate {
+        public final float[] embedding;
+        @Nullable public final int[] crop;
+        public final float yaw, pitch;
+        public final float quality;
+
+        Candidate(float[] embedding, @Nullable int[] crop, float yaw, float pitch, float quality) {
+            this.embedding = embedding;
+            this.crop = crop;
+            this.yaw = yaw;
+            this.pitch = pitch;
+            this.quality = quality;
+        }
+    }
+
+    // ---- Tunables (adjust if needed) ----
+    private final int   maxCandidates  = 30;
+    private final long  minGapMs       = 120;     // between embedded frames
+    private final int   minCandidates  = 12;      // before the set can be complete
+    private final float sideYawDeg     = 8f;      // a "turned" frame on each side is wanted
+    private final float poseCapDeg     = 15f;     // diversity bonus saturates here
+    private final float poseWeight     = 0.03f;   // quality units per degree of separation
+    private final float maxDupCos      = 0.985f;  // closer than this = same frame again
+    private final long  timeoutMs      = 8000;    // accept what we have after this
+
+    private final int target;
+    private final List<Candidate> candidates = new ArrayList<>();
+    private boolean hasTrack = false;
+    @Nullable private Integer trackingId;
+    private long startMs = -1, lastMs = -1;
+
+    public EnrollmentCollector(int target) {
+        this.target = target;
+    }
+
+    public synchronized void reset() {
+        candidates.clear();
+        hasTrack = false;
+        trackingId = null;
+        startMs = lastMs = -1;
+    }
+
+    public synchronized int count() { return candidates.size(); }
+
+    /** Analyzer thread, after the quality gate: is this frame worth embedding now? */
+    public synchronized boolean wants(@NonNull Face face, long nowMs) {
+        follow(face);
+        if (startMs < 0) startMs = nowMs;
+        return lastMs < 0 || nowMs - lastMs >= minGapMs;
+    }
+
+    /** Record an embedded frame; when full, the lowest-quality candidate nearest in pose goes. */
+    public synchronized void add(@NonNull Face face, @NonNull FrameQualityGate.Verdict v,
+                                 @NonNull float[] embedding, @Nullable int[] crop, long nowMs) {
+        follow(face);
+        lastMs = nowMs;
+        float yaw = face.getHeadEulerAngleY(), pitch = face.getHeadEulerAngleX();
+        Candidate c = new Candidate(embedding, crop, yaw, pitch, quality(v, yaw, pitch));
+        if (candidates.size() >= maxCandidates) {
+            int drop = -1;
+            float worst = Float.MAX_VALUE;
+            for (int i = 0; i < candidates.size(); i++) {
+                Candidate o = candidates.get(i);
+                float s = o.quality + poseWeight * Math.min(poseDist(o, c), poseCapDeg);
+                if (s < worst) { worst = s; drop = i; }
+            }
+            if (candidates.get(drop).quality >= c.quality) return;
+            candidates.remove(drop);
+        }
+        candidates.add(c);
+    }
+
+    /** Enough frames, with both head turns covered (or the time budget is spent). */
+    public synchronized boolean isComplete(long nowMs) {
+        if (candidates.size() < target) return false;
+        if (startMs >= 0 && nowMs - startMs >= timeoutMs) return true;
+        return candidates.size() >= minCandidates && hasSide(-1) && hasSide(1);
+    }
+
+    /** What to ask the user for next, or null if nothing in particular. */
+    @Nullable
+    public synchronized String hint() {
+        if (candidates.size() < target) return "Hold still, looking at the camera.";
+        if (!hasSide(-1)) return "Turn your head slightly to one side.";
+        if (!hasSide(1)) return "Now slightly to the other side.";
+        return null;
+    }
+
+    /** Best {@code target} candidates, most frontal/sharpest first. */
+    @NonNull
+    public synchronized List<Candidate> select() {
+        List<Candidate> out = new ArrayList<>(target);
+        boolean[] used = new boolean[candidates.size()];
+        for (boolean allowDup : new boolean[]{false, true}) {
+            while (out.size() < target) {
+                int best = -1;
+                float bestScore = -Float.MAX_VALUE;
+                for (int i = 0; i < candidates.size(); i++) {
+                    if (used[i]) continue;
+                    Candidate c = candidates.get(i);
+                    float minDist = poseCapDeg, maxCos = -1f;
+                    for (Candidate s : out) {
+                        minDist = Math.min(minDist, poseDist(c, s));
+                        maxCos = Math.max(maxCos, FaceMatchUtils.cosine(c.embedding, s.embedding));
+                    }
+                    if (!allowDup && maxCos > maxDupCos) continue;
+                    float score = c.quality + poseWeight * minDist;
+                    if (score > bestScore) { bestScore = score; best = i; }
+                }
+                if (best < 0) break;
+                used[best] = true;
+                out.add(candidates.get(best));
+            }
+        }
+        return out;
+    }
+
+    /** 0..1: sharpness and exposure from the gate, plus how frontal the face is. */
+    static float quality(FrameQualityGate.Verdict v, float yaw, float pitch) {
+        float sharp = Math.min(v.sharpness / 20f, 1f);
+        float exposure = Math.max(0f, 1f - Math.abs(v.brightness - 130f) / 130f);
+        float frontal = Math.max(0f, 1f - (Math.abs(yaw) + Math.abs(pitch)) / 40f);
+        return 0.5f * sharp + 0.3f * exposure + 0.2f * frontal;
+    }
+
+    private boolean hasSide(int sign) {
+        for (Candidate c : candidates) if (c.yaw * sign >= sideYawDeg) return true;
+        return false;
+    }
+
+    private static float poseDist(Candidate a, Candidate b) {
+        float dy = a.yaw - b.yaw, dp = a.pitch - b.pitch;
+        return (float) Math.sqrt(dy * dy + dp * dp);
+    }
+
+    /** Bind to the first track seen; a new non-null ID starts over. */
+    private void follow(Face face) {
+        Integer id = face.getTrackingId();
+        if (hasTrack && (id == null || id.equals(trackingId))) return;
+        if (hasTrack) {
+            candidates.clear();
+            startMs = lastMs = -1;
+        }
+        hasTrack = true;
+        trackingId = id;
+    }
+}
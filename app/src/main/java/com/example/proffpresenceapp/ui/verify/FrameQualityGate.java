@@ -0,0 +1,127 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageProxy;
+
+import com.example.proffpresenceapp.ui.ml.YuvFaceCropper;
+import com.google.mlkit.vision.face.Face;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cheap pre-inference gate: rejects frames that would give unreliable embeddings, using what ML Kit
+ * already returned (box size, head Euler angles, eye-open probabilities) plus a sparse exposure /
+ * sharpness probe of the luma plane inside the face box. Not thread-safe; one per analyzer.
+ */
+public class FrameQualityGate {
+
+    public enum Reason {
+        OK("OK"),
+        TOO_SMALL("Move closer to the camera."),
+        POSE("Look straight at the camera."),
+        EYES_CLOSED("Keep your eyes open."),
+        TOO_DARK("Too dark—find more light."),
+        TOO_BRIGHT("Too bright—avoid direct light."),
+        BLURRY("Hold still (image blurry).");
+
+        public final String hint;
+        Reason(String hint) { this.hint = hint; }
+    }
+
+    /** Reusable result; {@link #brightness} / {@link #sharpness} are only set once the luma probe runs. */
+    public static final class Verdict {
+        public boolean ok;
+        public Reason reason = Reason.OK;
+        public float brightness;   // mean luma 0..255
+        public float sharpness;    // mean |Laplacian| over the sample grid
+
+        Verdict set(Reason r) { reason = r; ok = r == Reason.OK; return this; }
+    }
+
+    // ---- Tunables (adjust if needed) ----
+    private final int   minFacePx     = 80;     // shorter box side in upright pixels
+    private final float maxYawDeg     = 20f;
+    private final float maxPitchDeg   = 20f;
+    private final float maxRollDeg    = 25f;
+    private final float minEyeOpen    = 0.5f;
+    private final float minBrightness = 50f;
+    private final float maxBrightness = 210f;
+    private final float minSharpness  = 4f;
+    private final int   gridSteps     = 24;     // luma probe samples per side
+
+    private final Rect sensorBox = new Rect();
+
+    /** Evaluate one frame; {@code out} is reused and returned. */
+    @NonNull
+    public Verdict check(@NonNull Face face, @NonNull ImageProxy image, @NonNull Verdict out) {
+        out.brightness = 0f;
+        out.sharpness = 0f;
+        Verdict v = checkFace(face, out);
+        if (!v.ok) return v;
+        return checkLuma(face.getBoundingBox(), image, out);
+    }
+
+    /** Geometry / classification checks only (no pixel access). */
+    @NonNull
+    public Verdict checkFace(@NonNull Face face, @NonNull Verdict out) {
+        Rect b = face.getBoundingBox();
+        if (Math.min(b.width(), b.height()) < minFacePx) return out.set(Reason.TOO_SMALL);
+
+        if (Math.abs(face.getHeadEulerAngleY()) > maxYawDeg
+                || Math.abs(face.getHeadEulerAngleX()) > maxPitchDeg
+                || Math.abs(face.getHeadEulerAngleZ()) > maxRollDeg) {
+            return out.set(Reason.POSE);
+        }
+
+        Float l = face.getLeftEyeOpenProbability();
+        Float r = face.getRightEyeOpenProbability();
+        if (l != null && r != null && (l < minEyeOpen || r < minEyeOpen)) return out.set(Reason.EYES_CLOSED);
+
+        return out.set(Reason.OK);
+    }
+
+    private Verdict checkLuma(Rect upright, ImageProxy image, Verdict out) {
+        if (image.getFormat() != ImageFormat.YUV_420_888) return out.set(Reason.OK);
+        int w = image.getWidth(), h = image.getHeight();
+        if (!YuvFaceCropper.uprightToSensor(upright, w, h,
+                image.getImageInfo().getRotationDegrees(), sensorBox)) {
+            return out.set(Reason.TOO_SMALL);
+        }
+
+        ImageProxy.PlaneProxy yp = image.getPlanes()[0];
+        ByteBuffer y = yp.getBuffer();
+        int rs = yp.getRowStride(), ps = yp.getPixelStride();
+
+        // Grid strictly inside the box so the 4-neighbour Laplacian stays in bounds
+        int x0 = Math.max(1, sensorBox.left), x1 = Math.min(w - 2, sensorBox.right - 1);
+        int y0 = Math.max(1, sensorBox.top),  y1 = Math.min(h - 2, sensorBox.bottom - 1);
+        if (x1 <= x0 || y1 <= y0) return out.set(Reason.TOO_SMALL);
+        float dx = (x1 - x0) / (float) gridSteps, dy = (y1 - y0) / (float) gridSteps;
+
+        long sum = 0, lap = 0;
+        int n = 0;
+        for (int gy = 0; gy <= gridSteps; gy++) {
+            int py = y0 + (int) (gy * dy);
+            for (int gx = 0; gx <= gridSteps; gx++) {
+                int px = x0 + (int) (gx * dx);
+                int i = py * rs + px * ps;
+                int c = y.get(i) & 0xff;
+                sum += c;
+                lap += Math.abs(4 * c
+                        - (y.get(i - ps) & 0xff) - (y.get(i + ps) & 0xff)
+                        - (y.get(i - rs) & 0xff) - (y.get(i + rs) & 0xff));
+                n++;
+            }
+        }
+        out.brightness = sum / (float) n;
+        out.sharpness = lap / (float) n;
+
+        if (out.brightness < minBrightness) return out.set(Reason.TOO_DARK);
+        if (out.brightness > maxBrightness) return out.set(Reason.TOO_BRIGHT);
+        if (out.sharpness < minSharpness) return out.set(Reason.BLURRY);
+        return out.set(Reason.OK);
+    }
+}
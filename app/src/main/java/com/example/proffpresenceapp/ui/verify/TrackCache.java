@@ -0,0 +1,152 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.mlkit.vision.face.Face;
+
+/**
+ * Per-session state for the face ML Kit is currently tracking (keyed by tracking ID).
+ * <ul>
+ *   <li>Running score aggregate of the frames embedded for this track.</li>
+ *   <li>Reuse check: a frame whose box and head pose are near-identical to the last embedded one
+ *       would give the same embedding, so it is skipped, and after {@code maxReuse} skips a fresh
+ *       embed is forced. Skipped frames are never replayed into a decision policy (that would
+ *       count one observation several times); instead a still track whose aggregate is already
+ *       conclusive ({@link #isSettled}) counts as decided.</li>
+ *   <li>Sticky identity for kiosk use: once a track is recognized, later frames of the same track
+ *       keep that identity without running the model.</li>
+ * </ul>
+ * A different tracking ID resets everything. Methods are synchronized (detect + inference threads).
+ */
+public class TrackCache {
+
+    // ---- Tunables (adjust if needed) ----
+    private final float minIou      = 0.90f;
+    private final float maxAngleDeg = 2.5f;
+    private final int   maxReuse    = 3;
+    private final int   settleFrames = 3;    // embedded frames before a still track can count as decided
+
+    private boolean hasTrack = false;
+    @Nullable private Integer trackingId;
+
+    // Last embedded frame
+    private final Rect box = new Rect();
+    private boolean hasEmbedded = false;
+    private float yaw, pitch, roll;
+    private int reuses = 0;
+
+    // Running aggregate
+    private int frames = 0;
+    private int accepted = 0;
+    private float sumBest = 0f;
+    private float maxBest = -2f;
+    private float minBest = 2f;
+
+    // Sticky identity
+    @Nullable private String identity;
+    private float identityScore;
+
+    public synchronized void reset() {
+        hasTrack = false;
+        trackingId = null;
+        clearTrackState();
+    }
+
+    /** Detect thread: true if {@code face} can be skipped because the last embed still describes it. */
+    public synchronized boolean shouldReuse(@NonNull Face face) {
+        follow(face);
+        if (!hasEmbedded || reuses >= maxReuse) return false;
+        if (Math.abs(face.getHeadEulerAngleY() - yaw) > maxAngleDeg
+                || Math.abs(face.getHeadEulerAngleX() - pitch) > maxAngleDeg
+                || Math.abs(face.getHeadEulerAngleZ() - roll) > maxAngleDeg) {
+            return false;
+        }
+        if (iou(face.getBoundingBox(), box) < minIou) return false;
+        reuses++;
+        return true;
+    }
+
+    /** Inference thread: record a freshly embedded frame and its match result. */
+    public synchronized void onEmbedded(@NonNull Face face, float bestScore, boolean frameAccepted) {
+        follow(face);
+        box.set(face.getBoundingBox());
+        yaw = face.getHeadEulerAngleY();
+        pitch = face.getHeadEulerAngleX();
+        roll = face.getHeadEulerAngleZ();
+        hasEmbedded = true;
+        reuses = 0;
+
+        frames++;
+        if (frameAccepted) accepted++;
+        sumBest += bestScore;
+        if (bestScore > maxBest) maxBest = bestScore;
+        if (bestScore < minBest) minBest = bestScore;
+    }
+
+    /**
+     * True once at least {@code settleFrames} frames of this track were embedded and every one of
+     * them cleared {@code strong} on its own, i.e. each would have passed the single-frame strong
+     * rule. Meant for still frames, which would only repeat that evidence.
+     */
+    public synchronized boolean isSettled(float strong) {
+        return frames >= settleFrames && accepted == frames && minBest >= strong;
+    }
+
+    /** Pin a recognized identity to the current track (kiosk flow). */
+    public synchronized void bindIdentity(@NonNull String uid, float score) {
+        identity = uid;
+        identityScore = score;
+    }
+
+    /** Drop the pinned identity, e.g. when a fresh embed disagrees with it. */
+    public synchronized void clearIdentity() {
+        identity = null;
+        identityScore = 0f;
+    }
+
+    /** Identity pinned to {@code face}'s track, or null if none / a different track. */
+    @Nullable
+    public synchronized String identityFor(@NonNull Face face) {
+        follow(face);
+        return identity;
+    }
+
+    public synchronized float identityScore() { return identityScore; }
+    public synchronized int embeddedFrames() { return frames; }
+    public synchronized int acceptedFrames() { return accepted; }
+    public synchronized float meanBest() { return frames == 0 ? -2f : sumBest / frames; }
+    public synchronized float maxBest() { return maxBest; }
+
+    /** Bind to the first track seen; a new non-null ID starts over. */
+    private void follow(Face face) {
+        Integer id = face.getTrackingId();
+        if (hasTrack && (id == null || id.equals(trackingId))) return;
+        if (hasTrack) clearTrackState();
+        hasTrack = true;
+        trackingId = id;
+    }
+
+    private void clearTrackState() {
+        hasEmbedded = false;
+        reuses = 0;
+        frames = 0;
+        accepted = 0;
+        sumBest = 0f;
+        maxBest = -2f;
+        minBest = 2f;
+        identity = null;
+        identityScore = 0f;
+    }
+
+    static float iou(Rect a, Rect b) {
+        int iw = Math.min(a.right, b.right) - Math.max(a.left, b.left);
+        int ih = Math.min(a.bottom, b.bottom) - Math.max(a.top, b.top);
+        if (iw <= 0 || ih <= 0) return 0f;
+        float inter = (float) iw * ih;
+        float union = (float) a.width() * a.height() + (float) b.width() * b.height() - inter;
+        return union <= 0f ? 0f : inter / union;
+    }
+}
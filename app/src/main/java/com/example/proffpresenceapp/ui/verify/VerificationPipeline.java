@@ -0,0 +1,217 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import com.example.proffpresenceapp.ui.ml.FaceEmbeddingProcessor;
+import com.example.proffpresenceapp.ui.ml.ModelDescriptor;
+import com.example.proffpresenceapp.ui.ml.FaceAligner;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Staged analyzer: detect -> extract -> embed.
+ * <ol>
+ *   <li>ML Kit detection with the current {@link DetectorProfiles} mode; its listeners run on a
+ *       dedicated detect executor (never the UI thread).</li>
+ *   <li>If the listener wants the face, the landmark-aligned, normalized input tensor is sampled
+ *       out of the YUV planes and the ImageProxy is closed right away, so the camera can deliver
+ *       the next frame.</li>
+ *   <li>Embedding + matching run on one inference thread fed by a small bounded queue;
+ *       when it is full the oldest patch is dropped (freshest frame wins).</li>
+ * </ol>
+ */
+public class VerificationPipeline implements ImageAnalysis.Analyzer {
+
+    private static final String TAG = "VerifyPipeline";
+
+    /**
+     * {@link #onFace} / {@link #onNoFace} run on the detect thread, {@link #onEmbedded} on the
+     * inference thread; keep shared state safe accordingly.
+     */
+    public interface Listener {
+        /** First face of a frame (image still open). Return true to embed it. */
+        boolean onFace(@NonNull Face face, @NonNull ImageProxy image);
+        void onNoFace();
+        /** {@code probe} is L2-normalized and reused; copy it if you keep it. */
+        void onEmbedded(@NonNull Face face, @NonNull float[] probe);
+    }
+
+    /** One extracted input tensor travelling from the detect stage to the inference stage. */
+    private static final class Job {
+        final float[] tensor;
+        Face face;
+        Job(int size) { tensor = new float[size * size * 3]; }
+    }
+
+    private static final int EMBED_QUEUE = 2;
+
+    private final DetectorProfiles detectors;
+    private final FaceEmbeddingProcessor embedder;
+    private final Listener listener;
+    private final int inputSize;
+    private final float[] probe;          // inference thread only
+    private final FaceAligner aligner;    // detect thread only
+
+    private final ExecutorService detectExec = Executors.newSingleThreadExecutor();
+    private final ArrayBlockingQueue<Job> embedQueue = new ArrayBlockingQueue<>(EMBED_QUEUE);
+    private final ArrayBlockingQueue<Job> freeJobs = new ArrayBlockingQueue<>(EMBED_QUEUE + 2);
+    private final AtomicInteger detectInFlight = new AtomicInteger();
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final Thread inference;
+    private volatile boolean running = true;
+    /**
+     * Where ML Kit listeners run: the detect thread, or the completing thread once {@link #close}
+     * has shut it down, so a detection still in flight always reaches image.close().
+     */
+    private final Executor listenerExec = r -> {
+        if (running) {
+            try { detectExec.execute(r); return; }
+            catch (RejectedExecutionException closing) { /* fall through */ }
+        }
+        r.run();
+    };
+
+    // Last stage timings (ms), for on-device tuning
+    private volatile float lastDetectMs, lastEmbedMs;
+
+    public VerificationPipeline(@NonNull DetectorProfiles detectors,
+                                @NonNull FaceEmbeddingProcessor embedder,
+                                @NonNull Listener listener) {
+        this.detectors = detectors;
+        this.embedder = embedder;
+        this.listener = listener;
+        this.inputSize = embedder.getInputSize();
+        this.probe = new float[embedder.getOutputLength()];
+        this.aligner = new FaceAligner(inputSize);
+        for (int i = 0; i < EMBED_QUEUE + 2; i++) freeJobs.add(new Job(inputSize));
+        inference = new Thread(this::inferenceLoop, "face-inference");
+        inference.start();
+    }
+
+    /* ---------------- stage 1: detect ---------------- */
+
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        if (!running || image.getImage() == null) { image.close(); return; }
+        InputImage ii = InputImage.fromMediaImage(image.getImage(),
+                image.getImageInfo().getRotationDegrees());
+        DetectorProfiles.Mode mode = detectors.mode();
+        long t0 = SystemClock.elapsedRealtime();
+        detectInFlight.incrementAndGet();
+        try {
+            detectors.detector(mode).process(ii)
+                    .addOnSuccessListener(listenerExec, faces -> {
+                        lastDetectMs = SystemClock.elapsedRealtime() - t0;
+                        detectors.record(mode, lastDetectMs);
+                        onDetected(faces, image);
+                    })
+                    .addOnFailureListener(listenerExec, e -> Log.w(TAG, "detect failed", e))
+                    .addOnCompleteListener(listenerExec, t -> {
+                        detectInFlight.decrementAndGet();
+                        image.close();     // right after extraction, before inference
+                    });
+        } catch (Exception e) {
+            detectInFlight.decrementAndGet();
+            image.close();
+        }
+    }
+
+    /* ---------------- stage 2: extract + release ---------------- */
+
+    private void onDetected(List<Face> faces, ImageProxy image) {
+        if (!running) return;
+        if (faces.isEmpty()) { listener.onNoFace(); return; }
+        Face face = faces.get(0);
+        if (!listener.onFace(face, image)) return;
+
+        Job job = obtainJob();
+        ModelDescriptor d = embedder.getDescriptor();
+        // Box-crop fallbacks would score low against a landmark-aligned gallery; skip them
+        boolean ok = aligner.alignToTensor(image, face, d.mean, d.std, job.tensor, null, d.aligned);
+        if (!ok || (d.aligned && !aligner.lastAligned())) { freeJobs.offer(job); return; }
+        job.face = face;
+
+        // Drop-oldest hand-off; the complete listener then releases the frame
+        while (!embedQueue.offer(job)) {
+            Job old = embedQueue.poll();
+            if (old != null) { dropped.incrementAndGet(); recycle(old); }
+        }
+    }
+
+    private Job obtainJob() {
+        Job j = freeJobs.poll();
+        if (j != null) return j;
+        // All buffers queued: steal the oldest queued patch
+        j = embedQueue.poll();
+        if (j != null) { dropped.incrementAndGet(); return j; }
+        return new Job(inputSize);           // inference thread still holds one; rare
+    }
+
+    private void recycle(Job j) {
+        j.face = null;
+        freeJobs.offer(j);
+    }
+
+    /* ---------------- stage 3: embed + match ---------------- */
+
+    private void inferenceLoop() {
+        while (running) {
+            Job job;
+            try { job = embedQueue.poll(200, TimeUnit.MILLISECONDS); }
+            catch (InterruptedException e) { break; }
+            if (job == null) continue;
+            try {
+                long t0 = SystemClock.elapsedRealtime();
+                float[] v = embedder.embedTensor(job.tensor, probe);
+                lastEmbedMs = SystemClock.elapsedRealtime() - t0;
+                if (v != null && running) listener.onEmbedded(job.face, probe);
+            } catch (Exception e) {
+                Log.w(TAG, "embed failed", e);
+            } finally {
+                recycle(job);
+            }
+        }
+    }
+
+    /* ---------------- stats / lifecycle ---------------- */
+
+    /** Detections submitted to ML Kit and not yet completed. */
+    public int detectDepth() { return detectInFlight.get(); }
+
+    /** Patches waiting for the inference thread. */
+    public int embedDepth() { return embedQueue.size(); }
+
+    /** Patches discarded by drop-oldest since start. */
+    public int droppedCount() { return dropped.get(); }
+
+    public float lastDetectMs() { return lastDetectMs; }
+    public float lastEmbedMs() { return lastEmbedMs; }
+
+    /**
+     * Stop both stages. Detections still in flight skip extraction and close their frames on
+     * completion. The detectors and embedder belong to the caller.
+     */
+    public void close() {
+        running = false;
+        inference.interrupt();
+        embedQueue.clear();
+        detectExec.shutdown();
+    }
+}
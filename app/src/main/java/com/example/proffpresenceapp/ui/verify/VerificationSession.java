@@ -0,0 +1,224 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
+
+import com.example.proffpresenceapp.ui.liveness.LivenessGuard;
+import com.google.mlkit.vision.face.Face;
+
+import java.util.Objects;
+
+/**
+ * One liveness + identity attempt bound to a single ML Kit tracking ID.
+ * <p>
+ * Sequential mode is the original flow: identity frames are only embedded after liveness passes.
+ * Concurrent mode also embeds the frontal, eyes-open frames seen during the blink / turn challenge,
+ * so the identity decision is usually ready the moment liveness passes. Either way the session
+ * fails if the tracking ID changes (a different face took over mid-attempt). Switching detector
+ * clients restarts ML Kit's IDs, so {@link #rebindTrack()} opens a window of
+ * {@link #REBIND_WINDOW} frames in which the new client's ID takes over, provided the face neither
+ * jumps nor changes size between frames. The two clients number independently, so the new ID may
+ * equal the old one; seen for the whole window, it is taken over as well. Frames still in flight
+ * with the old ID are dropped, not scored, until the window closes.
+ * <p>
+ * A frame near-identical to the last embedded one is not run through the model. Once every
+ * embedded frame of the track cleared the strong threshold ({@link TrackCache#isSettled}), such a
+ * still frame settles identity as accepted instead of waiting for the policy to see more motion.
+ * <p>
+ * {@link #onFace} is called from the detect thread and {@link #onScore} from the inference thread.
+ */
+public class VerificationSession {
+
+    public enum Outcome { PENDING, ACCEPTED, REJECTED, TRACK_CHANGED }
+
+    public interface Callback {
+        void onHint(@NonNull String hint);
+        /** Called once, from whichever thread completed the attempt. */
+        void onOutcome(@NonNull Outcome outcome);
+    }
+
+    private DecisionPolicy policy;
+    private float settleAt = Float.NaN;           // strong threshold; NaN never settles
+    private final FrameQualityGate gate;
+    private final boolean concurrent;
+    private final Callback cb;
+
+    private final LivenessGuard liveness = new LivenessGuard();
+    private final FrameQualityGate.Verdict verdict = new FrameQualityGate.Verdict();
+    private final TrackCache track = new TrackCache();
+
+    private boolean bound = false;
+    @Nullable private Integer trackingId;
+    @Nullable private Integer prevTrackingId;     // old client's ID, only while the window is open
+    private boolean rebinding = false;
+    private int rebindFrames = 0;                 // detect frames since rebindTrack()
+    private float lastCx = -1f, lastCy = -1f;     // face centre, fraction of the upright frame
+    private float lastW = -1f;                    // face width, fraction of the upright frame
+
+    // Rebind after a detector switch: frames in the window, max centre jump and size change per frame
+    private static final int   REBIND_WINDOW = 5;
+    private static final float REBIND_MAX_SHIFT = 0.08f;
+    private static final float REBIND_MAX_SCALE = 1.25f;
+    private boolean livenessPassed = false;
+    private DecisionPolicy.Decision identity = DecisionPolicy.Decision.CONTINUE;
+    private Outcome outcome = Outcome.PENDING;
+
+    public VerificationSession(@NonNull DecisionPolicy policy, @NonNull FrameQualityGate gate,
+                               boolean concurrent, @NonNull Callback cb) {
+        this.policy = policy;
+        this.gate = gate;
+        this.concurrent = concurrent;
+        this.cb = cb;
+    }
+
+    /**
+     * Replaces the identity policy, e.g. for another model's thresholds, and the model's strong
+     * threshold used to settle still tracks; takes effect with reset().
+     */
+    public synchronized void usePolicy(@NonNull DecisionPolicy policy, float strongThreshold) {
+        this.policy = policy;
+        this.settleAt = strongThreshold;
+    }
+
+    public synchronized void reset() {
+        liveness.reset();
+        track.reset();
+        policy.reset();
+        bound = false;
+        trackingId = null;
+        prevTrackingId = null;
+        rebinding = false;
+        rebindFrames = 0;
+        lastCx = lastCy = lastW = -1f;
+        livenessPassed = false;
+        identity = DecisionPolicy.Decision.CONTINUE;
+        outcome = Outcome.PENDING;
+    }
+
+    /** Detect thread: advance liveness; returns true if this frame should be embedded. */
+    public synchronized boolean onFace(@NonNull Face face, @NonNull ImageProxy image) {
+        if (outcome != Outcome.PENDING) return false;
+        if (!rebinding && isStale(face.getTrackingId())) return false;   // old client, late result
+        if (!followTrack(face, image)) { complete(Outcome.TRACK_CHANGED); return false; }
+        if (isStale(face.getTrackingId())) return false;                  // rebind not settled yet
+
+        if (!livenessPassed) {
+            LivenessGuard.Result lr = liveness.update(face.getLeftEyeOpenProbability(),
+                    face.getRightEyeOpenProbability(), face.getHeadEulerAngleY());
+            if (lr.passed) {
+                livenessPassed = true;
+                if (identity == DecisionPolicy.Decision.ACCEPT) { complete(Outcome.ACCEPTED); return false; }
+                cb.onHint("Liveness OK. Hold still for identity…");
+            } else {
+                cb.onHint(lr.hint);
+            }
+            // During the challenge only silently pick up good frames; the liveness hint wins
+            return concurrent && identity == DecisionPolicy.Decision.CONTINUE
+                    && gate.check(face, image, verdict).ok && embedOrSettle(face);
+        }
+
+        if (identity != DecisionPolicy.Decision.CONTINUE) return false;
+        if (!gate.check(face, image, verdict).ok) {
+            cb.onHint(verdict.reason.hint);
+            return false;
+        }
+        if (!embedOrSettle(face)) {
+            if (identity == DecisionPolicy.Decision.ACCEPT) complete(Outcome.ACCEPTED);
+            return false;
+        }
+        return true;
+    }
+
+    /** Inference thread: feed one embedded frame's match result. */
+    public synchronized void onScore(@NonNull Face face, float bestScore, boolean frameAccepted) {
+        if (outcome != Outcome.PENDING || identity != DecisionPolicy.Decision.CONTINUE) return;
+        Integer id = face.getTrackingId();
+        if (isStale(id)) return;   // detected by the previous client before the switch
+        if (!sameTrack(id)) { complete(Outcome.TRACK_CHANGED); return; }
+
+        track.onEmbedded(face, bestScore, frameAccepted);
+        identity = policy.onFrame(bestScore, frameAccepted);
+        if (identity == DecisionPolicy.Decision.REJECT) {
+            complete(Outcome.REJECTED);
+        } else if (identity == DecisionPolicy.Decision.ACCEPT) {
+            if (livenessPassed) complete(Outcome.ACCEPTED);   // else wait for the challenge
+        } else if (livenessPassed) {
+            cb.onHint("Verifying… (" + policy.progress() + ")");
+        }
+    }
+
+    public synchronized boolean isDone() { return outcome != Outcome.PENDING; }
+
+    public synchronized boolean isLivenessPassed() { return livenessPassed; }
+
+    @NonNull
+    public synchronized Outcome outcome() { return outcome; }
+
+    /** The detector client changed: the next new tracking ID may replace the current one. */
+    public synchronized void rebindTrack() {
+        if (!bound) return;
+        prevTrackingId = trackingId;
+        rebinding = true;
+        rebindFrames = 0;
+    }
+
+    /**
+     * False for a frame near-identical to the last embedded one: same evidence, skip the model.
+     * If the track is already settled that frame decides identity as accepted.
+     */
+    private boolean embedOrSettle(Face face) {
+        if (!track.shouldReuse(face)) return true;
+        if (track.isSettled(settleAt)) identity = DecisionPolicy.Decision.ACCEPT;
+        return false;
+    }
+
+    /** Track check for a detect-thread frame, including rebinds after a detector switch. */
+    private boolean followTrack(Face face, ImageProxy image) {
+        Integer id = face.getTrackingId();
+        Rect b = face.getBoundingBox();
+        int rot = image.getImageInfo().getRotationDegrees();
+        boolean swap = rot == 90 || rot == 270;
+        float fw = swap ? image.getHeight() : image.getWidth();
+        float cx = b.exactCenterX() / fw;
+        float cy = b.exactCenterY() / (swap ? image.getWidth() : image.getHeight());
+        float w = b.width() / fw;
+
+        boolean ok;
+        if (prevTrackingId != null && ++rebindFrames > REBIND_WINDOW) prevTrackingId = null;
+        if (rebinding) {
+            // Every frame in the window must continue the old face; the new ID binds on the first
+            // frame it differs from the old one, or at the end of the window if it never does
+            ok = Math.abs(cx - lastCx) <= REBIND_MAX_SHIFT && Math.abs(cy - lastCy) <= REBIND_MAX_SHIFT
+                    && w <= lastW * REBIND_MAX_SCALE && w * REBIND_MAX_SCALE >= lastW;
+            if (ok && id != null && (!id.equals(prevTrackingId) || rebindFrames >= REBIND_WINDOW)) {
+                trackingId = id;
+                rebinding = false;
+            } else if (rebindFrames >= REBIND_WINDOW) {
+                ok = false;
+            }
+        } else {
+            ok = sameTrack(id);
+        }
+        lastCx = cx; lastCy = cy; lastW = w;
+        return ok;
+    }
+
+    /** Frame carrying the previous client's ID while it is not (also) the current one. */
+    private boolean isStale(@Nullable Integer id) {
+        return prevTrackingId != null && prevTrackingId.equals(id) && (rebinding || !prevTrackingId.equals(trackingId));
+    }
+
+    /** First face binds the session; a different non-null tracking ID afterwards breaks it. */
+    private boolean sameTrack(@Nullable Integer id) {
+        if (!bound) { bound = true; trackingId = id; return true; }
+        return trackingId == null || id == null || Objects.equals(trackingId, id);
+    }
+
+    private void complete(Outcome o) {
+        outcome = o;
+        cb.onOutcome(o);
+    }
+}
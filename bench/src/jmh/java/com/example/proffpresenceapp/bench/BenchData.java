@@ -0,0 +1,35 @@
+package com.example.proffpresenceapp.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic synthetic inputs, so runs on different commits see the same data. */
+final class BenchData {
+
+    static final int DIM = 128;
+    static final long SEED = 42L;
+
+    private BenchData() {}
+
+    static float[] vector(Random r, int dim) {
+        float[] v = new float[dim];
+        for (int i = 0; i < dim; i++) v[i] = (float) r.nextGaussian();
+        return v;
+    }
+
+    /** {@code n} random unit vectors. */
+    static List<float[]> unitVectors(Random r, int n, int dim) {
+        List<float[]> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(unit(vector(r, dim)));
+        return out;
+    }
+
+    static float[] unit(float[] v) {
+        double s = 0;
+        for (float f : v) s += (double) f * f;
+        float inv = (float) (1.0 / Math.sqrt(s));
+        for (int i = 0; i < v.length; i++) v[i] *= inv;
+        return v;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.proffpresenceapp.bench;
+
+import com.example.proffpresenceapp.ui.ml.FaceGallery;
+import com.example.proffpresenceapp.ui.ml.FaceMatchUtils;
+import com.example.proffpresenceapp.ui.ml.FaceMatcher;
+import com.example.proffpresenceapp.ui.ml.FaceTemplates;
+import com.example.proffpresenceapp.ui.ml.Matcher;
+import com.example.proffpresenceapp.ui.ml.QuantizedGallery;
+import com.example.proffpresenceapp.ui.ml.TemplateBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * One probe against one user's gallery, per gallery size. The probe is an impostor (a random
+ * vector), so no rule exits early on a strong match and every row is scored: the per-frame
+ * worst case of the verification loop.
+ */
+@State(Scope.Thread)
+public class GalleryScoringBench {
+
+    // The built-in model's thresholds and FaceRecognitionActivity's vote count
+    private static final float STRONG = 0.60f;
+    private static final float SECONDARY = 0.50f;
+    private static final int MIN_AGREE = 7;
+
+    @Param({"5", "20", "100", "1000"})
+    public int gallerySize;
+
+    private float[] probe;
+    private List<float[]> rows;
+    private FaceGallery packed;
+    private QuantizedGallery quantized;
+    private FaceTemplates templates;
+    private final FaceGallery.Scores scratch = new FaceGallery.Scores();
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchData.SEED);
+        probe = BenchData.unit(BenchData.vector(r, BenchData.DIM));
+        rows = BenchData.unitVectors(r, gallerySize, BenchData.DIM);
+        packed = new FaceGallery(BenchData.DIM, gallerySize);
+        for (float[] v : rows) packed.add(v);
+        quantized = QuantizedGallery.of(packed);
+        templates = TemplateBuilder.build(packed, null);
+    }
+
+    @Benchmark
+    public boolean acceptForUserList() {
+        return FaceMatcher.acceptForUser(probe, rows, STRONG, SECONDARY, MIN_AGREE);
+    }
+
+    @Benchmark
+    public boolean acceptForUserPacked() {
+        return FaceMatcher.acceptForUser(probe, packed, STRONG, SECONDARY, MIN_AGREE, scratch);
+    }
+
+    @Benchmark
+    public boolean acceptForUserInt8() {
+        return FaceMatcher.acceptForUser(probe, quantized, STRONG, SECONDARY, MIN_AGREE, scratch);
+    }
+
+    @Benchmark
+    public boolean acceptForUserTemplates() {
+        return FaceMatcher.acceptForUser(probe, templates, STRONG, SECONDARY, MIN_AGREE, scratch);
+    }
+
+    @Benchmark
+    public boolean isMatch() {
+        return FaceMatchUtils.isMatch(probe, rows, STRONG);
+    }
+
+    @Benchmark
+    public float bestCosine() {
+        return Matcher.bestCosine(probe, rows);
+    }
+}
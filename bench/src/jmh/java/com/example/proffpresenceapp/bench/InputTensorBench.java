@@ -0,0 +1,40 @@
+package com.example.proffpresenceapp.bench;
+
+import com.example.proffpresenceapp.ui.ml.InputTensors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/** ARGB crop -> normalized NHWC float input, into a direct native-order buffer as the interpreter gets. */
+@State(Scope.Thread)
+public class InputTensorBench {
+
+    @Param({"112"})
+    public int inputSize;
+
+    private int[] pixels;
+    private FloatBuffer input;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchData.SEED);
+        int n = inputSize * inputSize;
+        pixels = new int[n];
+        for (int i = 0; i < n; i++) pixels[i] = 0xff000000 | r.nextInt(0x1000000);
+        input = ByteBuffer.allocateDirect(n * 3 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Benchmark
+    public FloatBuffer fromArgb() {
+        InputTensors.fromArgb(pixels, pixels.length, 127.5f, 127.5f, input);
+        return input;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.proffpresenceapp.bench;
+
+import com.example.proffpresenceapp.ui.ml.LinearModel;
+import com.example.proffpresenceapp.ui.ml.RandomForestModel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * ETA models on FeatureExtractor's 5 features. The forest is random but complete, built through
+ * RandomForestModel.fromMap like the exported one.
+ */
+@State(Scope.Thread)
+public class ModelPredictBench {
+
+    private static final int FEATURES = 5;
+    // Rough feature ranges, so splits go both ways
+    private static final double[] THRESHOLD_SCALE = { 10, 24, 7, 40, 1200 };
+
+    @Param({"50"})
+    public int trees;
+
+    @Param({"8"})
+    public int depth;
+
+    private RandomForestModel forest;
+    private LinearModel linear;
+    private double[] x;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(BenchData.SEED);
+        forest = new RandomForestModel();
+        for (int t = 0; t < trees; t++) forest.trees.add(RandomForestModel.fromMap(tree(r, depth)));
+
+        linear = new LinearModel();
+        linear.mean = new double[FEATURES];
+        linear.std = new double[FEATURES];
+        linear.weights = new double[FEATURES];
+        for (int i = 0; i < FEATURES; i++) {
+            linear.mean[i] = r.nextGaussian();
+            linear.std[i] = 0.5 + r.nextDouble();
+            linear.weights[i] = r.nextGaussian();
+        }
+        linear.bias = 600;
+
+        x = new double[] { 4.2, 8, 2, 18.0, 540.0 };   // km, hour, weekday, km/h, s
+    }
+
+    @Benchmark
+    public double randomForest() {
+        return forest.predict(x);
+    }
+
+    @Benchmark
+    public double linear() {
+        return linear.predict(x);
+    }
+
+    /** A full tree of the given depth in the Firebase export's map form. */
+    private static Map<String, Object> tree(Random r, int depth) {
+        Map<String, Object> m = new HashMap<>();
+        if (depth == 0) {
+            m.put("kind", "leaf");
+            m.put("value", 300 + r.nextDouble() * 900);
+            return m;
+        }
+        int attr = r.nextInt(FEATURES);
+        m.put("kind", "node");
+        m.put("attribute", attr);
+        m.put("threshold", THRESHOLD_SCALE[attr] * r.nextDouble());
+        m.put("left", tree(r, depth - 1));
+        m.put("right", tree(r, depth - 1));
+        return m;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.proffpresenceapp.bench;
+
+import com.example.proffpresenceapp.ui.ml.EmbeddingCodec;
+import com.example.proffpresenceapp.ui.ml.FaceMatchUtils;
+import com.example.proffpresenceapp.ui.ml.FaceMatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/** Per-embedding work outside scoring: L2 normalization and the stored base64 row forms. */
+@State(Scope.Thread)
+public class VectorCodecBench {
+
+    @Param({"F32", "F16", "INT8"})
+    public EmbeddingCodec.Dtype dtype;
+
+    private float[] raw;
+    private float[] work;
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        raw = BenchData.vector(new Random(BenchData.SEED), BenchData.DIM);
+        work = new float[raw.length];
+        encoded = EmbeddingCodec.encode(raw, dtype);
+    }
+
+    /** Both normalizers copy first, so each call sees the same unnormalized input. */
+    @Benchmark
+    public float[] l2normFaceMatcher() {
+        System.arraycopy(raw, 0, work, 0, raw.length);
+        return FaceMatcher.l2norm(work);
+    }
+
+    @Benchmark
+    public float[] l2normFaceMatchUtils() {
+        System.arraycopy(raw, 0, work, 0, raw.length);
+        FaceMatchUtils.normalize(work);
+        return work;
+    }
+
+    @Benchmark
+    public String encode() {
+        return EmbeddingCodec.encode(raw, dtype);
+    }
+
+    @Benchmark
+    public float[] decode() {
+        return EmbeddingCodec.decode(encoded, dtype);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.proffpresenceapp.ui.attendance;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Rules of an attendance session, without the database: day bucketing, when ENTER opens a new
+ * session, and the rows written on enter / verification / exit. AttendanceHelper does the I/O.
+ * <p>
+ * presenceOpen/&lt;uid&gt; = {@link Open}; attendance/&lt;date&gt;/&lt;uid&gt;/&lt;key&gt; = the session row.
+ */
+public final class AttendanceSessions {
+
+    private AttendanceSessions() {}
+
+    /** The open-session pointer. A session always stays in the day bucket it was opened in. */
+    public static final class Open {
+        @Nullable public final String date;
+        @Nullable public final String key;
+        @Nullable public final Long start;
+
+        public Open(@Nullable Object date, @Nullable Object key, @Nullable Long start) {
+            this.date = date != null ? String.valueOf(date) : null;
+            this.key = key != null ? String.valueOf(key) : null;
+            this.start = start;
+        }
+
+        public boolean hasKey() { return key != null && !key.isEmpty(); }
+
+        /** Enough to close: a row to write into and a start to measure from. */
+        public boolean isClosable() { return hasKey() && date != null && start != null; }
+    }
+
+    /** Local day yyyy-MM-dd in {@code tz} (matches the dashboard). */
+    @NonNull
+    public static String dayKey(long ms, @NonNull TimeZone tz) {
+        Calendar c = Calendar.getInstance(tz);
+        c.setTimeInMillis(ms);
+        return String.format(Locale.US, "%04d-%02d-%02d",
+                c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1, c.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /** ENTER opens a session unless one is already open for today (repeated enters are no-ops). */
+    public static boolean shouldOpen(@Nullable Open open, @NonNull String today) {
+        return open == null || !today.equals(open.date);
+    }
+
+    /** New session row; face verification can upgrade "method" later. */
+    @NonNull
+    public static Map<String, Object> startRow(long now, @NonNull String geofenceId) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("start", now);
+        row.put("status", "present");
+        row.put("method", "geofence");
+        row.put("geofenceId", geofenceId);
+        row.put("timestamp", now);
+        return row;
+    }
+
+    @NonNull
+    public static Map<String, Object> openPointer(@NonNull String day, @NonNull String key, long now) {
+        Map<String, Object> open = new HashMap<>();
+        open.put("date", day);
+        open.put("key", key);
+        open.put("start", now);
+        return open;
+    }
+
+    /** Update for the open row after verification, e.g. method "geofence+liveness+fr". */
+    @NonNull
+    public static Map<String, Object> presentUpdate(@NonNull String method, long now) {
+        Map<String, Object> upd = new HashMap<>();
+        upd.put("method", method);
+        upd.put("timestamp", now);
+        return upd;
+    }
+
+    /** Update that closes the row; a clock that went backwards gives 0, never a negative duration. */
+    @NonNull
+    public static Map<String, Object> closeUpdate(long start, long end) {
+        Map<String, Object> upd = new HashMap<>();
+        upd.put("end", end);
+        upd.put("durationMs", Math.max(0L, end - start));
+        return upd;
+    }
+}
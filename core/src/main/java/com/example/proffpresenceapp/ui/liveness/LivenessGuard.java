@@ -1,11 +1,16 @@
 package com.example.proffpresenceapp.ui.liveness;
 
-import com.google.mlkit.vision.face.Face;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.proffpresenceapp.ui.platform.Clock;
+import com.example.proffpresenceapp.ui.platform.Platform;
 
 /**
- * Active liveness check using ML Kit face attributes.
+ * Active liveness check on face attributes (ML Kit's eye-open probabilities and head yaw).
  * Flow: user must (1) BLINK once, then (2) TURN HEAD left or right past a yaw threshold,
  * all within a time window. If too slow/no progress, it resets with a helpful hint.
+ * Takes plain values and a {@link Clock}, so the state machine runs without a camera.
  */
 public class LivenessGuard {
 
@@ -19,9 +24,10 @@ public class LivenessGuard {
 
     private enum Stage { NEED_BLINK, NEED_TURN, DONE }
 
+    private final Clock clock;
     private Stage stage = Stage.NEED_BLINK;
-    private long startMs = System.currentTimeMillis();
-    private long lastProgressMs = startMs;
+    private long startMs;
+    private long lastProgressMs;
 
     // ---- Tunables (adjust if needed) ----
     private final long maxSessionMs = 8000;  // 8s total to finish liveness
@@ -38,9 +44,22 @@ public class LivenessGuard {
     // Internal blink tracking
     private boolean sawEyesClosed = false;
 
-    /** Feed each detected face here—call this for every frame you get from ML Kit. */
-    public Result update(Face f) {
-        long now = System.currentTimeMillis();
+    public LivenessGuard() { this(Platform.clock()); }
+
+    public LivenessGuard(@NonNull Clock clock) {
+        this.clock = clock;
+        reset();
+    }
+
+    /**
+     * Feed each detected face here—call this for every frame you get from ML Kit.
+     *
+     * @param l   left eye open probability (null when not classified)
+     * @param r   right eye open probability
+     * @param yaw head Euler Y in degrees, left negative / right positive
+     */
+    public Result update(@Nullable Float l, @Nullable Float r, float yaw) {
+        long now = clock.nowMs();
 
         if (now - startMs > maxSessionMs) {
             reset();
@@ -53,8 +72,6 @@ public class LivenessGuard {
 
         switch (stage) {
             case NEED_BLINK: {
-                Float l = f.getLeftEyeOpenProbability();
-                Float r = f.getRightEyeOpenProbability();
                 if (l != null && r != null) {
                     boolean eyesClosed = (l <= eyeCloseProb && r <= eyeCloseProb);
                     boolean eyesOpen   = (l >= eyeOpenProb  && r >= eyeOpenProb);
@@ -71,7 +88,6 @@ public class LivenessGuard {
                 return Result.need("Please blink.");
             }
             case NEED_TURN: {
-                float yaw = f.getHeadEulerAngleY(); // ML Kit: left negative, right positive
                 if (yaw <= yawLeftDeg || yaw >= yawRightDeg) {
                     stage = Stage.DONE;
                     lastProgressMs = now;
@@ -88,7 +104,7 @@ public class LivenessGuard {
     /** Reset the state machine (call before starting a new attempt). */
     public void reset() {
         stage = Stage.NEED_BLINK;
-        startMs = System.currentTimeMillis();
+        startMs = clock.nowMs();
         lastProgressMs = startMs;
         sawEyesClosed = false;
     }
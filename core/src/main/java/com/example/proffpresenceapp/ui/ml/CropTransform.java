@@ -0,0 +1,63 @@
+package com.example.proffpresenceapp.ui.ml;
+
+/**
+ * Output pixel -> upright source coordinate mapping used when cropping a face straight out of a
+ * camera frame: {@code x' = ax*x + bx*y + tx}, {@code y' = ay*x + by*y + ty}, evaluated at output
+ * pixel centres, with the result clamped to the pixel centres of a source rectangle.
+ * <p>
+ * {@link #setSimilarity} is the landmark alignment (clamped to the frame). {@link #setLegacyBox}
+ * reproduces the crop mfn-112-v1 galleries were enrolled with: the face box grown by an integer
+ * margin on each side, clamped to the frame, then stretched to size x size with separate x and y
+ * scales (Bitmap.createBitmap + createScaledBitmap with filtering), sampling clamped to that crop.
+ */
+public final class CropTransform {
+
+    public float ax, bx, tx;
+    public float ay, by, ty;
+    /** Sample clamp in upright pixel-centre coordinates. */
+    public float minX, minY, maxX, maxY;
+
+    /** Rotation + uniform scale (a, b) and translation, clamped to the whole upright frame. */
+    public void setSimilarity(float a, float b, float tx, float ty, int frameW, int frameH) {
+        ax = a;  bx = -b; this.tx = tx;
+        ay = b;  by = a;  this.ty = ty;
+        clampTo(0, 0, frameW, frameH);
+    }
+
+    /**
+     * The old box crop of {@code [left, right) x [top, bottom)} in an upright frame.
+     *
+     * @return false if the clamped rectangle is empty
+     */
+    public boolean setLegacyBox(int left, int top, int right, int bottom,
+                                int frameW, int frameH, int size, float margin) {
+        int extraW = (int) ((right - left) * margin);
+        int extraH = (int) ((bottom - top) * margin);
+        int l = Math.max(0, left - extraW);
+        int t = Math.max(0, top - extraH);
+        int r = Math.min(frameW, right + extraW);
+        int b = Math.min(frameH, bottom + extraH);
+        if (r - l <= 0 || b - t <= 0) return false;
+        ax = (r - l) / (float) size; bx = 0f; tx = l;
+        ay = 0f; by = (b - t) / (float) size; ty = t;
+        clampTo(l, t, r, b);
+        return true;
+    }
+
+    /** Upright x for the output point (cx, cy), e.g. (ox + 0.5, oy + 0.5). */
+    public float x(float cx, float cy) {
+        float v = ax * cx + bx * cy + tx;
+        return v < minX ? minX : (v > maxX ? maxX : v);
+    }
+
+    /** Upright y for the output point (cx, cy). */
+    public float y(float cx, float cy) {
+        float v = ay * cx + by * cy + ty;
+        return v < minY ? minY : (v > maxY ? maxY : v);
+    }
+
+    private void clampTo(int l, int t, int r, int b) {
+        minX = l + 0.5f; maxX = r - 0.5f;
+        minY = t + 0.5f; maxY = b - 0.5f;
+    }
+}
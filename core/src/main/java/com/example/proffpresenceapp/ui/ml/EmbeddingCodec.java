@@ -0,0 +1,227 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Base64;
+
+/**
+ * Scalar-quantized embedding storage for faceEmbeddings rows ("vec" + "dtype").
+ * <ul>
+ *   <li>f32: 4 bytes/dim, little-endian (legacy rows have no dtype and are f32)</li>
+ *   <li>f16: 2 bytes/dim, IEEE half precision</li>
+ *   <li>i8 : float32 scale + 1 byte/dim, symmetric per-vector (v ~= q * scale)</li>
+ * </ul>
+ * Rows are dequantized to float on read and verification scores them in int8 through
+ * {@link QuantizedGallery}; {@link #compare} reports the cosine cost of each form.
+ * Builds before {@link #FIRST_DTYPE_READER} ignore "dtype" and read every row as f32, so rows are
+ * only written compact once those clients are gone ({@link #rowDtype}).
+ */
+public final class EmbeddingCodec {
+
+    public enum Dtype {
+        F32("f32"), F16("f16"), INT8("i8");
+
+        public final String tag;
+        Dtype(String tag) { this.tag = tag; }
+
+        /** Missing/unknown tag = legacy float32 row. */
+        @NonNull
+        public static Dtype fromTag(@Nullable Object tag) {
+            if (tag != null) for (Dtype d : values()) if (d.tag.equals(String.valueOf(tag))) return d;
+            return F32;
+        }
+    }
+
+    /** First client build (versionCode) that honours a row's "dtype". */
+    public static final int FIRST_DTYPE_READER = 2;
+
+    /** Packed faceGalleries blobs postdate the dtype tag, so every reader decodes int8 there. */
+    public static final Dtype BLOB_DTYPE = Dtype.INT8;
+
+    /**
+     * Row dtype to write while the oldest client still in use is {@code minClientVersion}: int8
+     * (~4x smaller) once every reader understands it, float32 until then.
+     */
+    @NonNull
+    public static Dtype rowDtype(int minClientVersion) {
+        return minClientVersion >= FIRST_DTYPE_READER ? Dtype.INT8 : Dtype.F32;
+    }
+
+    private EmbeddingCodec() {}
+
+    @Nullable
+    public static String encode(@Nullable float[] v, @NonNull Dtype dtype) {
+        if (v == null) return null;
+        switch (dtype) {
+            case F16: {
+                ByteBuffer bb = ByteBuffer.allocate(v.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+                for (float f : v) bb.putShort(floatToHalf(f));
+                return Base64.getEncoder().encodeToString(bb.array());
+            }
+            case INT8: {
+                byte[] q = new byte[v.length];
+                float scale = quantize(v, q);
+                ByteBuffer bb = ByteBuffer.allocate(4 + v.length).order(ByteOrder.LITTLE_ENDIAN);
+                bb.putFloat(scale).put(q);
+                return Base64.getEncoder().encodeToString(bb.array());
+            }
+            case F32:
+            default:
+                return encodeF32(v);
+        }
+    }
+
+    /** Decode (and dequantize) a stored row back to floats. */
+    @Nullable
+    public static float[] decode(@Nullable String s, @NonNull Dtype dtype) {
+        if (s == null) return null;
+        if (dtype == Dtype.F32) return decodeF32(s);
+        byte[] bytes;
+        try { bytes = Base64.getDecoder().decode(s); }
+        catch (IllegalArgumentException bad) { return null; }
+        ByteBuffer bb = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if (dtype == Dtype.F16) {
+            if ((bytes.length & 1) != 0) return null;
+            float[] out = new float[bytes.length / 2];
+            for (int i = 0; i < out.length; i++) out[i] = halfToFloat(bb.getShort());
+            return out;
+        }
+        if (bytes.length < 5) return null;
+        float scale = bb.getFloat();
+        float[] out = new float[bytes.length - 4];
+        for (int i = 0; i < out.length; i++) out[i] = bb.get() * scale;
+        return out;
+    }
+
+    @NonNull
+    public static String encodeF32(@NonNull float[] v) {
+        ByteBuffer bb = ByteBuffer.allocate(v.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (float f : v) bb.putFloat(f);
+        return Base64.getEncoder().encodeToString(bb.array());
+    }
+
+    /** Little-endian float32 row; null if {@code s} is not valid base64 (there is no CSV form). */
+    @Nullable
+    public static float[] decodeF32(@Nullable String s) {
+        if (s == null) return null;
+        byte[] bytes;
+        try { bytes = Base64.getDecoder().decode(s); }
+        catch (IllegalArgumentException bad) { return null; }
+        if ((bytes.length & 3) != 0) return null;
+        FloatBuffer fb = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        float[] out = new float[fb.remaining()];
+        fb.get(out);
+        return out;
+    }
+
+    /* ---------------- scalar kernels ---------------- */
+
+    /** Symmetric per-vector int8 quantization into {@code q}; returns the scale. */
+    public static float quantize(@NonNull float[] v, @NonNull byte[] q) {
+        float maxAbs = 0f;
+        for (float f : v) maxAbs = Math.max(maxAbs, Math.abs(f));
+        float scale = maxAbs > 0f ? maxAbs / 127f : 1f;
+        float inv = 1f / scale;
+        for (int i = 0; i < v.length; i++) {
+            int x = Math.round(v[i] * inv);
+            q[i] = (byte) (x > 127 ? 127 : (x < -127 ? -127 : x));
+        }
+        return scale;
+    }
+
+    /** Integer dot product (4-way unrolled), multiply by both scales for the float score. */
+    public static int dotInt8(byte[] a, int aOff, byte[] b, int bOff, int n) {
+        int s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int end = n - 3; i < end; i += 4) {
+            s0 += a[aOff + i]     * b[bOff + i];
+            s1 += a[aOff + i + 1] * b[bOff + i + 1];
+            s2 += a[aOff + i + 2] * b[bOff + i + 2];
+            s3 += a[aOff + i + 3] * b[bOff + i + 3];
+        }
+        for (; i < n; i++) s0 += a[aOff + i] * b[bOff + i];
+        return s0 + s1 + s2 + s3;
+    }
+
+    public static short floatToHalf(float f) {
+        int bits = Float.floatToIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int exp = ((bits >>> 23) & 0xff) - 127 + 15;
+        int mant = bits & 0x7fffff;
+        if (exp >= 0x1f) return (short) (sign | 0x7c00);               // overflow -> inf
+        if (exp <= 0) {                                                 // subnormal / zero
+            if (exp < -10) return (short) sign;
+            mant = (mant | 0x800000) >> (1 - exp);
+            return (short) (sign | ((mant + 0x1000) >> 13));
+        }
+        int h = sign | (exp << 10) | (mant >> 13);
+        if ((mant & 0x1000) != 0) h++;                                 // round half up
+        return (short) h;
+    }
+
+    public static float halfToFloat(short h) {
+        int sign = (h & 0x8000) << 16;
+        int exp = (h >>> 10) & 0x1f;
+        int mant = h & 0x3ff;
+        if (exp == 0) {
+            if (mant == 0) return Float.intBitsToFloat(sign);
+            float f = mant / 1024f * (1f / 16384f);                     // 2^-14 subnormal
+            return sign != 0 ? -f : f;
+        }
+        if (exp == 0x1f) return Float.intBitsToFloat(sign | 0x7f800000 | (mant << 13));
+        return Float.intBitsToFloat(sign | ((exp - 15 + 127) << 23) | (mant << 13));
+    }
+
+    /* ---------------- accuracy report ---------------- */
+
+    /** Cosine deltas of the f16 / int8 representations against float32 on the same pairs. */
+    public static final class Report {
+        public int pairs;
+        public double f16MeanAbs, f16MaxAbs;
+        public double i8MeanAbs, i8MaxAbs;
+
+        @NonNull @Override public String toString() {
+            return String.format(java.util.Locale.US,
+                    "pairs=%d f16 mean|d|=%.5f max|d|=%.5f  i8 mean|d|=%.5f max|d|=%.5f",
+                    pairs, f16MeanAbs, f16MaxAbs, i8MeanAbs, i8MaxAbs);
+        }
+    }
+
+    /** Score every probe against every gallery vector in f32, f16 and int8 and compare. */
+    @NonNull
+    public static Report compare(@NonNull float[][] probes, @NonNull float[][] gallery) {
+        Report r = new Report();
+        for (float[] p : probes) {
+            float[] pn = FaceMatcher.l2norm(p.clone());
+            float[] p16 = halfRoundTrip(pn);
+            byte[] pq = new byte[pn.length];
+            float ps = quantize(pn, pq);
+            for (float[] g : gallery) {
+                float[] gn = FaceMatcher.l2norm(g.clone());
+                int n = Math.min(pn.length, gn.length);
+                float ref = FaceGallery.dot(pn, 0, gn, 0, n);
+
+                double d16 = Math.abs(FaceGallery.dot(p16, 0, halfRoundTrip(gn), 0, n) - ref);
+                byte[] gq = new byte[gn.length];
+                float gs = quantize(gn, gq);
+                double d8 = Math.abs(dotInt8(pq, 0, gq, 0, n) * ps * gs - ref);
+
+                r.pairs++;
+                r.f16MeanAbs += d16; r.f16MaxAbs = Math.max(r.f16MaxAbs, d16);
+                r.i8MeanAbs  += d8;  r.i8MaxAbs  = Math.max(r.i8MaxAbs, d8);
+            }
+        }
+        if (r.pairs > 0) { r.f16MeanAbs /= r.pairs; r.i8MeanAbs /= r.pairs; }
+        return r;
+    }
+
+    private static float[] halfRoundTrip(float[] v) {
+        float[] out = new float[v.length];
+        for (int i = 0; i < v.length; i++) out[i] = halfToFloat(floatToHalf(v[i]));
+        return out;
+    }
+}
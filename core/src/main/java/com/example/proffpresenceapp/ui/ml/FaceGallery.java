@@ -0,0 +1,115 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Enrolled vectors for one user, stored L2-normalized in a single row-major float[]
+ * (row i = data[i*dim .. i*dim+dim)). Scoring is one pass of {@link #dot} per row.
+ */
+public final class FaceGallery {
+
+    /** Result of one {@link #score} pass; reuse the instance across frames. */
+    public static final class Scores {
+        public float best = -2f;
+        public int bestIndex = -1;
+        public int agree = 0;
+        /** Rows compared by the last call, for cost accounting. */
+        public int rows = 0;
+        /** Optional: when non-null and large enough, receives the score of every row. */
+        public float[] perRow;
+    }
+
+    private final int dim;
+    private float[] data;
+    private int size = 0;
+
+    public FaceGallery(int dim, int initialCapacity) {
+        this.dim = dim;
+        this.data = new float[dim * Math.max(1, initialCapacity)];
+    }
+
+    public int dim() { return dim; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public void clear() { size = 0; }
+
+    /** Backing matrix (first size()*dim() entries are valid). */
+    public float[] raw() { return data; }
+
+    /** Copy + L2-normalize {@code v} into the next row. Rows of the wrong length are skipped. */
+    public boolean add(@NonNull float[] v) {
+        if (v.length != dim) return false;
+        if ((size + 1) * dim > data.length) {
+            float[] grown = new float[Math.max(data.length * 2, (size + 1) * dim)];
+            System.arraycopy(data, 0, grown, 0, size * dim);
+            data = grown;
+        }
+        int off = size * dim;
+        System.arraycopy(v, 0, data, off, dim);
+        normalize(data, off, dim);
+        size++;
+        return true;
+    }
+
+    /**
+     * Bulk-append {@code count} rows that are already L2-normalized (e.g. a mapped cache file),
+     * without renormalizing. Reads from the buffer's current position.
+     */
+    public void addNormalized(@NonNull FloatBuffer src, int count) {
+        if (count <= 0) return;
+        if ((size + count) * dim > data.length) {
+            float[] grown = new float[(size + count) * dim];
+            System.arraycopy(data, 0, grown, 0, size * dim);
+            data = grown;
+        }
+        src.get(data, size * dim, count * dim);
+        size += count;
+    }
+
+    /** Copy of row {@code i}. */
+    public float[] row(int i) {
+        float[] out = new float[dim];
+        System.arraycopy(data, i * dim, out, 0, dim);
+        return out;
+    }
+
+    /**
+     * Score an L2-normalized probe against every row in one pass:
+     * best score + index, count of rows >= {@code secondary}, and optionally per-row scores.
+     */
+    public Scores score(@NonNull float[] probe, float secondary, @NonNull Scores out) {
+        out.best = -2f; out.bestIndex = -1; out.agree = 0; out.rows = size;
+        float[] per = (out.perRow != null && out.perRow.length >= size) ? out.perRow : null;
+        int n = Math.min(dim, probe.length);
+        for (int r = 0, off = 0; r < size; r++, off += dim) {
+            float s = dot(probe, 0, data, off, n);
+            if (per != null) per[r] = s;
+            if (s > out.best) { out.best = s; out.bestIndex = r; }
+            if (s >= secondary) out.agree++;
+        }
+        return out;
+    }
+
+    /** L2-normalize {@code v[off .. off+n)} in place. */
+    static void normalize(float[] v, int off, int n) {
+        double s = dot(v, off, v, off, n);
+        float inv = (float) (1.0 / Math.sqrt(Math.max(s, 1e-12)));
+        for (int i = 0; i < n; i++) v[off + i] *= inv;
+    }
+
+    /** The dot-product kernel used by every matcher in this package (4-way unrolled). */
+    public static float dot(float[] a, int aOff, float[] b, int bOff, int n) {
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (int end = n - 3; i < end; i += 4) {
+            s0 += a[aOff + i]     * b[bOff + i];
+            s1 += a[aOff + i + 1] * b[bOff + i + 1];
+            s2 += a[aOff + i + 2] * b[bOff + i + 2];
+            s3 += a[aOff + i + 3] * b[bOff + i + 3];
+        }
+        for (; i < n; i++) s0 += a[aOff + i] * b[bOff + i];
+        return (s0 + s1) + (s2 + s3);
+    }
+}
@@ -21,12 +21,9 @@ public final class FaceMatchUtils {
     /** Returns cosine similarity in [-1,1]. 1 means identical direction. */
     public static float cosine(@NonNull float[] a, @NonNull float[] b) {
         int n = Math.min(a.length, b.length);
-        double dot = 0, na = 0, nb = 0;
-        for (int i = 0; i < n; i++) {
-            dot += a[i] * b[i];
-            na  += a[i] * a[i];
-            nb  += b[i] * b[i];
-        }
+        double dot = FaceGallery.dot(a, 0, b, 0, n);
+        double na  = FaceGallery.dot(a, 0, a, 0, n);
+        double nb  = FaceGallery.dot(b, 0, b, 0, n);
         double denom = Math.sqrt(Math.max(na,1e-12)) * Math.sqrt(Math.max(nb,1e-12));
         return (float) (dot / Math.max(denom, 1e-12));
     }
@@ -50,8 +47,7 @@ public final class FaceMatchUtils {
                                   @NonNull List<float[]> gallery,
                                   float threshold) {
         if (gallery.isEmpty()) return false;
-        normalize(probe);
-        for (float[] g : gallery) if (g != null) normalize(g);
+        // cosine() is scale-invariant: no need to re-normalize the gallery on every call
         return bestSimilarity(probe, gallery) >= threshold;
     }
 }
@@ -0,0 +1,137 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import com.example.proffpresenceapp.ui.platform.Logger;
+import com.example.proffpresenceapp.ui.platform.Platform;
+
+import java.util.List;
+
+public final class FaceMatcher {
+    private static final String TAG = "FaceMatcher";
+
+    private FaceMatcher() {}
+
+    /** L2-normalize (in-place). Returns the same array for chaining. */
+    public static float[] l2norm(float[] v) {
+        if (v == null || v.length == 0) return v;
+        double s = 0;
+        for (float x : v) s += (double) x * x;
+        s = Math.sqrt(Math.max(s, 1e-12));
+        for (int i = 0; i < v.length; i++) v[i] = (float) (v[i] / s);
+        return v;
+    }
+
+    /** Cosine similarity of two L2-normalized vectors ([-1..1], higher = more similar). */
+    public static float cosine(float[] a, float[] b) {
+        return FaceGallery.dot(a, 0, b, 0, Math.min(a.length, b.length));
+    }
+
+    /**
+     * Decide if a live probe belongs to THIS user’s gallery.
+     *
+     * @param probe L2-normalized live vector
+     * @param gallery list of L2-normalized enrolled vectors for the *current* user
+     * @param strong primary threshold (quick accept if score >= strong)
+     * @param secondary relaxed threshold used with vote counting
+     * @param minAgree at least this many gallery vectors must exceed secondary
+     */
+    public static boolean acceptForUser(
+            float[] probe,
+            List<float[]> gallery,
+            float strong,
+            float secondary,
+            int minAgree
+    ) {
+        if (probe == null || gallery == null || gallery.isEmpty()) return false;
+
+        int agree = 0;
+        float best = -2f;
+        for (float[] g : gallery) {
+            float s = cosine(probe, g);
+            if (s > best) best = s;
+            if (s >= secondary) agree++;
+            if (s >= strong) {
+                Logger log = Platform.log();
+                if (log.isDebugEnabled()) log.d(TAG, "Accept (strong) best=" + best + " agree=" + agree);
+                return true;
+            }
+        }
+        Logger log = Platform.log();
+        if (log.isDebugEnabled()) log.d(TAG, "Vote best=" + best + " agree=" + agree + "/" + gallery.size());
+        return agree >= minAgree;
+    }
+
+    /**
+     * Same decision as {@link #acceptForUser(float[], List, float, float, int)} against a packed
+     * gallery, in a single scoring pass. {@code scratch} is reused and left holding best/agree.
+     */
+    public static boolean acceptForUser(
+            float[] probe,
+            FaceGallery gallery,
+            float strong,
+            float secondary,
+            int minAgree,
+            FaceGallery.Scores scratch
+    ) {
+        if (probe == null || gallery == null || gallery.isEmpty()) return false;
+        gallery.score(probe, secondary, scratch);
+        boolean ok = accepts(scratch, strong, minAgree);
+        Logger log = Platform.log();
+        if (log.isDebugEnabled()) {
+            log.d(TAG, (scratch.best >= strong ? "Accept (strong)" : "Vote")
+                    + " best=" + scratch.best + " agree=" + scratch.agree + "/" + gallery.size());
+        }
+        return ok;
+    }
+
+    /**
+     * Same decision against an int8 gallery ({@link QuantizedGallery}): one integer dot product per
+     * row, scores within a few thousandths of the float ones.
+     */
+    public static boolean acceptForUser(
+            float[] probe,
+            QuantizedGallery gallery,
+            float strong,
+            float secondary,
+            int minAgree,
+            FaceGallery.Scores scratch
+    ) {
+        if (probe == null || gallery == null || gallery.isEmpty()) return false;
+        gallery.score(probe, secondary, scratch);
+        boolean ok = accepts(scratch, strong, minAgree);
+        Logger log = Platform.log();
+        if (log.isDebugEnabled()) {
+            log.d(TAG, (scratch.best >= strong ? "Accept (strong)" : "Vote")
+                    + " best=" + scratch.best + " agree=" + scratch.agree + "/" + gallery.size() + " (int8)");
+        }
+        return ok;
+    }
+
+    /**
+     * Same decision against compacted templates ({@link TemplateBuilder}): centroids shortlist, and
+     * the strong and vote rules run on the member samples of the shortlisted centroids.
+     */
+    public static boolean acceptForUser(
+            float[] probe,
+            FaceTemplates templates,
+            float strong,
+            float secondary,
+            int minAgree,
+            FaceGallery.Scores scratch
+    ) {
+        if (probe == null || templates == null || templates.isEmpty()) return false;
+        templates.score(probe, secondary, scratch);
+        boolean ok = accepts(scratch, strong, minAgree);
+        Logger log = Platform.log();
+        if (log.isDebugEnabled()) {
+            log.d(TAG, (scratch.best >= strong ? "Accept (strong)" : "Vote")
+                    + " best=" + scratch.best + " agree=" + scratch.agree + "/" + templates.sampleCount()
+                    + " (" + templates.size() + " templates)");
+        }
+        return ok;
+    }
+
+    /** The accept rule shared by every gallery form: strong best score, or enough votes. */
+    public static boolean accepts(FaceGallery.Scores s, float strong, int minAgree) {
+        return s.best >= strong || s.agree >= minAgree;
+    }
+}
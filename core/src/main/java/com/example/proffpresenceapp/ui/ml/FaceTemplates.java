@@ -0,0 +1,84 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Compacted gallery: a few L2-normalized centroid templates, each standing for {@code weight}
+ * enrollment samples (see {@link TemplateBuilder}). The centroids only shortlist: a renormalized
+ * centroid scores higher than the samples it averages, so the accept rule is applied to the member
+ * samples of the shortlisted centroids and {@link FaceGallery.Scores} holds per-sample best and
+ * agree, never more permissive than the raw gallery.
+ */
+public final class FaceTemplates {
+
+    // ---- Tunables ----
+    // Centroids scoring within this margin below the vote threshold have their members rescored
+    static final float SHORTLIST_MARGIN = 0.05f;
+
+    private final FaceGallery centroids;
+    private final FaceGallery members;   // kept samples, grouped by centroid
+    private final int[] weights;
+    private final int[] firstMember;
+    private final int samples;           // enrollment samples kept (sum of weights)
+    private final int pruned;            // outlier samples dropped
+
+    FaceTemplates(@NonNull FaceGallery centroids, @NonNull FaceGallery members,
+                  @NonNull int[] weights, int pruned) {
+        this.centroids = centroids;
+        this.members = members;
+        this.weights = weights;
+        this.firstMember = new int[centroids.size()];
+        int s = 0;
+        for (int i = 0; i < centroids.size(); i++) {
+            firstMember[i] = s;
+            s += weights[i];
+        }
+        this.samples = s;
+        this.pruned = pruned;
+    }
+
+    public int size() { return centroids.size(); }
+    public boolean isEmpty() { return centroids.isEmpty(); }
+    public int dim() { return centroids.dim(); }
+    public int sampleCount() { return samples; }
+    public int prunedCount() { return pruned; }
+    public int weight(int i) { return weights[i]; }
+
+    /** Centroid matrix (first size()*dim() entries are valid). */
+    public FaceGallery centroids() { return centroids; }
+
+    /**
+     * Scores the centroids, then the member samples of the best centroid and of every centroid
+     * within {@link #SHORTLIST_MARGIN} of {@code secondary}: best is the best member score,
+     * bestIndex its centroid, agree the members >= {@code secondary}. perRow, if given, receives
+     * centroid scores.
+     */
+    public FaceGallery.Scores score(@NonNull float[] probe, float secondary, @NonNull FaceGallery.Scores out) {
+        int k = size(), dim = centroids.dim(), n = Math.min(dim, probe.length);
+        float[] cData = centroids.raw(), mData = members.raw();
+        float[] per = (out.perRow != null && out.perRow.length >= k) ? out.perRow : null;
+
+        float top = -2f;
+        int topIndex = -1;
+        for (int r = 0, off = 0; r < k; r++, off += dim) {
+            float s = FaceGallery.dot(probe, 0, cData, off, n);
+            if (per != null) per[r] = s;
+            if (s > top) { top = s; topIndex = r; }
+        }
+
+        out.best = -2f; out.bestIndex = -1; out.agree = 0; out.rows = k;
+        float gate = secondary - SHORTLIST_MARGIN;
+        for (int r = 0, off = 0; r < k; r++, off += dim) {
+            if (r != topIndex && (per != null ? per[r] : FaceGallery.dot(probe, 0, cData, off, n)) < gate) {
+                continue;
+            }
+            for (int m = firstMember[r], end = m + weights[r]; m < end; m++) {
+                float s = FaceGallery.dot(probe, 0, mData, m * dim, n);
+                if (s > out.best) { out.best = s; out.bestIndex = r; }
+                if (s >= secondary) out.agree++;
+            }
+            out.rows += weights[r];
+        }
+        return out;
+    }
+}
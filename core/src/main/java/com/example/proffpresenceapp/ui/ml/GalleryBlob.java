@@ -0,0 +1,195 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary format for a whole gallery: every sample of one user in one blob, stored at
+ * faceGalleries/&lt;uid&gt; (base64, since RTDB has no bytes type). One download and one decode per
+ * verification instead of one per row.
+ * <p>
+ * Little-endian:
+ * <pre>
+ *   int   magic "FGB1"
+ *   u8    format (1)
+ *   u8    dtype  (0 = f32, 1 = f16, 2 = i8)
+ *   u16   dim
+ *   int   count
+ *   u8    model version length, then the UTF-8 bytes
+ *   rows  count x (f32: 4*dim | f16: 2*dim | i8: float32 scale + dim)
+ *   int   CRC32 of everything above
+ * </pre>
+ * Decoding works on the caller's buffers; the only allocation is the base64 decode.
+ */
+public final class GalleryBlob {
+
+    public static final int MAGIC = 0x31424746;   // "FGB1" as little-endian bytes
+    public static final int FORMAT = 1;
+    private static final int MAX_MODEL_LEN = 255;
+
+    private GalleryBlob() {}
+
+    /** Parsed header; reuse across decodes. */
+    public static final class Header {
+        public int format;
+        public EmbeddingCodec.Dtype dtype;
+        public int dim;
+        public int count;
+        public String model;
+        int payload;       // offset of the first row
+    }
+
+    public static int rowBytes(@NonNull EmbeddingCodec.Dtype dtype, int dim) {
+        switch (dtype) {
+            case F16:  return 2 * dim;
+            case INT8: return 4 + dim;
+            default:   return 4 * dim;
+        }
+    }
+
+    public static int encodedSize(@NonNull EmbeddingCodec.Dtype dtype, int dim, int count, @NonNull String model) {
+        return 13 + model.getBytes(StandardCharsets.UTF_8).length + count * rowBytes(dtype, dim) + 4;
+    }
+
+    /** Encode {@code rows} (all of length dim) into a new array. */
+    @NonNull
+    public static byte[] encode(@NonNull List<float[]> rows, int dim,
+                                @NonNull EmbeddingCodec.Dtype dtype, @NonNull String model) {
+        ByteBuffer bb = ByteBuffer.allocate(encodedSize(dtype, dim, rows.size(), model));
+        encode(rows, dim, dtype, model, bb);
+        return bb.array();
+    }
+
+    /** Encode into {@code dst} (heap buffer, at least {@link #encodedSize} remaining) from its position. */
+    public static void encode(@NonNull List<float[]> rows, int dim, @NonNull EmbeddingCodec.Dtype dtype,
+                              @NonNull String model, @NonNull ByteBuffer dst) {
+        byte[] m = model.getBytes(StandardCharsets.UTF_8);
+        if (m.length > MAX_MODEL_LEN || dim <= 0 || dim > 0xffff) throw new IllegalArgumentException("bad header");
+        int start = dst.position();
+        dst.order(ByteOrder.LITTLE_ENDIAN);
+        dst.putInt(MAGIC).put((byte) FORMAT).put((byte) code(dtype)).putShort((short) dim)
+                .putInt(rows.size()).put((byte) m.length).put(m);
+
+        byte[] q = dtype == EmbeddingCodec.Dtype.INT8 ? new byte[dim] : null;
+        for (float[] v : rows) {
+            if (v.length != dim) throw new IllegalArgumentException("row of dim " + v.length);
+            switch (dtype) {
+                case F16:
+                    for (float f : v) dst.putShort(EmbeddingCodec.floatToHalf(f));
+                    break;
+                case INT8:
+                    dst.putFloat(EmbeddingCodec.quantize(v, q)).put(q);
+                    break;
+                default:
+                    for (float f : v) dst.putFloat(f);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(dst.array(), dst.arrayOffset() + start, dst.position() - start);
+        dst.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Validate and parse the header of {@code blob} into {@code out}.
+     *
+     * @return null if the magic, format, sizes or checksum do not match
+     */
+    @Nullable
+    public static Header readHeader(@NonNull byte[] blob, @NonNull Header out) {
+        if (blob.length < 17) return null;
+        ByteBuffer bb = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+        if (bb.getInt() != MAGIC) return null;
+        int format = bb.get() & 0xff;
+        if (format != FORMAT) return null;
+        EmbeddingCodec.Dtype dtype = fromCode(bb.get() & 0xff);
+        int dim = bb.getShort() & 0xffff;
+        int count = bb.getInt();
+        int len = bb.get() & 0xff;
+        if (dtype == null || dim == 0 || count < 0 || bb.remaining() < len + 4) return null;
+        long expected = 13L + len + (long) count * rowBytes(dtype, dim) + 4;
+        if (expected != blob.length) return null;
+
+        CRC32 crc = new CRC32();
+        crc.update(blob, 0, blob.length - 4);
+        if ((int) crc.getValue() != bb.getInt(blob.length - 4)) return null;
+
+        out.format = format;
+        out.dtype = dtype;
+        out.dim = dim;
+        out.count = count;
+        out.model = new String(blob, 13, len, StandardCharsets.UTF_8);
+        out.payload = 13 + len;
+        return out;
+    }
+
+    /** Dequantize every row into {@code dst} (row-major, at least count*dim long). */
+    public static void decodeInto(@NonNull byte[] blob, @NonNull Header h, @NonNull float[] dst) {
+        ByteBuffer bb = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+        bb.position(h.payload);
+        for (int r = 0, o = 0; r < h.count; r++, o += h.dim) readRow(bb, h, dst, o);
+    }
+
+    /** Append every row to {@code g} (which L2-normalizes); {@code scratch} holds one row. */
+    public static void decodeInto(@NonNull byte[] blob, @NonNull Header h,
+                                  @NonNull FaceGallery g, @NonNull float[] scratch) {
+        ByteBuffer bb = ByteBuffer.wrap(blob).order(ByteOrder.LITTLE_ENDIAN);
+        bb.position(h.payload);
+        for (int r = 0; r < h.count; r++) {
+            readRow(bb, h, scratch, 0);
+            g.add(scratch);
+        }
+    }
+
+    @NonNull
+    public static String toBase64(@NonNull byte[] blob) {
+        return Base64.getEncoder().encodeToString(blob);
+    }
+
+    @Nullable
+    public static byte[] fromBase64(@Nullable Object value) {
+        if (!(value instanceof String)) return null;
+        try { return Base64.getDecoder().decode((String) value); }
+        catch (IllegalArgumentException bad) { return null; }
+    }
+
+    private static void readRow(ByteBuffer bb, Header h, float[] dst, int off) {
+        int dim = h.dim;
+        switch (h.dtype) {
+            case F16:
+                for (int i = 0; i < dim; i++) dst[off + i] = EmbeddingCodec.halfToFloat(bb.getShort());
+                break;
+            case INT8: {
+                float scale = bb.getFloat();
+                for (int i = 0; i < dim; i++) dst[off + i] = bb.get() * scale;
+                break;
+            }
+            default:
+                for (int i = 0; i < dim; i++) dst[off + i] = bb.getFloat();
+        }
+    }
+
+    private static int code(EmbeddingCodec.Dtype d) {
+        switch (d) {
+            case F16:  return 1;
+            case INT8: return 2;
+            default:   return 0;
+        }
+    }
+
+    @Nullable
+    private static EmbeddingCodec.Dtype fromCode(int c) {
+        switch (c) {
+            case 0:  return EmbeddingCodec.Dtype.F32;
+            case 1:  return EmbeddingCodec.Dtype.F16;
+            case 2:  return EmbeddingCodec.Dtype.INT8;
+            default: return null;
+        }
+    }
+}
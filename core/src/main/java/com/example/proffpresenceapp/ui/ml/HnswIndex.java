@@ -0,0 +1,396 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Approximate nearest-neighbour index (HNSW graph) over L2-normalized embeddings, for galleries
+ * too large to brute-force every frame. Similarity is the dot product, i.e. cosine.
+ *
+ * <ul>
+ *   <li>{@link #insert} adds one sample incrementally (new enrollments)</li>
+ *   <li>{@link #delete} / {@link #deleteLabel} tombstone samples; they still route searches</li>
+ *   <li>{@link #setEfSearch} is the recall-versus-latency knob (higher = better recall, slower)</li>
+ *   <li>{@link #save} / {@link #load} use a compact binary file</li>
+ * </ul>
+ * Methods are synchronized so a kiosk can insert while the analyzer thread searches.
+ * <p>
+ * Not wired into the app yet: the kiosk screen scans an {@link IdentificationIndex}, which keeps
+ * up at a few thousand identities. Inserts walk the graph, so build or update this index on a
+ * background executor, never on a Firebase callback (main thread).
+ */
+public final class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357; // "HNSW"
+    private static final int FILE_VERSION = 1;
+    // Sanity bounds for load()
+    private static final int MAX_DIM = 4096;
+    private static final int MAX_M = 1024;
+    private static final int MAX_LEVEL = 64;
+
+    /** One search hit: the sample's node id, its label (uid) and cosine score. */
+    public static final class Hit {
+        public final int node;
+        public final String label;
+        public final float score;
+
+        Hit(int node, String label, float score) {
+            this.node = node;
+            this.label = label;
+            this.score = score;
+        }
+
+        @NonNull @Override public String toString() { return label + "#" + node + "=" + score; }
+    }
+
+    private static final class Cand {
+        final int id;
+        final float sim;
+        Cand(int id, float sim) { this.id = id; this.sim = sim; }
+    }
+
+    private final int dim;
+    private final int m;              // max links per node on upper layers
+    private final int m0;             // max links on layer 0
+    private final int efConstruction;
+    private final double levelMult;
+    private final Random rnd;
+    private int efSearch;
+
+    private float[] vecs;             // row-major, normalized
+    private int[] nodeLabel;
+    private int[] nodeLevel;
+    private boolean[] deleted;
+    private int[][][] links;          // links[node][level] = {count, n1, n2, ...}
+    private int count = 0;
+    private int live = 0;
+    private int entry = -1;
+    private int maxLevel = -1;
+
+    private final List<String> labels = new ArrayList<>();
+    private final Map<String, Integer> labelIds = new HashMap<>();
+
+    private int[] visited;            // generation-stamped visited set (no per-search allocation)
+    private int visitGen = 0;
+
+    /**
+     * @param m              links per node (12..32 typical; 16 is a good default for 128-d)
+     * @param efConstruction build-time beam width (100..200)
+     */
+    public HnswIndex(int dim, int m, int efConstruction, long seed) {
+        this.dim = dim;
+        this.m = Math.max(2, m);
+        this.m0 = this.m * 2;
+        this.efConstruction = Math.max(efConstruction, this.m);
+        this.efSearch = 64;
+        this.levelMult = 1.0 / Math.log(this.m);
+        this.rnd = new Random(seed);
+        int cap = 64;
+        vecs = new float[cap * dim];
+        nodeLabel = new int[cap];
+        nodeLevel = new int[cap];
+        deleted = new boolean[cap];
+        links = new int[cap][][];
+        visited = new int[cap];
+    }
+
+    public HnswIndex(int dim) { this(dim, 16, 128, 42L); }
+
+    public int dim() { return dim; }
+    public synchronized int size() { return live; }
+    public synchronized int getEfSearch() { return efSearch; }
+
+    /** Beam width at query time: the recall/latency knob. Never below k. */
+    public synchronized void setEfSearch(int ef) { efSearch = Math.max(1, ef); }
+
+    /** Insert one sample for {@code label}; returns its node id. */
+    public synchronized int insert(@NonNull String label, @NonNull float[] vec) {
+        if (vec.length != dim) throw new IllegalArgumentException("dim " + vec.length + " != " + dim);
+        int id = count;
+        ensureCapacity(id + 1);
+
+        int off = id * dim;
+        System.arraycopy(vec, 0, vecs, off, dim);
+        float s = FaceGallery.dot(vecs, off, vecs, off, dim);
+        float inv = (float) (1.0 / Math.sqrt(Math.max(s, 1e-12)));
+        for (int i = 0; i < dim; i++) vecs[off + i] *= inv;
+
+        Integer lid = labelIds.get(label);
+        if (lid == null) { lid = labels.size(); labels.add(label); labelIds.put(label, lid); }
+        nodeLabel[id] = lid;
+
+        int level = (int) (-Math.log(1.0 - rnd.nextDouble()) * levelMult);
+        nodeLevel[id] = level;
+        links[id] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) links[id][l] = new int[(l == 0 ? m0 : m) + 1];
+        count++;
+        live++;
+
+        if (entry < 0) { entry = id; maxLevel = level; return id; }
+
+        int ep = entry;
+        for (int l = maxLevel; l > level; l--) ep = greedy(vecs, off, ep, l);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Cand> w = searchLayer(vecs, off, ep, efConstruction, l);
+            int keep = Math.min(l == 0 ? m0 : m, w.size());
+            for (int i = 0; i < keep; i++) {
+                int n = w.get(i).id;
+                if (n == id) continue;
+                connect(id, n, l);
+                connect(n, id, l);
+            }
+            ep = w.get(0).id;
+        }
+        if (level > maxLevel) { entry = id; maxLevel = level; }
+        return id;
+    }
+
+    /** Tombstone one sample. Returns false if unknown or already deleted. */
+    public synchronized boolean delete(int node) {
+        if (node < 0 || node >= count || deleted[node]) return false;
+        deleted[node] = true;
+        live--;
+        return true;
+    }
+
+    /** Tombstone every sample of {@code label} (e.g. a professor leaving). */
+    public synchronized int deleteLabel(@NonNull String label) {
+        Integer lid = labelIds.get(label);
+        if (lid == null) return 0;
+        int n = 0;
+        for (int i = 0; i < count; i++) if (nodeLabel[i] == lid && delete(i)) n++;
+        return n;
+    }
+
+    /** Top {@code k} live samples by cosine, highest first. */
+    @NonNull
+    public synchronized List<Hit> search(@NonNull float[] query, int k) {
+        if (live == 0 || k <= 0) return new ArrayList<>(0);
+        int ep = entry;
+        for (int l = maxLevel; l > 0; l--) ep = greedy(query, 0, ep, l);
+        List<Cand> w = searchLayer(query, 0, ep, Math.max(efSearch, k), 0);
+        List<Hit> out = new ArrayList<>(k);
+        for (Cand c : w) {
+            if (deleted[c.id]) continue;
+            out.add(new Hit(c.id, labels.get(nodeLabel[c.id]), c.sim));
+            if (out.size() == k) break;
+        }
+        return out;
+    }
+
+    /** Exact scan over live samples; reference for recall measurement. */
+    @NonNull
+    public synchronized List<Hit> searchExact(@NonNull float[] query, int k) {
+        List<Hit> all = new ArrayList<>(live);
+        for (int i = 0; i < count; i++) {
+            if (deleted[i]) continue;
+            all.add(new Hit(i, labels.get(nodeLabel[i]), FaceGallery.dot(query, 0, vecs, i * dim, dim)));
+        }
+        Collections.sort(all, (a, b) -> Float.compare(b.score, a.score));
+        return all.size() > k ? new ArrayList<>(all.subList(0, k)) : all;
+    }
+
+    /* ---------------- persistence ---------------- */
+
+    /**
+     * Compact binary dump of the whole graph. Tombstoned samples are written with their flag so
+     * they keep routing searches after {@link #load}; rebuild the index from the gallery to drop them.
+     */
+    public synchronized void save(@NonNull OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeInt(MAGIC);
+        out.writeInt(FILE_VERSION);
+        out.writeInt(dim);
+        out.writeInt(m);
+        out.writeInt(efConstruction);
+        out.writeInt(efSearch);
+        out.writeInt(count);
+        out.writeInt(entry);
+        out.writeInt(maxLevel);
+        out.writeInt(labels.size());
+        for (String s : labels) out.writeUTF(s);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(nodeLabel[i]);
+            out.writeBoolean(deleted[i]);
+            for (int d = 0, off = i * dim; d < dim; d++) out.writeFloat(vecs[off + d]);
+            out.writeByte(nodeLevel[i]);
+            for (int l = 0; l <= nodeLevel[i]; l++) {
+                int[] ln = links[i][l];
+                out.writeShort(ln[0]);
+                for (int j = 1; j <= ln[0]; j++) out.writeInt(ln[j]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a {@link #save} dump. Every count, level and link is checked against the header, so a
+     * truncated or corrupt file fails with an IOException instead of a bad graph; node storage
+     * grows as nodes are read, so a forged node count cannot force a huge allocation up front.
+     */
+    @NonNull
+    public static HnswIndex load(@NonNull InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        if (in.readInt() != MAGIC) throw new IOException("Not an HNSW index file");
+        int version = in.readInt();
+        if (version != FILE_VERSION) throw new IOException("Unsupported HNSW file version " + version);
+        int dim = in.readInt();
+        int m = in.readInt();
+        int efc = in.readInt();
+        int ef = in.readInt();
+        int n = in.readInt();
+        int entry = in.readInt();
+        int maxLevel = in.readInt();
+        int nl = in.readInt();
+        check(dim > 0 && dim <= MAX_DIM, "dim " + dim);
+        check(m >= 2 && m <= MAX_M, "m " + m);
+        check(n >= 0 && n <= Integer.MAX_VALUE / 2 / dim, "node count " + n);
+        check(n == 0 ? entry == -1 && maxLevel == -1
+                : entry >= 0 && entry < n && maxLevel >= 0 && maxLevel <= MAX_LEVEL, "entry point " + entry);
+        check(nl >= 0 && nl <= n, "label count " + nl);
+
+        HnswIndex idx = new HnswIndex(dim, m, efc, 42L);
+        idx.efSearch = Math.max(1, ef);
+        idx.entry = entry;
+        idx.maxLevel = maxLevel;
+        for (int i = 0; i < nl; i++) {
+            String s = in.readUTF();
+            idx.labelIds.put(s, idx.labels.size());
+            idx.labels.add(s);
+        }
+        for (int i = 0; i < n; i++) {
+            idx.ensureCapacity(i + 1);
+            int label = in.readInt();
+            check(label >= 0 && label < nl, "label " + label + " at node " + i);
+            idx.nodeLabel[i] = label;
+            idx.deleted[i] = in.readBoolean();
+            if (!idx.deleted[i]) idx.live++;
+            for (int d = 0, off = i * dim; d < dim; d++) idx.vecs[off + d] = in.readFloat();
+            int level = in.readByte();
+            check(level >= 0 && level <= maxLevel, "level " + level + " at node " + i);
+            idx.nodeLevel[i] = level;
+            idx.links[i] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                int max = l == 0 ? idx.m0 : idx.m;
+                int[] ln = new int[max + 1];
+                ln[0] = in.readShort();
+                check(ln[0] >= 0 && ln[0] <= max, ln[0] + " links at node " + i);
+                for (int j = 1; j <= ln[0]; j++) {
+                    ln[j] = in.readInt();
+                    check(ln[j] >= 0 && ln[j] < n && ln[j] != i, "link " + ln[j] + " at node " + i);
+                }
+                idx.links[i][l] = ln;
+            }
+        }
+        // Links point forward too, so levels can only be checked once every node is read
+        check(n == 0 || idx.nodeLevel[entry] == maxLevel, "entry point level");
+        for (int i = 0; i < n; i++) {
+            for (int l = 1; l <= idx.nodeLevel[i]; l++) {
+                int[] ln = idx.links[i][l];
+                for (int j = 1; j <= ln[0]; j++) {
+                    check(idx.nodeLevel[ln[j]] >= l, "link " + ln[j] + " above its level at node " + i);
+                }
+            }
+        }
+        idx.count = n;
+        return idx;
+    }
+
+    private static void check(boolean ok, String what) throws IOException {
+        if (!ok) throw new IOException("Corrupt HNSW index file: " + what);
+    }
+
+    /* ---------------- graph internals ---------------- */
+
+    private float sim(float[] q, int qOff, int node) {
+        return FaceGallery.dot(q, qOff, vecs, node * dim, dim);
+    }
+
+    /** Hill-climb on one layer to the closest node reachable from {@code ep}. */
+    private int greedy(float[] q, int qOff, int ep, int level) {
+        float best = sim(q, qOff, ep);
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            int[] ln = links[ep][level];
+            for (int j = 1; j <= ln[0]; j++) {
+                float s = sim(q, qOff, ln[j]);
+                if (s > best) { best = s; ep = ln[j]; moved = true; }
+            }
+        }
+        return ep;
+    }
+
+    /** Beam search on one layer; result sorted by similarity, best first. */
+    private List<Cand> searchLayer(float[] q, int qOff, int ep, int ef, int level) {
+        if (++visitGen == Integer.MAX_VALUE) { Arrays.fill(visited, 0); visitGen = 1; }
+        PriorityQueue<Cand> cand = new PriorityQueue<>(ef, (a, b) -> Float.compare(b.sim, a.sim));
+        PriorityQueue<Cand> res  = new PriorityQueue<>(ef + 1, (a, b) -> Float.compare(a.sim, b.sim));
+
+        Cand start = new Cand(ep, sim(q, qOff, ep));
+        visited[ep] = visitGen;
+        cand.add(start);
+        res.add(start);
+        while (!cand.isEmpty()) {
+            Cand c = cand.poll();
+            if (res.size() >= ef && c.sim < res.peek().sim) break;
+            int[] ln = links[c.id][level];
+            for (int j = 1; j <= ln[0]; j++) {
+                int n = ln[j];
+                if (visited[n] == visitGen) continue;
+                visited[n] = visitGen;
+                float s = sim(q, qOff, n);
+                if (res.size() < ef || s > res.peek().sim) {
+                    Cand nc = new Cand(n, s);
+                    cand.add(nc);
+                    res.add(nc);
+                    if (res.size() > ef) res.poll();
+                }
+            }
+        }
+        List<Cand> out = new ArrayList<>(res);
+        Collections.sort(out, (a, b) -> Float.compare(b.sim, a.sim));
+        return out;
+    }
+
+    /** Add edge a -> b on {@code level}; when full, replace a's weakest link if b is closer. */
+    private void connect(int a, int b, int level) {
+        int[] ln = links[a][level];
+        int cap = ln.length - 1;
+        for (int j = 1; j <= ln[0]; j++) if (ln[j] == b) return;
+        if (ln[0] < cap) { ln[++ln[0]] = b; return; }
+
+        int aOff = a * dim;
+        int worst = -1;
+        float worstSim = sim(vecs, aOff, b);
+        for (int j = 1; j <= ln[0]; j++) {
+            float s = sim(vecs, aOff, ln[j]);
+            if (s < worstSim) { worstSim = s; worst = j; }
+        }
+        if (worst > 0) ln[worst] = b;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n <= nodeLabel.length) return;
+        int cap = Math.max(n, nodeLabel.length * 2);
+        vecs = Arrays.copyOf(vecs, cap * dim);
+        nodeLabel = Arrays.copyOf(nodeLabel, cap);
+        nodeLevel = Arrays.copyOf(nodeLevel, cap);
+        deleted = Arrays.copyOf(deleted, cap);
+        links = Arrays.copyOf(links, cap);
+        visited = Arrays.copyOf(visited, cap);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory 1:N identification over every enrolled identity (kiosk use).
+ * All samples of all identities live in one packed {@link FaceGallery}; a query is one pass over
+ * the matrix, then a per-identity max and a partial top-k selection. Build once, query from a
+ * single analyzer thread (mutation is not synchronized).
+ * <p>
+ * With {@link #useTwoStage} the pass runs on projected vectors and only a shortlist of rows is
+ * rescored at full width ({@link TwoStageMatcher}); identities with no shortlisted row are left
+ * out, so topK may return fewer than k.
+ */
+public final class IdentificationIndex {
+
+    public static final float DEFAULT_THRESHOLD = 0.60f;
+    /** Rows rescored at full width per query in two-stage mode. */
+    public static final int DEFAULT_SHORTLIST = 64;
+
+    /** One candidate identity: its best sample score and the threshold it must clear. */
+    public static final class Match {
+        public final String uid;
+        public final float score;
+        public final float threshold;
+
+        Match(String uid, float score, float threshold) {
+            this.uid = uid;
+            this.score = score;
+            this.threshold = threshold;
+        }
+
+        public boolean accepted() { return score >= threshold; }
+
+        @NonNull @Override public String toString() {
+            return uid + " " + String.format(java.util.Locale.US, "%.3f", score) + (accepted() ? " accepted" : "");
+        }
+    }
+
+    private final FaceGallery rows;
+    private int[] owner = new int[64];               // row -> identity index
+    private final List<String> ids = new ArrayList<>();
+    private final Map<String, Integer> idIndex = new HashMap<>();
+    private float[] thresholds = new float[16];
+    private float defaultThreshold = DEFAULT_THRESHOLD;
+
+    // Per-query scratch, grown with the index
+    private final FaceGallery.Scores scores = new FaceGallery.Scores();
+    private float[] bestPerId = new float[16];
+
+    @Nullable private TwoStageMatcher twoStage;
+    private int[] shortRows;
+    private float[] shortScores;
+
+    public IdentificationIndex(int dim) {
+        rows = new FaceGallery(dim, 64);
+    }
+
+    public int dim() { return rows.dim(); }
+    public int identityCount() { return ids.size(); }
+    public int sampleCount() { return rows.size(); }
+
+    /**
+     * Add one enrolled sample (copied + L2-normalized) for {@code uid}. A vector of the wrong
+     * dimension is rejected before {@code uid} is registered, so it never shows up without samples.
+     */
+    public boolean add(@NonNull String uid, @NonNull float[] vec) {
+        if (vec.length != rows.dim()) return false;
+        Integer id = idIndex.get(uid);
+        if (id == null) {
+            id = ids.size();
+            ids.add(uid);
+            idIndex.put(uid, id);
+            if (id >= thresholds.length) {
+                int old = thresholds.length;
+                thresholds = Arrays.copyOf(thresholds, old * 2);
+                Arrays.fill(thresholds, old, thresholds.length, Float.NaN);
+            }
+            thresholds[id] = Float.NaN;   // NaN = use default
+        }
+        int row = rows.size();
+        rows.add(vec);
+        if (row >= owner.length) owner = Arrays.copyOf(owner, owner.length * 2);
+        owner[row] = id;
+        return true;
+    }
+
+    /** Per-identity accept threshold (e.g. stricter for look-alikes). */
+    public void setThreshold(@NonNull String uid, float threshold) {
+        Integer id = idIndex.get(uid);
+        if (id != null) thresholds[id] = threshold;
+    }
+
+    public void setDefaultThreshold(float threshold) { defaultThreshold = threshold; }
+
+    /**
+     * Shortlist on {@code projection} and rescore {@code shortlist} rows per query
+     * (null = back to the exact full pass). Ignored if the projection does not fit this index.
+     */
+    public void useTwoStage(@Nullable PcaProjection projection, int shortlist) {
+        if (projection == null || projection.inputDim() != rows.dim()) {
+            twoStage = null;
+            return;
+        }
+        twoStage = new TwoStageMatcher(projection, shortlist);
+        shortRows = new int[twoStage.shortlist()];
+        shortScores = new float[twoStage.shortlist()];
+    }
+
+    public boolean isTwoStage() { return twoStage != null; }
+
+    /** Best {@code k} identities by their best-sample cosine, highest first. */
+    @NonNull
+    public List<Match> topK(@NonNull float[] probe, int k) {
+        int n = ids.size();
+        if (n == 0 || k <= 0) return new ArrayList<>(0);
+        if (bestPerId.length < n) bestPerId = new float[Math.max(n, bestPerId.length * 2)];
+        Arrays.fill(bestPerId, 0, n, -2f);
+
+        if (twoStage != null && rows.size() > twoStage.shortlist()) {
+            twoStage.sync(rows);
+            int m = twoStage.search(probe, rows, shortRows, shortScores);
+            for (int i = 0; i < m; i++) {
+                int id = owner[shortRows[i]];
+                if (shortScores[i] > bestPerId[id]) bestPerId[id] = shortScores[i];
+            }
+        } else {
+            if (scores.perRow == null || scores.perRow.length < rows.size()) {
+                scores.perRow = new float[Math.max(rows.size(), 64)];
+            }
+            rows.score(probe, Float.MAX_VALUE, scores);
+            float[] per = scores.perRow;
+            for (int r = 0, m = rows.size(); r < m; r++) {
+                int id = owner[r];
+                if (per[r] > bestPerId[id]) bestPerId[id] = per[r];
+            }
+        }
+
+        // Partial selection: keep the k best in a small sorted array
+        k = Math.min(k, n);
+        int[] topId = new int[k];
+        float[] topScore = new float[k];
+        int filled = 0;
+        for (int id = 0; id < n; id++) {
+            float s = bestPerId[id];
+            if (s <= -2f) continue;   // not shortlisted
+            if (filled == k && s <= topScore[k - 1]) continue;
+            int pos = filled < k ? filled++ : k - 1;
+            while (pos > 0 && topScore[pos - 1] < s) {
+                topScore[pos] = topScore[pos - 1];
+                topId[pos] = topId[pos - 1];
+                pos--;
+            }
+            topScore[pos] = s;
+            topId[pos] = id;
+        }
+
+        List<Match> out = new ArrayList<>(filled);
+        for (int i = 0; i < filled; i++) {
+            out.add(new Match(ids.get(topId[i]), topScore[i], thresholdOf(topId[i])));
+        }
+        return out;
+    }
+
+    /** Top-1 identity if it clears its own threshold, otherwise null (unknown face). */
+    @Nullable
+    public Match identify(@NonNull float[] probe) {
+        List<Match> top = topK(probe, 1);
+        if (top.isEmpty() || !top.get(0).accepted()) return null;
+        return top.get(0);
+    }
+
+    private float thresholdOf(int id) {
+        float t = thresholds[id];
+        return Float.isNaN(t) ? defaultThreshold : t;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import java.nio.FloatBuffer;
+
+/** Model input fills from raw pixels, kept free of Bitmap so they run (and benchmark) off-device. */
+public final class InputTensors {
+
+    private InputTensors() {}
+
+    /**
+     * Allocation-free tensor fill: ARGB pixels -> NHWC RGB floats (v - mean) / std, written from
+     * position 0 of {@code dst} (e.g. a view over a direct, native-ordered input buffer).
+     */
+    public static void fromArgb(int[] px, int count, float mean, float std, FloatBuffer dst) {
+        float inv = 1f / std;
+        dst.rewind();
+        for (int i = 0; i < count; i++) {
+            int c = px[i];
+            dst.put((((c >> 16) & 0xff) - mean) * inv);
+            dst.put((((c >> 8) & 0xff) - mean) * inv);
+            dst.put(((c & 0xff) - mean) * inv);
+        }
+        dst.rewind();
+    }
+}
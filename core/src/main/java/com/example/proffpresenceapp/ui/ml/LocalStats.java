@@ -1,14 +1,13 @@
 package com.example.proffpresenceapp.ui.ml;
 
-import android.content.Context;
-import android.content.SharedPreferences;
+import com.example.proffpresenceapp.ui.platform.KeyValueStore;
 
 public final class LocalStats {
-    private static final String PREF = "eta_local_stats";
+    /** Store name the app opens for these stats. */
+    public static final String PREF = "eta_local_stats";
     private LocalStats(){}
 
-    public static void recordTrip(Context ctx, double distanceKm, long durSecs) {
-        SharedPreferences p = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+    public static void recordTrip(KeyValueStore p, double distanceKm, long durSecs) {
         // avgSpeed7d: exponential moving avg in km/h
         double kmph = distanceKm / Math.max(1e-6, (durSecs/3600.0));
         double prev = Double.longBitsToDouble(p.getLong("speed_avg", Double.doubleToLongBits(18.0)));
@@ -25,14 +24,12 @@ public final class LocalStats {
                 .apply();
     }
 
-    public static double getAvgSpeed7d(Context ctx) {
-        SharedPreferences p = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+    public static double getAvgSpeed7d(KeyValueStore p) {
         return Double.longBitsToDouble(p.getLong("speed_avg", Double.doubleToLongBits(18.0)));
     }
-    public static double getLast3AvgSecs(Context ctx) {
-        SharedPreferences p = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+    public static double getLast3AvgSecs(KeyValueStore p) {
         double s = Double.longBitsToDouble(p.getLong("last3_sum", Double.doubleToLongBits(0)));
         int n = p.getInt("last3_n", 0);
         return n == 0 ? 0.0 : (s / n);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,167 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Linear projection of embeddings onto their top principal components, used for a cheap first
+ * scoring pass ({@link TwoStageMatcher}). Fitted offline from enrolled embeddings with
+ * {@link #fit} (covariance + power iteration with Gram-Schmidt deflation), saved with
+ * {@link #write} and shipped next to the model as the descriptor's {@code pcaAsset}.
+ * <p>
+ * Projected vectors are L2-normalized, so their dot product approximates the cosine of the
+ * mean-centred originals. File (little-endian): magic "PCA1" | dim | k | mean[dim] | W[k*dim].
+ */
+public final class PcaProjection {
+
+    private static final int MAGIC = 0x31414350;   // "PCA1" as little-endian bytes
+    private static final int MAX_ITERS = 200;
+    private static final double TOL = 1e-7;
+
+    private final int dim, k;
+    private final float[] mean;        // dim
+    private final float[] w;           // k rows of dim, orthonormal
+    private final float[] variance;    // eigenvalue per component (0 when loaded from file)
+
+    private PcaProjection(int dim, int k, float[] mean, float[] w, float[] variance) {
+        this.dim = dim;
+        this.k = k;
+        this.mean = mean;
+        this.w = w;
+        this.variance = variance;
+    }
+
+    public int inputDim() { return dim; }
+    public int outputDim() { return k; }
+
+    /** Variance captured by component {@code i} (fit only). */
+    public float variance(int i) { return variance[i]; }
+
+    /** Project {@code src[srcOff .. +dim)} into {@code dst[dstOff .. +k)}, L2-normalized. */
+    public void project(@NonNull float[] src, int srcOff, @NonNull float[] dst, int dstOff) {
+        double norm = 0;
+        for (int c = 0, wo = 0; c < k; c++, wo += dim) {
+            float s = 0f;
+            for (int d = 0; d < dim; d++) s += (src[srcOff + d] - mean[d]) * w[wo + d];
+            dst[dstOff + c] = s;
+            norm += (double) s * s;
+        }
+        float inv = (float) (1.0 / Math.sqrt(Math.max(norm, 1e-12)));
+        for (int c = 0; c < k; c++) dst[dstOff + c] *= inv;
+    }
+
+    /**
+     * Fit {@code k} components to the rows of {@code samples} (offline; O(n*dim^2 + k*iters*dim^2)).
+     * {@code seed} makes the power-iteration starts reproducible.
+     */
+    @NonNull
+    public static PcaProjection fit(@NonNull FaceGallery samples, int k, long seed) {
+        int dim = samples.dim(), n = samples.size();
+        if (n < 2 || k <= 0 || k > dim) throw new IllegalArgumentException("n=" + n + " k=" + k);
+        float[] x = samples.raw();
+
+        double[] mu = new double[dim];
+        for (int r = 0; r < n; r++) for (int d = 0; d < dim; d++) mu[d] += x[r * dim + d];
+        for (int d = 0; d < dim; d++) mu[d] /= n;
+
+        double[] cov = new double[dim * dim];
+        double[] c = new double[dim];
+        for (int r = 0; r < n; r++) {
+            for (int d = 0; d < dim; d++) c[d] = x[r * dim + d] - mu[d];
+            for (int i = 0; i < dim; i++) {
+                double ci = c[i];
+                int row = i * dim;
+                for (int j = i; j < dim; j++) cov[row + j] += ci * c[j];
+            }
+        }
+        for (int i = 0; i < dim; i++) {
+            for (int j = i; j < dim; j++) {
+                cov[i * dim + j] /= (n - 1);
+                cov[j * dim + i] = cov[i * dim + j];
+            }
+        }
+
+        Random rnd = new Random(seed);
+        double[][] comps = new double[k][];
+        float[] variance = new float[k];
+        double[] v = new double[dim], nv = new double[dim];
+        for (int p = 0; p < k; p++) {
+            for (int d = 0; d < dim; d++) v[d] = rnd.nextGaussian();
+            orthonormalize(v, comps, p);
+            for (int it = 0; it < MAX_ITERS; it++) {
+                for (int i = 0; i < dim; i++) {
+                    double s = 0;
+                    int row = i * dim;
+                    for (int j = 0; j < dim; j++) s += cov[row + j] * v[j];
+                    nv[i] = s;
+                }
+                orthonormalize(nv, comps, p);
+                double delta = 0;
+                for (int d = 0; d < dim; d++) { delta += Math.abs(nv[d] - v[d]); v[d] = nv[d]; }
+                if (delta < TOL * dim) break;
+            }
+            comps[p] = v.clone();
+            double lambda = 0;
+            for (int i = 0; i < dim; i++) {
+                double s = 0;
+                for (int j = 0; j < dim; j++) s += cov[i * dim + j] * v[j];
+                lambda += v[i] * s;
+            }
+            variance[p] = (float) lambda;
+        }
+
+        float[] mean = new float[dim];
+        float[] w = new float[k * dim];
+        for (int d = 0; d < dim; d++) mean[d] = (float) mu[d];
+        for (int p = 0; p < k; p++) for (int d = 0; d < dim; d++) w[p * dim + d] = (float) comps[p][d];
+        return new PcaProjection(dim, k, mean, w, variance);
+    }
+
+    public void write(@NonNull OutputStream out) throws IOException {
+        ByteBuffer bb = ByteBuffer.allocate(12 + 4 * (dim + k * dim)).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(MAGIC).putInt(dim).putInt(k);
+        for (float f : mean) bb.putFloat(f);
+        for (float f : w) bb.putFloat(f);
+        out.write(bb.array());
+    }
+
+    @NonNull
+    public static PcaProjection read(@NonNull InputStream in) throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        byte[] head = new byte[12];
+        din.readFully(head);
+        ByteBuffer hb = ByteBuffer.wrap(head).order(ByteOrder.LITTLE_ENDIAN);
+        if (hb.getInt() != MAGIC) throw new IOException("not a PCA file");
+        int dim = hb.getInt(), k = hb.getInt();
+        if (dim <= 0 || k <= 0 || k > dim) throw new IOException("bad PCA shape " + k + "x" + dim);
+
+        byte[] body = new byte[4 * (dim + k * dim)];
+        din.readFully(body);
+        ByteBuffer bb = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        float[] mean = new float[dim];
+        float[] w = new float[k * dim];
+        for (int d = 0; d < dim; d++) mean[d] = bb.getFloat();
+        for (int i = 0; i < w.length; i++) w[i] = bb.getFloat();
+        return new PcaProjection(dim, k, mean, w, new float[k]);
+    }
+
+    /** Remove the first {@code p} components from {@code v}, then normalize it. */
+    private static void orthonormalize(double[] v, double[][] comps, int p) {
+        for (int q = 0; q < p; q++) {
+            double dot = 0;
+            for (int d = 0; d < v.length; d++) dot += v[d] * comps[q][d];
+            for (int d = 0; d < v.length; d++) v[d] -= dot * comps[q][d];
+        }
+        double s = 0;
+        for (double f : v) s += f * f;
+        s = Math.sqrt(Math.max(s, 1e-300));
+        for (int d = 0; d < v.length; d++) v[d] /= s;
+    }
+}
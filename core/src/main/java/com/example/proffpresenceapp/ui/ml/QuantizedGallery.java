@@ -0,0 +1,90 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * int8 counterpart of {@link FaceGallery}: rows are L2-normalized, quantized per vector and packed
+ * into one byte[] (4x smaller than float32); scoring quantizes the probe once and runs
+ * {@link EmbeddingCodec#dotInt8} per row. Same {@link FaceGallery.Scores} contract, so
+ * {@link FaceMatcher#accepts} decides on it unchanged.
+ * <p>
+ * Built from a float gallery with {@link #of}. Rows that came from i8 storage (blobs, i8 rows)
+ * re-quantize to exactly the stored codes, since normalizing only rescales them.
+ */
+public final class QuantizedGallery {
+
+    private final int dim;
+    private byte[] data;
+    private float[] scales;
+    private int size = 0;
+
+    // Per-probe scratch
+    private final float[] normRow;
+    private final byte[] qProbe;
+
+    public QuantizedGallery(int dim, int initialCapacity) {
+        this.dim = dim;
+        int cap = Math.max(1, initialCapacity);
+        data = new byte[dim * cap];
+        scales = new float[cap];
+        normRow = new float[dim];
+        qProbe = new byte[dim];
+    }
+
+    /** Quantize every row of {@code g} (already L2-normalized). */
+    @NonNull
+    public static QuantizedGallery of(@NonNull FaceGallery g) {
+        int dim = g.dim();
+        QuantizedGallery q = new QuantizedGallery(dim, g.size());
+        float[] raw = g.raw();
+        for (int r = 0; r < g.size(); r++) {
+            System.arraycopy(raw, r * dim, q.normRow, 0, dim);
+            q.put(q.normRow);
+        }
+        return q;
+    }
+
+    public int dim() { return dim; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    /** Normalize + quantize a float vector into the next row. Rows of the wrong length are skipped. */
+    public boolean add(@NonNull float[] v) {
+        if (v.length != dim) return false;
+        System.arraycopy(v, 0, normRow, 0, dim);
+        FaceGallery.normalize(normRow, 0, dim);
+        put(normRow);
+        return true;
+    }
+
+    /**
+     * One pass over an L2-normalized probe: best score + index, agree count (>= secondary),
+     * optional per-row scores.
+     */
+    public FaceGallery.Scores score(@NonNull float[] probe, float secondary, @NonNull FaceGallery.Scores out) {
+        out.best = -2f; out.bestIndex = -1; out.agree = 0; out.rows = size;
+        if (probe.length != dim) return out;
+        float[] per = (out.perRow != null && out.perRow.length >= size) ? out.perRow : null;
+        float ps = EmbeddingCodec.quantize(probe, qProbe);
+        for (int r = 0, off = 0; r < size; r++, off += dim) {
+            float s = EmbeddingCodec.dotInt8(qProbe, 0, data, off, dim) * ps * scales[r];
+            if (per != null) per[r] = s;
+            if (s > out.best) { out.best = s; out.bestIndex = r; }
+            if (s >= secondary) out.agree++;
+        }
+        return out;
+    }
+
+    private void put(float[] unit) {
+        if (size == scales.length) {
+            int cap = scales.length * 2;
+            data = Arrays.copyOf(data, cap * dim);
+            scales = Arrays.copyOf(scales, cap);
+        }
+        scales[size] = EmbeddingCodec.quantize(unit, qProbe);
+        System.arraycopy(qProbe, 0, data, size * dim, dim);
+        size++;
+    }
+}
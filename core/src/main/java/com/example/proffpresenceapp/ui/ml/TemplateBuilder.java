@@ -0,0 +1,193 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compacts a user's gallery into a handful of centroid templates so per-frame matching cost stops
+ * growing with every re-enrollment:
+ * <ol>
+ *   <li>Outlier pruning: a sample whose similarity to its nearest other samples falls well below
+ *       the gallery's median (median - 3 MAD) is dropped, e.g. a mis-detected face or another
+ *       person.</li>
+ *   <li>Pose split: with per-sample yaw, samples are grouped into left / frontal / right first,
+ *       so a turned view keeps its own template instead of being averaged into the frontal one.</li>
+ *   <li>Spherical k-means in each group (farthest-point seeding, deterministic) with about
+ *       {@link #SAMPLES_PER_TEMPLATE} samples per centroid.</li>
+ * </ol>
+ * The kept samples stay in the result: centroids shortlist, members decide
+ * ({@link FaceTemplates#score}).
+ */
+public final class TemplateBuilder {
+
+    // ---- Tunables ----
+    public static final int   SAMPLES_PER_TEMPLATE = 4;
+    public static final int   MAX_TEMPLATES = 6;
+    private static final float POSE_SPLIT_DEG = 10f;
+    private static final float MAD_K = 3f;
+    private static final float MIN_MAD = 0.05f;
+    private static final int   KMEANS_ITERS = 10;
+    private static final int   NEIGHBOURS = 3;
+
+    private TemplateBuilder() {}
+
+    /** Templates for {@code gallery} (rows L2-normalized); {@code yaw} is optional, one per row. */
+    @NonNull
+    public static FaceTemplates build(@NonNull FaceGallery gallery, @Nullable float[] yaw) {
+        int n = gallery.size(), dim = gallery.dim();
+        float[] data = gallery.raw();
+        if (n == 0) return new FaceTemplates(new FaceGallery(dim, 1), new FaceGallery(dim, 1), new int[0], 0);
+
+        boolean[] keep = prune(data, n, dim);
+        int pruned = 0;
+        for (boolean k : keep) if (!k) pruned++;
+
+        // Pose groups (single group without yaw)
+        List<List<Integer>> groups = new ArrayList<>();
+        if (yaw != null && yaw.length >= n) {
+            for (int g = 0; g < 3; g++) groups.add(new ArrayList<>());
+            for (int i = 0; i < n; i++) {
+                if (!keep[i]) continue;
+                int g = yaw[i] < -POSE_SPLIT_DEG ? 0 : (yaw[i] > POSE_SPLIT_DEG ? 2 : 1);
+                groups.get(g).add(i);
+            }
+        } else {
+            List<Integer> all = new ArrayList<>();
+            for (int i = 0; i < n; i++) if (keep[i]) all.add(i);
+            groups.add(all);
+        }
+
+        // Templates per group, proportional to its size, at least one per non-empty group
+        int kept = n - pruned;
+        int budget = Math.min(MAX_TEMPLATES, Math.max(1, (kept + SAMPLES_PER_TEMPLATE - 1) / SAMPLES_PER_TEMPLATE));
+        FaceGallery centroids = new FaceGallery(dim, budget + groups.size());
+        FaceGallery members = new FaceGallery(dim, kept);
+        int[] weights = new int[budget + groups.size()];
+        for (List<Integer> g : groups) {
+            if (g.isEmpty()) continue;
+            int k = Math.max(1, Math.min(g.size(), Math.round(budget * g.size() / (float) kept)));
+            kmeans(data, dim, g, k, centroids, members, weights);
+        }
+        return new FaceTemplates(centroids, members, Arrays.copyOf(weights, centroids.size()), pruned);
+    }
+
+    /**
+     * Outlier test on each sample's mean cosine to its {@link #NEIGHBOURS} closest others (so a
+     * minority pose with a few consistent views is not mistaken for an outlier); galleries under
+     * 4 samples are left alone, and at most half of a gallery is ever dropped.
+     */
+    static boolean[] prune(float[] data, int n, int dim) {
+        boolean[] keep = new boolean[n];
+        Arrays.fill(keep, true);
+        if (n < 4) return keep;
+
+        float[][] sim = new float[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                sim[i][j] = sim[j][i] = FaceGallery.dot(data, i * dim, data, j * dim, dim);
+            }
+        }
+        int k = Math.min(NEIGHBOURS, n - 1);
+        float[] score = new float[n];
+        float[] row = new float[n - 1];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0, o = 0; j < n; j++) if (j != i) row[o++] = sim[i][j];
+            Arrays.sort(row);
+            for (int t = 0; t < k; t++) score[i] += row[n - 2 - t];
+            score[i] /= k;
+        }
+
+        float med = median(score.clone());
+        float[] dev = new float[n];
+        for (int i = 0; i < n; i++) dev[i] = Math.abs(score[i] - med);
+        float cut = med - MAD_K * Math.max(median(dev), MIN_MAD);
+
+        int dropped = 0;
+        for (int i = 0; i < n; i++) {
+            if (score[i] < cut && dropped < n / 2) { keep[i] = false; dropped++; }
+        }
+        return keep;
+    }
+
+    /**
+     * Spherical k-means over {@code idx}; appends k normalized centroids, their member counts, and
+     * the member rows themselves in centroid order.
+     */
+    private static void kmeans(float[] data, int dim, List<Integer> idx, int k,
+                               FaceGallery out, FaceGallery members, int[] weights) {
+        int m = idx.size();
+        float[] cent = new float[k * dim];
+
+        // Seed: sample closest to the group mean, then repeatedly the one farthest from all seeds
+        float[] mean = new float[dim];
+        for (int i : idx) for (int d = 0; d < dim; d++) mean[d] += data[i * dim + d];
+        int first = 0;
+        float bestS = -Float.MAX_VALUE;
+        for (int a = 0; a < m; a++) {
+            float s = FaceGallery.dot(mean, 0, data, idx.get(a) * dim, dim);
+            if (s > bestS) { bestS = s; first = a; }
+        }
+        System.arraycopy(data, idx.get(first) * dim, cent, 0, dim);
+        float[] nearest = new float[m];
+        Arrays.fill(nearest, -2f);
+        for (int c = 1; c < k; c++) {
+            int far = 0;
+            float farS = Float.MAX_VALUE;
+            for (int a = 0; a < m; a++) {
+                nearest[a] = Math.max(nearest[a], FaceGallery.dot(cent, (c - 1) * dim, data, idx.get(a) * dim, dim));
+                if (nearest[a] < farS) { farS = nearest[a]; far = a; }
+            }
+            System.arraycopy(data, idx.get(far) * dim, cent, c * dim, dim);
+        }
+
+        int[] assign = new int[m];
+        int[] count = new int[k];
+        for (int it = 0; it < KMEANS_ITERS; it++) {
+            boolean changed = it == 0;
+            for (int a = 0; a < m; a++) {
+                int off = idx.get(a) * dim, best = 0;
+                float bs = -Float.MAX_VALUE;
+                for (int c = 0; c < k; c++) {
+                    float s = FaceGallery.dot(cent, c * dim, data, off, dim);
+                    if (s > bs) { bs = s; best = c; }
+                }
+                if (assign[a] != best) { assign[a] = best; changed = true; }
+            }
+            if (!changed) break;
+            Arrays.fill(cent, 0f);
+            Arrays.fill(count, 0);
+            for (int a = 0; a < m; a++) {
+                int off = idx.get(a) * dim, c = assign[a];
+                for (int d = 0; d < dim; d++) cent[c * dim + d] += data[off + d];
+                count[c]++;
+            }
+            for (int c = 0; c < k; c++) {
+                if (count[c] == 0) continue;   // emptied; dropped below
+                FaceGallery.normalize(cent, c * dim, dim);
+            }
+        }
+
+        float[] row = new float[dim];
+        for (int c = 0; c < k; c++) {
+            if (count[c] == 0) continue;
+            System.arraycopy(cent, c * dim, row, 0, dim);
+            weights[out.size()] = count[c];
+            out.add(row);
+            for (int a = 0; a < m; a++) {
+                if (assign[a] != c) continue;
+                System.arraycopy(data, idx.get(a) * dim, row, 0, dim);
+                members.add(row);
+            }
+        }
+    }
+
+    private static float median(float[] v) {
+        Arrays.sort(v);
+        int n = v.length;
+        return (n & 1) == 1 ? v[n / 2] : 0.5f * (v[n / 2 - 1] + v[n / 2]);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Shortlist-then-rescore search over a large {@link FaceGallery}: every row is scored on its
+ * {@link PcaProjection} (k dims instead of the full embedding), the best {@code shortlist} rows
+ * are kept, and only those are rescored on the full-width vectors. Results are exact cosines, so
+ * thresholds do not change; a true match is lost only if the projection ranks it below the
+ * shortlist cut.
+ * <p>
+ * The projected rows follow the gallery append-only: {@link #sync} projects rows added since the
+ * last call (and starts over if the gallery shrank). Not synchronized; one analyzer thread.
+ */
+public final class TwoStageMatcher {
+
+    private final PcaProjection projection;
+    private final int shortlist;
+    private final FaceGallery projected;
+
+    // Per-probe scratch
+    private final float[] probeK;
+    private final int[] heapRow;
+    private final float[] heapScore;
+
+    public TwoStageMatcher(@NonNull PcaProjection projection, int shortlist) {
+        this.projection = projection;
+        this.shortlist = Math.max(1, shortlist);
+        this.projected = new FaceGallery(projection.outputDim(), 64);
+        this.probeK = new float[projection.outputDim()];
+        this.heapRow = new int[this.shortlist];
+        this.heapScore = new float[this.shortlist];
+    }
+
+    public int shortlist() { return shortlist; }
+    public int projectedDim() { return projection.outputDim(); }
+
+    /** Bring the projected rows up to date with {@code full} (rows only ever appended). */
+    public void sync(@NonNull FaceGallery full) {
+        if (full.dim() != projection.inputDim()) throw new IllegalArgumentException("dim " + full.dim());
+        if (projected.size() > full.size()) projected.clear();
+        float[] src = full.raw(), row = new float[projection.outputDim()];
+        for (int r = projected.size(); r < full.size(); r++) {
+            projection.project(src, r * full.dim(), row, 0);
+            projected.add(row);
+        }
+    }
+
+    /**
+     * Rows of {@code full} most similar to the L2-normalized {@code probe}: at most
+     * {@link #shortlist} of them, with exact full-width scores, best first. Returns the count.
+     * Call {@link #sync} after adding rows.
+     */
+    public int search(@NonNull float[] probe, @NonNull FaceGallery full,
+                      @NonNull int[] rowsOut, @NonNull float[] scoresOut) {
+        int n = Math.min(projected.size(), full.size());
+        if (n == 0) return 0;
+
+        // Stage 1: approximate scores, top-L kept in a min-heap
+        projection.project(probe, 0, probeK, 0);
+        float[] pData = projected.raw();
+        int k = projection.outputDim(), filled = 0;
+        for (int r = 0, off = 0; r < n; r++, off += k) {
+            float s = FaceGallery.dot(probeK, 0, pData, off, k);
+            if (filled < shortlist) {
+                heapRow[filled] = r;
+                heapScore[filled] = s;
+                siftUp(filled++);
+            } else if (s > heapScore[0]) {
+                heapRow[0] = r;
+                heapScore[0] = s;
+                siftDown(0, filled);
+            }
+        }
+
+        // Stage 2: exact rescore of the shortlist, insertion-sorted
+        float[] data = full.raw();
+        int dim = full.dim(), len = Math.min(dim, probe.length);
+        int out = Math.min(filled, Math.min(rowsOut.length, scoresOut.length));
+        if (out == 0) return 0;
+        int m = 0;
+        for (int i = 0; i < filled; i++) {
+            int r = heapRow[i];
+            float s = FaceGallery.dot(probe, 0, data, r * dim, len);
+            if (m == out && s <= scoresOut[out - 1]) continue;
+            int pos = m < out ? m++ : out - 1;
+            while (pos > 0 && scoresOut[pos - 1] < s) {
+                scoresOut[pos] = scoresOut[pos - 1];
+                rowsOut[pos] = rowsOut[pos - 1];
+                pos--;
+            }
+            scoresOut[pos] = s;
+            rowsOut[pos] = r;
+        }
+        return m;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int p = (i - 1) >> 1;
+            if (heapScore[p] <= heapScore[i]) return;
+            swap(i, p);
+            i = p;
+        }
+    }
+
+    private void siftDown(int i, int n) {
+        while (true) {
+            int l = 2 * i + 1, r = l + 1, min = i;
+            if (l < n && heapScore[l] < heapScore[min]) min = l;
+            if (r < n && heapScore[r] < heapScore[min]) min = r;
+            if (min == i) return;
+            swap(i, min);
+            i = min;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int tr = heapRow[a]; heapRow[a] = heapRow[b]; heapRow[b] = tr;
+        float ts = heapScore[a]; heapScore[a] = heapScore[b]; heapScore[b] = ts;
+    }
+}
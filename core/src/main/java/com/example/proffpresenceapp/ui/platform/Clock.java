@@ -0,0 +1,10 @@
+package com.example.proffpresenceapp.ui.platform;
+
+/** Wall-clock time source; swapped for a fake one in tests. */
+public interface Clock {
+
+    Clock SYSTEM = System::currentTimeMillis;
+
+    /** Milliseconds since the epoch. */
+    long nowMs();
+}
@@ -0,0 +1,69 @@
+package com.example.proffpresenceapp.ui.platform;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Small persistent key/value store, the subset of SharedPreferences the core logic needs.
+ * {@link Memory} backs tests and benchmarks.
+ */
+public interface KeyValueStore {
+
+    long getLong(@NonNull String key, long def);
+
+    int getInt(@NonNull String key, int def);
+
+    @Nullable
+    String getString(@NonNull String key, @Nullable String def);
+
+    /** Batched writes, applied together by {@link Editor#apply}. */
+    @NonNull
+    Editor edit();
+
+    interface Editor {
+        @NonNull Editor putLong(@NonNull String key, long v);
+        @NonNull Editor putInt(@NonNull String key, int v);
+        @NonNull Editor putString(@NonNull String key, @Nullable String v);
+        @NonNull Editor remove(@NonNull String key);
+        void apply();
+    }
+
+    /** In-memory store; not persistent, not thread-safe. */
+    final class Memory implements KeyValueStore {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @Override public long getLong(@NonNull String key, long def) {
+            Object v = values.get(key);
+            return v instanceof Long ? (Long) v : def;
+        }
+
+        @Override public int getInt(@NonNull String key, int def) {
+            Object v = values.get(key);
+            return v instanceof Integer ? (Integer) v : def;
+        }
+
+        @Nullable @Override public String getString(@NonNull String key, @Nullable String def) {
+            Object v = values.get(key);
+            return v instanceof String ? (String) v : def;
+        }
+
+        @NonNull @Override public Editor edit() {
+            Map<String, Object> pending = new HashMap<>();
+            return new Editor() {
+                @NonNull @Override public Editor putLong(@NonNull String key, long v) { pending.put(key, v); return this; }
+                @NonNull @Override public Editor putInt(@NonNull String key, int v) { pending.put(key, v); return this; }
+                @NonNull @Override public Editor putString(@NonNull String key, @Nullable String v) { pending.put(key, v); return this; }
+                @NonNull @Override public Editor remove(@NonNull String key) { pending.put(key, null); return this; }
+                @Override public void apply() {
+                    for (Map.Entry<String, Object> e : pending.entrySet()) {
+                        if (e.getValue() == null) values.remove(e.getKey());
+                        else values.put(e.getKey(), e.getValue());
+                    }
+                }
+            };
+        }
+    }
+}
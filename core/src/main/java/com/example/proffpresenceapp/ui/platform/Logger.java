@@ -0,0 +1,35 @@
+package com.example.proffpresenceapp.ui.platform;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Tagged logging, routed to logcat on a device and to stderr (or nowhere) on a plain JVM.
+ * A disabled level still costs whatever building the message costs, so hot paths check
+ * {@link #isDebugEnabled()} before concatenating.
+ */
+public interface Logger {
+
+    void d(@NonNull String tag, @NonNull String msg);
+
+    /** False if {@link #d} drops everything. */
+    default boolean isDebugEnabled() { return true; }
+
+    void w(@NonNull String tag, @NonNull String msg, @Nullable Throwable t);
+
+    /** Drops everything (the default, e.g. for tests and benchmarks). */
+    Logger NONE = new Logger() {
+        @Override public void d(@NonNull String tag, @NonNull String msg) { }
+        @Override public boolean isDebugEnabled() { return false; }
+        @Override public void w(@NonNull String tag, @NonNull String msg, @Nullable Throwable t) { }
+    };
+
+    /** Warnings to stderr, debug dropped. */
+    Logger STDERR = new Logger() {
+        @Override public void d(@NonNull String tag, @NonNull String msg) { }
+        @Override public boolean isDebugEnabled() { return false; }
+        @Override public void w(@NonNull String tag, @NonNull String msg, @Nullable Throwable t) {
+            System.err.println("W/" + tag + ": " + msg + (t != null ? " (" + t + ")" : ""));
+        }
+    };
+}
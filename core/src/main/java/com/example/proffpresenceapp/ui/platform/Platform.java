@@ -0,0 +1,23 @@
+package com.example.proffpresenceapp.ui.platform;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Process-wide clock and logger used by the core classes. Defaults suit a plain JVM
+ * ({@link Clock#SYSTEM}, {@link Logger#NONE}); the app installs its Android versions at startup.
+ */
+public final class Platform {
+
+    private static volatile Clock clock = Clock.SYSTEM;
+    private static volatile Logger logger = Logger.NONE;
+
+    private Platform() {}
+
+    public static void install(@NonNull Clock c, @NonNull Logger l) {
+        clock = c;
+        logger = l;
+    }
+
+    @NonNull public static Clock clock() { return clock; }
+    @NonNull public static Logger log() { return logger; }
+}
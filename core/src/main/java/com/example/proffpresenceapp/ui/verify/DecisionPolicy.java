@@ -0,0 +1,26 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Turns per-frame match evidence into a verification decision.
+ * Feed one frame at a time; stop as soon as the result is not {@link Decision#CONTINUE}.
+ */
+public interface DecisionPolicy {
+
+    enum Decision { CONTINUE, ACCEPT, REJECT }
+
+    /**
+     * @param bestScore     best cosine of this frame's probe against the user's gallery
+     * @param frameAccepted FaceMatcher.acceptForUser verdict for this frame
+     */
+    @NonNull
+    Decision onFrame(float bestScore, boolean frameAccepted);
+
+    /** Start a new attempt. */
+    void reset();
+
+    /** Short progress text for the on-screen hint. */
+    @NonNull
+    String progress();
+}
@@ -0,0 +1,29 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import androidx.annotation.NonNull;
+
+/** The original rule: wait for exactly {@code frames} frames, pass if at least {@code minAgree} agreed. */
+public final class FixedVotePolicy implements DecisionPolicy {
+
+    private final int frames;
+    private final int minAgree;
+    private int seen = 0;
+    private int agree = 0;
+
+    public FixedVotePolicy(int frames, int minAgree) {
+        this.frames = frames;
+        this.minAgree = minAgree;
+    }
+
+    @NonNull @Override
+    public Decision onFrame(float bestScore, boolean frameAccepted) {
+        seen++;
+        if (frameAccepted) agree++;
+        if (seen < frames) return Decision.CONTINUE;
+        return agree >= minAgree ? Decision.ACCEPT : Decision.REJECT;
+    }
+
+    @Override public void reset() { seen = 0; agree = 0; }
+
+    @NonNull @Override public String progress() { return agree + "/" + seen; }
+}
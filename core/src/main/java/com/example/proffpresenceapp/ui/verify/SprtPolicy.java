@@ -0,0 +1,134 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Wald sequential probability ratio test over per-frame cosine scores.
+ * Genuine and impostor scores are modelled as Gaussians N(muGenuine, sigma) / N(muImpostor, sigma);
+ * each frame adds its log-likelihood ratio and the test stops once the sum crosses
+ * ln((1-beta)/alpha) (accept) or ln(beta/(1-alpha)) (reject), so false-accept rate is bounded by
+ * ~alpha and false-reject by ~beta. Per-frame LLR is clipped so a single outlier frame cannot decide
+ * alone.
+ * <p>
+ * The LLR of a frame is positive only above the midpoint of the two means, so that midpoint must
+ * not sit below the strong threshold: {@link #defaults} centres it there, and {@link #fit} shifts a
+ * fitted pair up if needed. An early accept also needs at least one frame the per-frame rule
+ * accepted. When {@code maxFrames} run out undecided, the original fixed vote decides
+ * ({@code minAgree} accepted frames), never the sign of weak evidence.
+ */
+public final class SprtPolicy implements DecisionPolicy {
+
+    // ---- Tunables ----
+    private static final float DEFAULT_SEPARATION = 0.20f;   // each mean's distance from strong
+    private static final float DEFAULT_SIGMA = 0.12f;
+    private static final double DEFAULT_ALPHA = 0.001;
+    private static final double DEFAULT_BETA = 0.01;
+    private static final int DEFAULT_MIN_FRAMES = 2;
+
+    private final float muGenuine;
+    private final float muImpostor;
+    private final float twoSigma2;
+    private final float llrClip;
+    private final double acceptBound;
+    private final double rejectBound;
+    private final int minFrames;
+    private final int maxFrames;
+    private final int minAgree;
+
+    private double llr = 0;
+    private int seen = 0;
+    private int agree = 0;
+
+    /**
+     * @param alpha    target false-accept probability (e.g. 0.001)
+     * @param beta     target false-reject probability (e.g. 0.01)
+     * @param minAgree accepted frames needed when the budget runs out undecided
+     */
+    public SprtPolicy(float muGenuine, float muImpostor, float sigma,
+                      double alpha, double beta, int minFrames, int maxFrames, int minAgree) {
+        if (!(muGenuine > muImpostor) || !(sigma > 0f)) {
+            throw new IllegalArgumentException("need muGenuine > muImpostor and sigma > 0");
+        }
+        this.muGenuine = muGenuine;
+        this.muImpostor = muImpostor;
+        this.twoSigma2 = 2f * sigma * sigma;
+        this.acceptBound = Math.log((1 - beta) / alpha);
+        this.rejectBound = Math.log(beta / (1 - alpha));
+        this.llrClip = (float) (acceptBound / 1.5);   // >= 2 frames needed to accept
+        this.minFrames = Math.max(1, minFrames);
+        this.maxFrames = Math.max(this.minFrames, maxFrames);
+        this.minAgree = minAgree;
+    }
+
+    /**
+     * Means {@link #DEFAULT_SEPARATION} either side of the model's strong threshold, so a frame only
+     * counts for the user if it scores above that threshold.
+     */
+    @NonNull
+    public static SprtPolicy defaults(float strongThreshold, int minAgree, int maxFrames) {
+        return new SprtPolicy(strongThreshold + DEFAULT_SEPARATION, strongThreshold - DEFAULT_SEPARATION,
+                DEFAULT_SIGMA, DEFAULT_ALPHA, DEFAULT_BETA, DEFAULT_MIN_FRAMES, maxFrames, minAgree);
+    }
+
+    /**
+     * Means and pooled sigma fitted to labelled per-frame best scores of genuine and impostor
+     * attempts. If the fitted midpoint falls below {@code strongThreshold}, both means move up until
+     * it does not.
+     */
+    @NonNull
+    public static SprtPolicy fit(@NonNull float[] genuine, @NonNull float[] impostor,
+                                 float strongThreshold, int minAgree, int maxFrames) {
+        if (genuine.length < 2 || impostor.length < 2) {
+            throw new IllegalArgumentException("need >= 2 scores per class");
+        }
+        double mg = mean(genuine), mi = mean(impostor);
+        double ss = sumSq(genuine, mg) + sumSq(impostor, mi);
+        float sigma = (float) Math.sqrt(ss / (genuine.length + impostor.length - 2));
+        double shift = Math.max(0.0, strongThreshold - (mg + mi) / 2);
+        return new SprtPolicy((float) (mg + shift), (float) (mi + shift), Math.max(sigma, 1e-3f),
+                DEFAULT_ALPHA, DEFAULT_BETA, DEFAULT_MIN_FRAMES, maxFrames, minAgree);
+    }
+
+    @NonNull @Override
+    public Decision onFrame(float bestScore, boolean frameAccepted) {
+        float dI = bestScore - muImpostor;
+        float dG = bestScore - muGenuine;
+        float frameLlr = (dI * dI - dG * dG) / twoSigma2;
+        llr += Math.max(-llrClip, Math.min(llrClip, frameLlr));
+        seen++;
+        if (frameAccepted) agree++;
+
+        if (seen >= minFrames) {
+            if (llr >= acceptBound && agree > 0) return Decision.ACCEPT;
+            if (llr <= rejectBound) return Decision.REJECT;
+        }
+        if (seen >= maxFrames) return agree >= minAgree ? Decision.ACCEPT : Decision.REJECT;
+        return Decision.CONTINUE;
+    }
+
+    @Override public void reset() { llr = 0; seen = 0; agree = 0; }
+
+    public double logLikelihoodRatio() { return llr; }
+    public int framesSeen() { return seen; }
+
+    /** Score at which a frame's evidence changes sign. */
+    public float midpoint() { return (muGenuine + muImpostor) / 2f; }
+
+    @NonNull @Override public String progress() {
+        return String.format(Locale.US, "%d frames, evidence %.1f/%.1f", seen, llr, acceptBound);
+    }
+
+    private static double mean(float[] v) {
+        double s = 0;
+        for (float f : v) s += f;
+        return s / v.length;
+    }
+
+    private static double sumSq(float[] v, double m) {
+        double s = 0;
+        for (float f : v) s += (f - m) * (f - m);
+        return s;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.proffpresenceapp.ui.attendance;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/** Day bucketing, when ENTER opens a session, and the close update. */
+public class AttendanceSessionsTest {
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    private static final TimeZone KARACHI = TimeZone.getTimeZone("Asia/Karachi");   // UTC+5
+
+    // 2024-03-09T21:30:00Z
+    private static final long EVENING_UTC = 1_710_019_800_000L;
+
+    @Test
+    public void dayKeyIsLocalAndZeroPadded() {
+        assertEquals("2024-03-09", AttendanceSessions.dayKey(EVENING_UTC, UTC));
+        assertEquals("2024-03-10", AttendanceSessions.dayKey(EVENING_UTC, KARACHI));
+        assertEquals("1970-01-01", AttendanceSessions.dayKey(0L, UTC));
+    }
+
+    @Test
+    public void enterOpensWithoutAnOpenSession() {
+        assertTrue(AttendanceSessions.shouldOpen(null, "2024-03-09"));
+    }
+
+    @Test
+    public void repeatedEnterSameDayIsANoOp() {
+        AttendanceSessions.Open open = new AttendanceSessions.Open("2024-03-09", "k1", 1L);
+        assertFalse(AttendanceSessions.shouldOpen(open, "2024-03-09"));
+    }
+
+    @Test
+    public void enterOnANewDayOpensAgain() {
+        AttendanceSessions.Open open = new AttendanceSessions.Open("2024-03-08", "k1", 1L);
+        assertTrue(AttendanceSessions.shouldOpen(open, "2024-03-09"));
+        assertTrue(AttendanceSessions.shouldOpen(new AttendanceSessions.Open(null, "k1", 1L), "2024-03-09"));
+    }
+
+    @Test
+    public void closeUpdateMeasuresFromStart() {
+        Map<String, Object> upd = AttendanceSessions.closeUpdate(1_000L, 61_000L);
+        assertEquals(61_000L, upd.get("end"));
+        assertEquals(60_000L, upd.get("durationMs"));
+    }
+
+    @Test
+    public void closeUpdateNeverGoesNegative() {
+        Map<String, Object> upd = AttendanceSessions.closeUpdate(61_000L, 1_000L);   // clock went back
+        assertEquals(1_000L, upd.get("end"));
+        assertEquals(0L, upd.get("durationMs"));
+    }
+
+    @Test
+    public void closableNeedsKeyDateAndStart() {
+        assertTrue(new AttendanceSessions.Open("2024-03-09", "k1", 1L).isClosable());
+        assertFalse(new AttendanceSessions.Open("2024-03-09", "", 1L).isClosable());
+        assertFalse(new AttendanceSessions.Open(null, "k1", 1L).isClosable());
+        assertFalse(new AttendanceSessions.Open("2024-03-09", "k1", null).isClosable());
+    }
+}
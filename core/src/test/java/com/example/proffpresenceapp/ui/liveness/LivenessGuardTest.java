@@ -0,0 +1,43 @@
+package com.example.proffpresenceapp.ui.liveness;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/** Blink-then-turn state machine driven by a fake clock. */
+public class LivenessGuardTest {
+
+    private long now = 1_000L;
+    private final LivenessGuard guard = new LivenessGuard(() -> now);
+
+    @Test
+    public void blinkThenTurnPasses() {
+        assertFalse(guard.update(0.9f, 0.9f, 0f).passed);
+        assertFalse(guard.update(0.1f, 0.2f, 0f).passed);      // closed
+        now += 200;
+        LivenessGuard.Result r = guard.update(0.9f, 0.8f, 0f);  // reopened
+        assertFalse(r.passed);
+        assertTrue(r.hint.startsWith("Good"));
+        now += 500;
+        assertFalse(guard.update(0.9f, 0.9f, 5f).passed);      // not far enough
+        assertTrue(guard.update(0.9f, 0.9f, -25f).passed);
+        assertTrue(guard.isPassed());
+    }
+
+    @Test
+    public void turnWithoutBlinkDoesNotPass() {
+        for (int i = 0; i < 10; i++) assertFalse(guard.update(0.9f, 0.9f, 30f).passed);
+        assertFalse(guard.update(null, null, -30f).passed);     // unclassified eyes
+    }
+
+    @Test
+    public void idleResets() {
+        guard.update(0.1f, 0.1f, 0f);
+        guard.update(0.9f, 0.9f, 0f);                           // blink done
+        now += 5_001;
+        LivenessGuard.Result r = guard.update(0.9f, 0.9f, 30f);
+        assertFalse(r.passed);
+        assertTrue(r.hint.startsWith("No movement"));
+        assertFalse(guard.update(0.9f, 0.9f, 30f).passed);      // back to needing a blink
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * The legacy box crop against a re-implementation of the old FaceUtils.cropAlignResize
+ * (expand, clamp to the frame, createBitmap, createScaledBitmap with bilinear filtering),
+ * on a random grey frame and boxes that run off every edge.
+ */
+public class CropTransformTest {
+
+    private static final int W = 480, H = 640, SIZE = 112;
+    private static final float MARGIN = 0.20f;
+
+    @Test
+    public void legacyBoxMatchesOldCrop() {
+        Random r = new Random(5);
+        float[] frame = new float[W * H];
+        for (int i = 0; i < frame.length; i++) frame[i] = r.nextInt(256);
+
+        CropTransform xf = new CropTransform();
+        for (int n = 0; n < 200; n++) {
+            int bw = 40 + r.nextInt(300), bh = 40 + r.nextInt(300);
+            int left = r.nextInt(W + 100) - 100, top = r.nextInt(H + 100) - 100;
+            int[] ex = oldRect(left, top, left + bw, top + bh);
+            boolean ok = xf.setLegacyBox(left, top, left + bw, top + bh, W, H, SIZE, MARGIN);
+            assertEquals(ex != null, ok);
+            if (!ok) continue;
+
+            float[] old = oldCrop(frame, ex);
+            for (int oy = 0; oy < SIZE; oy++) {
+                for (int ox = 0; ox < SIZE; ox++) {
+                    float cx = ox + 0.5f, cy = oy + 0.5f;
+                    float got = bilinear(frame, W, H, xf.x(cx, cy) - 0.5f, xf.y(cx, cy) - 0.5f);
+                    assertEquals("box " + n + " at " + ox + "," + oy, old[oy * SIZE + ox], got, 1e-2f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void legacyBoxStretchesInsteadOfSquaring() {
+        CropTransform xf = new CropTransform();
+        assertTrue(xf.setLegacyBox(100, 100, 200, 300, W, H, SIZE, MARGIN));   // 100 x 200 face
+        assertEquals(140f / SIZE, xf.ax, 1e-6f);
+        assertEquals(280f / SIZE, xf.by, 1e-6f);
+        assertEquals(80f, xf.tx, 0f);
+        assertEquals(60f, xf.ty, 0f);
+    }
+
+    @Test
+    public void boxOutsideTheFrameIsRejected() {
+        assertFalse(new CropTransform().setLegacyBox(W + 50, 10, W + 90, 60, W, H, SIZE, MARGIN));
+    }
+
+    @Test
+    public void similarityClampsToTheFrame() {
+        CropTransform xf = new CropTransform();
+        xf.setSimilarity(2f, 0f, -50f, H + 10f, W, H);
+        assertEquals(0.5f, xf.x(0.5f, 0.5f), 0f);
+        assertEquals(H - 0.5f, xf.y(0.5f, 0.5f), 0f);
+        assertEquals(11f, xf.x(30.5f, 0.5f), 1e-4f);
+    }
+
+    /** Old expanded rect {l, t, r, b}, or null if empty. */
+    private static int[] oldRect(int left, int top, int right, int bottom) {
+        int extraW = (int) ((right - left) * MARGIN);
+        int extraH = (int) ((bottom - top) * MARGIN);
+        int l = Math.max(0, left - extraW), t = Math.max(0, top - extraH);
+        int r = Math.min(W, right + extraW), b = Math.min(H, bottom + extraH);
+        return r - l <= 0 || b - t <= 0 ? null : new int[]{l, t, r, b};
+    }
+
+    /** createBitmap(rect) then createScaledBitmap(size, size, filter): bilinear, edges clamped to the crop. */
+    private static float[] oldCrop(float[] frame, int[] ex) {
+        int cw = ex[2] - ex[0], ch = ex[3] - ex[1];
+        float[] crop = new float[cw * ch];
+        for (int y = 0; y < ch; y++) {
+            System.arraycopy(frame, (ex[1] + y) * W + ex[0], crop, y * cw, cw);
+        }
+        float[] out = new float[SIZE * SIZE];
+        float sx = cw / (float) SIZE, sy = ch / (float) SIZE;
+        for (int oy = 0; oy < SIZE; oy++) {
+            for (int ox = 0; ox < SIZE; ox++) {
+                out[oy * SIZE + ox] = bilinear(crop, cw, ch, (ox + 0.5f) * sx - 0.5f, (oy + 0.5f) * sy - 0.5f);
+            }
+        }
+        return out;
+    }
+
+    private static float bilinear(float[] img, int w, int h, float px, float py) {
+        if (px < 0f) px = 0f; else if (px > w - 1) px = w - 1;
+        if (py < 0f) py = 0f; else if (py > h - 1) py = h - 1;
+        int x0 = (int) px, y0 = (int) py;
+        int x1 = Math.min(x0 + 1, w - 1), y1 = Math.min(y0 + 1, h - 1);
+        float fx = px - x0, fy = py - y0;
+        float top = img[y0 * w + x0] * (1f - fx) + img[y0 * w + x1] * fx;
+        float bot = img[y1 * w + x0] * (1f - fx) + img[y1 * w + x1] * fx;
+        return top + (bot - top) * fy;
+    }
+}
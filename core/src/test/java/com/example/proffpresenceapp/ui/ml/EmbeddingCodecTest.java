@@ -0,0 +1,78 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Row round trips per dtype, the rollout gate, and the cosine cost of f16 / int8 storage. */
+public class EmbeddingCodecTest {
+
+    private static final int DIM = 128;
+
+    @Test
+    public void f32RoundTripIsExact() {
+        float[] v = TestVectors.unit(new Random(1), DIM);
+        assertArrayEquals(v, EmbeddingCodec.decode(EmbeddingCodec.encode(v, EmbeddingCodec.Dtype.F32),
+                EmbeddingCodec.Dtype.F32), 0f);
+    }
+
+    @Test
+    public void f16RoundTripWithinHalfPrecision() {
+        float[] v = TestVectors.unit(new Random(2), DIM);
+        float[] back = EmbeddingCodec.decode(EmbeddingCodec.encode(v, EmbeddingCodec.Dtype.F16),
+                EmbeddingCodec.Dtype.F16);
+        assertEquals(DIM, back.length);
+        for (int i = 0; i < DIM; i++) assertEquals(v[i], back[i], Math.abs(v[i]) / 1024f + 1e-7f);
+    }
+
+    @Test
+    public void int8RoundTripWithinHalfAStep() {
+        float[] v = TestVectors.unit(new Random(3), DIM);
+        float maxAbs = 0f;
+        for (float f : v) maxAbs = Math.max(maxAbs, Math.abs(f));
+        float step = maxAbs / 127f;
+        float[] back = EmbeddingCodec.decode(EmbeddingCodec.encode(v, EmbeddingCodec.Dtype.INT8),
+                EmbeddingCodec.Dtype.INT8);
+        assertEquals(DIM, back.length);
+        for (int i = 0; i < DIM; i++) assertEquals(v[i], back[i], step / 2 + 1e-6f);
+    }
+
+    @Test
+    public void untaggedRowsAreF32() {
+        assertEquals(EmbeddingCodec.Dtype.F32, EmbeddingCodec.Dtype.fromTag(null));
+        assertEquals(EmbeddingCodec.Dtype.F32, EmbeddingCodec.Dtype.fromTag("bogus"));
+        assertEquals(EmbeddingCodec.Dtype.INT8, EmbeddingCodec.Dtype.fromTag("i8"));
+    }
+
+    @Test
+    public void malformedRowsDecodeToNull() {
+        assertNull(EmbeddingCodec.decode("not base64!", EmbeddingCodec.Dtype.F32));
+        assertNull(EmbeddingCodec.decode("AAA=", EmbeddingCodec.Dtype.INT8));   // shorter than the scale
+        assertNull(EmbeddingCodec.decode("AAAA", EmbeddingCodec.Dtype.F16));    // 3 bytes, odd
+    }
+
+    @Test
+    public void int8RowsOnlyOnceOldClientsAreGone() {
+        assertEquals(EmbeddingCodec.Dtype.F32, EmbeddingCodec.rowDtype(0));
+        assertEquals(EmbeddingCodec.Dtype.F32, EmbeddingCodec.rowDtype(EmbeddingCodec.FIRST_DTYPE_READER - 1));
+        assertEquals(EmbeddingCodec.Dtype.INT8, EmbeddingCodec.rowDtype(EmbeddingCodec.FIRST_DTYPE_READER));
+    }
+
+    @Test
+    public void scoreDeltasStaySmall() {
+        Random r = new Random(4);
+        float[][] probes = new float[50][], gallery = new float[50][];
+        for (int i = 0; i < probes.length; i++) {
+            float[] base = TestVectors.unit(r, DIM);
+            probes[i] = base;
+            gallery[i] = TestVectors.near(r, base, 0.6f);   // same-person-like pairs on the diagonal
+        }
+        EmbeddingCodec.Report rep = EmbeddingCodec.compare(probes, gallery);
+        assertEquals(2500, rep.pairs);
+        assertTrue(rep.toString(), rep.f16MaxAbs < 1e-3);
+        assertTrue(rep.toString(), rep.i8MeanAbs < 0.002);
+        assertTrue(rep.toString(), rep.i8MaxAbs < 0.01);
+    }
+}
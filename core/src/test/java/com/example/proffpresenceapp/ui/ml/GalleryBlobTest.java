@@ -0,0 +1,126 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Whole-gallery round trips per dtype, and rejection of damaged or truncated blobs. */
+public class GalleryBlobTest {
+
+    private static final int DIM = 128;
+    private static final int COUNT = 7;
+    private static final String MODEL = "mfn-112-v2";
+
+    @Test
+    public void f32RoundTripIsExact() {
+        List<float[]> rows = rows(new Random(1));
+        float[] back = roundTrip(rows, EmbeddingCodec.Dtype.F32);
+        for (int r = 0; r < COUNT; r++) {
+            assertArrayEquals(rows.get(r), Arrays.copyOfRange(back, r * DIM, (r + 1) * DIM), 0f);
+        }
+    }
+
+    @Test
+    public void f16RoundTripWithinHalfPrecision() {
+        List<float[]> rows = rows(new Random(2));
+        float[] back = roundTrip(rows, EmbeddingCodec.Dtype.F16);
+        for (int r = 0; r < COUNT; r++) {
+            float[] v = rows.get(r);
+            for (int i = 0; i < DIM; i++) assertEquals(v[i], back[r * DIM + i], Math.abs(v[i]) / 1024f + 1e-7f);
+        }
+    }
+
+    @Test
+    public void int8RoundTripWithinHalfAStep() {
+        List<float[]> rows = rows(new Random(3));
+        float[] back = roundTrip(rows, EmbeddingCodec.Dtype.INT8);
+        for (int r = 0; r < COUNT; r++) {
+            float[] v = rows.get(r);
+            float maxAbs = 0f;
+            for (float f : v) maxAbs = Math.max(maxAbs, Math.abs(f));
+            float step = maxAbs / 127f;
+            for (int i = 0; i < DIM; i++) assertEquals(v[i], back[r * DIM + i], step / 2 + 1e-6f);
+        }
+    }
+
+    @Test
+    public void decodesIntoGallery() {
+        List<float[]> rows = rows(new Random(4));
+        byte[] blob = GalleryBlob.encode(rows, DIM, EmbeddingCodec.Dtype.F16, MODEL);
+        GalleryBlob.Header h = GalleryBlob.readHeader(blob, new GalleryBlob.Header());
+        assertNotNull(h);
+        FaceGallery g = new FaceGallery(DIM, h.count);
+        GalleryBlob.decodeInto(blob, h, g, new float[DIM]);
+        assertEquals(COUNT, g.size());
+    }
+
+    @Test
+    public void base64RoundTrip() {
+        byte[] blob = GalleryBlob.encode(rows(new Random(5)), DIM, EmbeddingCodec.Dtype.INT8, MODEL);
+        assertArrayEquals(blob, GalleryBlob.fromBase64(GalleryBlob.toBase64(blob)));
+        assertNull(GalleryBlob.fromBase64("not base64!"));
+        assertNull(GalleryBlob.fromBase64(42L));
+    }
+
+    @Test
+    public void corruptCrcIsRejected() {
+        byte[] blob = GalleryBlob.encode(rows(new Random(6)), DIM, EmbeddingCodec.Dtype.F32, MODEL);
+        byte[] payload = blob.clone();
+        payload[payload.length / 2] ^= 0x01;   // one bit flipped in a row
+        assertNull(GalleryBlob.readHeader(payload, new GalleryBlob.Header()));
+
+        byte[] trailer = blob.clone();
+        trailer[trailer.length - 1] ^= 0x01;    // the checksum itself
+        assertNull(GalleryBlob.readHeader(trailer, new GalleryBlob.Header()));
+    }
+
+    @Test
+    public void wrongLengthIsRejected() {
+        byte[] blob = GalleryBlob.encode(rows(new Random(7)), DIM, EmbeddingCodec.Dtype.F16, MODEL);
+        assertNull(GalleryBlob.readHeader(Arrays.copyOf(blob, blob.length - 1), new GalleryBlob.Header()));
+        assertNull(GalleryBlob.readHeader(Arrays.copyOf(blob, blob.length + 2), new GalleryBlob.Header()));
+        assertNull(GalleryBlob.readHeader(Arrays.copyOf(blob, 16), new GalleryBlob.Header()));
+    }
+
+    @Test
+    public void rowOfWrongDimensionIsNotEncoded() {
+        List<float[]> rows = rows(new Random(8));
+        rows.add(new float[DIM - 1]);
+        try {
+            GalleryBlob.encode(rows, DIM, EmbeddingCodec.Dtype.F32, MODEL);
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // encode refuses rather than writing a blob readHeader would reject
+        }
+    }
+
+    private static float[] roundTrip(List<float[]> rows, EmbeddingCodec.Dtype dtype) {
+        byte[] blob = GalleryBlob.encode(rows, DIM, dtype, MODEL);
+        assertEquals(GalleryBlob.encodedSize(dtype, DIM, COUNT, MODEL), blob.length);
+        GalleryBlob.Header h = GalleryBlob.readHeader(blob, new GalleryBlob.Header());
+        assertNotNull(h);
+        assertEquals(GalleryBlob.FORMAT, h.format);
+        assertEquals(dtype, h.dtype);
+        assertEquals(DIM, h.dim);
+        assertEquals(COUNT, h.count);
+        assertEquals(MODEL, h.model);
+        float[] out = new float[COUNT * DIM];
+        GalleryBlob.decodeInto(blob, h, out);
+        return out;
+    }
+
+    private static List<float[]> rows(Random r) {
+        List<float[]> out = new ArrayList<>();
+        for (int n = 0; n < COUNT; n++) {
+            float[] v = new float[DIM];
+            for (int i = 0; i < DIM; i++) v[i] = (float) r.nextGaussian();
+            out.add(FaceMatcher.l2norm(v));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recall of the HNSW graph against exact search on synthetic clustered embeddings
+ * (identities x samples, 128-d, like faceEmbeddings).
+ */
+public class HnswIndexTest {
+
+    private static final int DIM = 128;
+    private static final int IDENTITIES = 1000;
+    private static final int SAMPLES = 5;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+
+    private static HnswIndex index;
+    private static float[][] queries;
+
+    @BeforeClass
+    public static void build() {
+        Random r = new Random(7);
+        index = new HnswIndex(DIM, 16, 128, 1L);
+        float[][] centers = new float[IDENTITIES][];
+        for (int u = 0; u < IDENTITIES; u++) {
+            centers[u] = TestVectors.gaussian(r, DIM, 1f);
+            for (int s = 0; s < SAMPLES; s++) index.insert("u" + u, TestVectors.add(centers[u], TestVectors.gaussian(r, DIM, 0.6f)));
+        }
+        queries = new float[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = FaceMatcher.l2norm(TestVectors.add(centers[r.nextInt(IDENTITIES)], TestVectors.gaussian(r, DIM, 0.6f)));
+        }
+    }
+
+    @Test
+    public void recallAgainstExactSearch() {
+        index.setEfSearch(100);
+        double recall = recallAtK(index, K);
+        assertTrue("recall@" + K + " too low: " + recall, recall >= 0.95);
+    }
+
+    @Test
+    public void higherEfDoesNotLowerRecall() {
+        index.setEfSearch(16);
+        double low = recallAtK(index, K);
+        index.setEfSearch(200);
+        double high = recallAtK(index, K);
+        assertTrue(high >= low);
+    }
+
+    @Test
+    public void topHitIsTheQueriedIdentity() {
+        index.setEfSearch(64);
+        int hits = 0;
+        for (float[] q : queries) {
+            List<HnswIndex.Hit> exact = index.searchExact(q, 1);
+            List<HnswIndex.Hit> approx = index.search(q, 1);
+            if (exact.get(0).label.equals(approx.get(0).label)) hits++;
+        }
+        assertTrue(hits >= QUERIES * 0.98);
+    }
+
+    @Test
+    public void deletedLabelsAreNeverReturned() throws Exception {
+        HnswIndex copy = HnswIndex.load(new ByteArrayInputStream(dump(index)));
+        String gone = copy.search(queries[0], 1).get(0).label;
+        assertEquals(SAMPLES, copy.deleteLabel(gone));
+        assertEquals(IDENTITIES * SAMPLES - SAMPLES, copy.size());
+        for (HnswIndex.Hit h : copy.search(queries[0], K)) assertNotEquals(gone, h.label);
+    }
+
+    @Test
+    public void saveLoadRoundTripKeepsResults() throws Exception {
+        index.setEfSearch(64);
+        HnswIndex loaded = HnswIndex.load(new ByteArrayInputStream(dump(index)));
+        assertEquals(index.size(), loaded.size());
+        for (int q = 0; q < 20; q++) {
+            List<HnswIndex.Hit> a = index.search(queries[q], K);
+            List<HnswIndex.Hit> b = loaded.search(queries[q], K);
+            assertEquals(a.size(), b.size());
+            for (int i = 0; i < a.size(); i++) assertEquals(a.get(i).node, b.get(i).node);
+        }
+    }
+
+    @Test
+    public void corruptFilesFailWithIOException() throws Exception {
+        HnswIndex tiny = new HnswIndex(4);
+        tiny.insert("a", new float[]{1f, 0f, 0f, 0f});
+        tiny.insert("b", new float[]{0f, 1f, 0f, 0f});
+        byte[] ok = dump(tiny);
+        assertEquals(2, HnswIndex.load(new ByteArrayInputStream(ok)).size());
+
+        assertLoadFails(Arrays.copyOf(ok, ok.length - 3));                    // truncated
+        byte[] hugeCount = ok.clone();
+        ByteBuffer.wrap(hugeCount).putInt(24, 100_000_000);                   // header: node count
+        assertLoadFails(hugeCount);
+        byte[] badLink = ok.clone();
+        // header (40) + labels (2 x writeUTF of one char) + node 0 up to its first layer-0 link
+        ByteBuffer.wrap(badLink).putInt(40 + 6 + 4 + 1 + 4 * 4 + 1 + 2, 99);
+        assertLoadFails(badLink);
+    }
+
+    private static void assertLoadFails(byte[] file) {
+        try {
+            HnswIndex.load(new ByteArrayInputStream(file));
+            fail("loaded a corrupt index");
+        } catch (IOException expected) {
+            // ok
+        }
+    }
+
+    private static double recallAtK(HnswIndex idx, int k) {
+        int found = 0;
+        for (float[] q : queries) {
+            Set<Integer> truth = new HashSet<>();
+            for (HnswIndex.Hit h : idx.searchExact(q, k)) truth.add(h.node);
+            for (HnswIndex.Hit h : idx.search(q, k)) if (truth.contains(h.node)) found++;
+        }
+        return found / (double) (queries.length * k);
+    }
+
+    private static byte[] dump(HnswIndex idx) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        idx.save(bos);
+        return bos.toByteArray();
+    }
+}
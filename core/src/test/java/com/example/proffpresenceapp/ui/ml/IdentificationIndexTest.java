@@ -0,0 +1,68 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Registration, ranking and per-identity thresholds of the exact 1:N path. */
+public class IdentificationIndexTest {
+
+    private static final int DIM = 4;
+
+    @Test
+    public void wrongDimensionRegistersNothing() {
+        IdentificationIndex index = new IdentificationIndex(DIM);
+        assertTrue(index.add("alice", new float[]{1, 0, 0, 0}));
+        assertFalse(index.add("ghost", new float[]{0, 1, 0}));
+
+        assertEquals(1, index.identityCount());
+        assertEquals(1, index.sampleCount());
+        List<IdentificationIndex.Match> top = index.topK(new float[]{0, 1, 0, 0}, 5);
+        assertEquals(1, top.size());
+        assertEquals("alice", top.get(0).uid);
+    }
+
+    @Test
+    public void wrongDimensionForKnownIdentityKeepsItsSamples() {
+        IdentificationIndex index = new IdentificationIndex(DIM);
+        index.add("alice", new float[]{1, 0, 0, 0});
+        assertFalse(index.add("alice", new float[]{1, 0, 0, 0, 0}));
+        assertEquals(1, index.sampleCount());
+        assertEquals(1f, index.topK(new float[]{1, 0, 0, 0}, 1).get(0).score, 1e-6f);
+    }
+
+    @Test
+    public void ranksIdentitiesByBestSample() {
+        IdentificationIndex index = new IdentificationIndex(DIM);
+        index.add("alice", new float[]{1, 0, 0, 0});
+        index.add("alice", new float[]{0, 0, 1, 0});
+        index.add("bob", new float[]{0.8f, 0.6f, 0, 0});
+        index.add("carol", new float[]{0, 0, 0, 1});
+
+        List<IdentificationIndex.Match> top = index.topK(new float[]{0, 0, 1, 0}, 2);
+        assertEquals(2, top.size());
+        assertEquals("alice", top.get(0).uid);
+        assertEquals(1f, top.get(0).score, 1e-6f);
+        assertTrue(top.get(0).score >= top.get(1).score);
+    }
+
+    @Test
+    public void perIdentityThresholdOverridesDefault() {
+        IdentificationIndex index = new IdentificationIndex(DIM);
+        index.add("alice", new float[]{1, 0, 0, 0});
+        float[] probe = {0.8f, 0.6f, 0, 0};   // cosine 0.8
+
+        assertNotNull(index.identify(probe));
+        index.setThreshold("alice", 0.9f);
+        assertNull(index.identify(probe));
+    }
+
+    @Test
+    public void emptyIndexIdentifiesNobody() {
+        IdentificationIndex index = new IdentificationIndex(DIM);
+        assertTrue(index.topK(new float[]{1, 0, 0, 0}, 3).isEmpty());
+        assertNull(index.identify(new float[]{1, 0, 0, 0}));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** The int8 gallery against the float one it was built from: scores, the accept rule, i8 storage. */
+public class QuantizedGalleryTest {
+
+    private static final int DIM = 128;
+    private static final float STRONG = 0.60f, SECONDARY = 0.50f;
+    private static final int MIN_AGREE = 3;
+
+    @Test
+    public void scoresTrackFloatScores() {
+        Random r = new Random(11);
+        FaceGallery g = gallery(r, 40);
+        QuantizedGallery q = QuantizedGallery.of(g);
+        assertEquals(g.size(), q.size());
+
+        FaceGallery.Scores fs = new FaceGallery.Scores(), qs = new FaceGallery.Scores();
+        fs.perRow = new float[g.size()];
+        qs.perRow = new float[g.size()];
+        for (int p = 0; p < 50; p++) {
+            float[] probe = TestVectors.near(r, g.row(r.nextInt(g.size())), 0.8f);
+            g.score(probe, SECONDARY, fs);
+            q.score(probe, SECONDARY, qs);
+            for (int i = 0; i < g.size(); i++) assertEquals(fs.perRow[i], qs.perRow[i], 0.01f);
+            assertEquals(fs.rows, qs.rows);
+        }
+    }
+
+    @Test
+    public void decisionsMatchAwayFromThresholds() {
+        Random r = new Random(12);
+        FaceGallery g = gallery(r, 12);
+        QuantizedGallery q = QuantizedGallery.of(g);
+        FaceGallery.Scores fs = new FaceGallery.Scores(), qs = new FaceGallery.Scores();
+        fs.perRow = new float[g.size()];
+        int compared = 0;
+        for (int p = 0; p < 2000; p++) {
+            float[] probe = TestVectors.near(r, g.row(r.nextInt(g.size())), 0.4f + 1.2f * r.nextFloat());
+            g.score(probe, SECONDARY, fs);
+            if (nearAThreshold(fs, g.size())) continue;
+            compared++;
+            assertEquals(FaceMatcher.acceptForUser(probe, g, STRONG, SECONDARY, MIN_AGREE, fs),
+                    FaceMatcher.acceptForUser(probe, q, STRONG, SECONDARY, MIN_AGREE, qs));
+        }
+        assertTrue("too few probes away from the thresholds: " + compared, compared > 1000);
+    }
+
+    @Test
+    public void i8RowsRequantizeToTheirStoredCodes() {
+        Random r = new Random(13);
+        List<float[]> rows = new ArrayList<>();
+        for (int i = 0; i < 6; i++) rows.add(TestVectors.unit(r, DIM));
+        byte[] blob = GalleryBlob.encode(rows, DIM, EmbeddingCodec.Dtype.INT8, "m");
+        GalleryBlob.Header h = GalleryBlob.readHeader(blob, new GalleryBlob.Header());
+        assertNotNull(h);
+        FaceGallery g = new FaceGallery(DIM, h.count);
+        GalleryBlob.decodeInto(blob, h, g, new float[DIM]);
+
+        // Scoring a stored row against itself hits the exact codes: q.q * scale^2 of a unit row
+        QuantizedGallery q = QuantizedGallery.of(g);
+        FaceGallery.Scores s = new FaceGallery.Scores();
+        for (int i = 0; i < rows.size(); i++) {
+            byte[] codes = new byte[DIM];
+            float scale = EmbeddingCodec.quantize(g.row(i), codes);
+            float expected = EmbeddingCodec.dotInt8(codes, 0, codes, 0, DIM) * scale * scale;
+            q.score(g.row(i), SECONDARY, s);
+            assertEquals(i, s.bestIndex);
+            assertEquals(expected, s.best, 1e-6f);
+            assertEquals(1f, s.best, 0.01f);
+        }
+    }
+
+    @Test
+    public void wrongDimensionIsSkipped() {
+        QuantizedGallery q = new QuantizedGallery(DIM, 1);
+        assertFalse(q.add(new float[DIM - 1]));
+        assertTrue(q.add(TestVectors.unit(new Random(14), DIM)));
+        assertTrue(q.add(TestVectors.unit(new Random(15), DIM)));   // grows past the initial capacity
+        assertEquals(2, q.size());
+        FaceGallery.Scores s = q.score(new float[DIM - 1], SECONDARY, new FaceGallery.Scores());
+        assertEquals(-1, s.bestIndex);
+        assertFalse(FaceMatcher.acceptForUser(new float[DIM], new QuantizedGallery(DIM, 1),
+                STRONG, SECONDARY, MIN_AGREE, new FaceGallery.Scores()));
+    }
+
+    /** Best score or the MIN_AGREE-th best row within int8 error of a threshold. */
+    private static boolean nearAThreshold(FaceGallery.Scores fs, int n) {
+        float[] sorted = java.util.Arrays.copyOf(fs.perRow, n);
+        java.util.Arrays.sort(sorted);
+        float kth = sorted[n - MIN_AGREE];
+        return Math.abs(fs.best - STRONG) < 0.01f || Math.abs(kth - SECONDARY) < 0.01f;
+    }
+
+    private static FaceGallery gallery(Random r, int n) {
+        FaceGallery g = new FaceGallery(DIM, n);
+        float[] identity = TestVectors.unit(r, DIM);
+        for (int i = 0; i < n; i++) g.add(TestVectors.near(r, identity, 0.6f));
+        return g;
+    }
+}
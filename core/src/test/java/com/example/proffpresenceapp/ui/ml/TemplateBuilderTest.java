@@ -0,0 +1,204 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Offline evaluation of gallery compaction: the same accept rule against the raw per-sample
+ * gallery and against its templates, on synthetic identities with three head poses
+ * (identity center + pose offset + noise, 128-d). Each gallery holds four re-enrollments of five
+ * samples plus two outliers from other identities. Prints cost and accuracy before / after.
+ */
+public class TemplateBuilderTest {
+
+    private static final int DIM = 128;
+    private static final int IDENTITIES = 200;
+    private static final int ENROLLMENTS = 4;
+    private static final int PER_ENROLLMENT = 5;
+    private static final int OUTLIERS = 2;
+    private static final int PROBES = 10;          // genuine and impostor, per identity
+    private static final float[] POSE_YAW = {-20f, 0f, 20f};
+
+    // FaceRecognitionActivity's rule with the built-in model's thresholds
+    private static final float STRONG = 0.60f;
+    private static final float SECONDARY = 0.50f;
+    private static final int MIN_AGREE = 7;
+
+    private static float[][] centers;
+    private static float[][][] poses;              // [identity][pose]
+    private static FaceGallery[] galleries;
+    private static FaceTemplates[] templates;
+    private static float[][] genuine, impostor;    // [identity*PROBES + k]
+    private static int[] impostorOwner;
+
+    @BeforeClass
+    public static void build() {
+        Random r = new Random(11);
+        centers = new float[IDENTITIES][];
+        poses = new float[IDENTITIES][POSE_YAW.length][];
+        for (int u = 0; u < IDENTITIES; u++) {
+            centers[u] = TestVectors.gaussian(r, DIM, 1f);
+            for (int p = 0; p < POSE_YAW.length; p++) poses[u][p] = TestVectors.gaussian(r, DIM, 0.8f);
+        }
+
+        galleries = new FaceGallery[IDENTITIES];
+        templates = new FaceTemplates[IDENTITIES];
+        int n = ENROLLMENTS * PER_ENROLLMENT + OUTLIERS;
+        for (int u = 0; u < IDENTITIES; u++) {
+            FaceGallery g = new FaceGallery(DIM, n);
+            float[] yaw = new float[n];
+            for (int i = 0; i < ENROLLMENTS * PER_ENROLLMENT; i++) {
+                int p = i % PER_ENROLLMENT < 3 ? 1 : (i % 2 == 0 ? 0 : 2);   // mostly frontal
+                yaw[g.size()] = POSE_YAW[p] + (float) r.nextGaussian() * 3f;
+                g.add(sample(r, u, p));
+            }
+            for (int i = 0; i < OUTLIERS; i++) {
+                yaw[g.size()] = 0f;
+                g.add(sample(r, (u + 1 + r.nextInt(IDENTITIES - 1)) % IDENTITIES, 1));
+            }
+            galleries[u] = g;
+            templates[u] = TemplateBuilder.build(g, yaw);
+        }
+
+        genuine = new float[IDENTITIES * PROBES][];
+        impostor = new float[IDENTITIES * PROBES][];
+        impostorOwner = new int[IDENTITIES * PROBES];
+        for (int u = 0; u < IDENTITIES; u++) {
+            for (int k = 0; k < PROBES; k++) {
+                genuine[u * PROBES + k] = FaceMatcher.l2norm(sample(r, u, r.nextInt(POSE_YAW.length)));
+                int other = (u + 1 + r.nextInt(IDENTITIES - 1)) % IDENTITIES;
+                impostor[u * PROBES + k] = FaceMatcher.l2norm(sample(r, other, r.nextInt(POSE_YAW.length)));
+                impostorOwner[u * PROBES + k] = other;
+            }
+        }
+    }
+
+    @Test
+    public void templatesCutCostWithoutLosingAccuracy() {
+        FaceGallery.Scores s = new FaceGallery.Scores();
+        int rawAccept = 0, rawFalse = 0, tAccept = 0, tFalse = 0;
+        long rawRows = 0, tRows = 0;
+        for (int u = 0; u < IDENTITIES; u++) {
+            for (int k = 0; k < PROBES; k++) {
+                float[] g = genuine[u * PROBES + k], i = impostor[u * PROBES + k];
+                if (FaceMatcher.accepts(galleries[u].score(g, SECONDARY, s), STRONG, MIN_AGREE)) rawAccept++;
+                if (FaceMatcher.accepts(galleries[u].score(i, SECONDARY, s), STRONG, MIN_AGREE)) rawFalse++;
+                if (FaceMatcher.accepts(templates[u].score(g, SECONDARY, s), STRONG, MIN_AGREE)) tAccept++;
+                if (FaceMatcher.accepts(templates[u].score(i, SECONDARY, s), STRONG, MIN_AGREE)) tFalse++;
+                rawRows += galleries[u].score(g, SECONDARY, s).rows + galleries[u].score(i, SECONDARY, s).rows;
+                tRows += templates[u].score(g, SECONDARY, s).rows + templates[u].score(i, SECONDARY, s).rows;
+            }
+        }
+        int trials = IDENTITIES * PROBES;
+        double rawTar = rawAccept / (double) trials, rawFar = rawFalse / (double) trials;
+        double tTar = tAccept / (double) trials, tFar = tFalse / (double) trials;
+        double rawCost = rawRows / (2.0 * trials), tCost = tRows / (2.0 * trials);
+
+        System.out.printf("raw gallery: %.1f rows/probe  TAR=%.4f FAR=%.4f  %.0f ns/probe%n",
+                rawCost, rawTar, rawFar, nanosPerProbe(false));
+        System.out.printf("templates:   %.1f rows/probe  TAR=%.4f FAR=%.4f  %.0f ns/probe%n",
+                tCost, tTar, tFar, nanosPerProbe(true));
+
+        assertTrue("cost not reduced: " + tCost + " vs " + rawCost, tCost * 1.5 <= rawCost);
+        assertTrue("TAR dropped: " + tTar + " vs " + rawTar, tTar >= rawTar - 0.01);
+        assertTrue("FAR rose: " + tFar + " vs " + rawFar, tFar <= rawFar + 0.005);
+    }
+
+    @Test
+    public void neverLooserThanRawGalleryNearThreshold() {
+        // Impostors pulled towards the owner until the raw best sits around the strong threshold,
+        // where an inflated centroid score or whole-centroid votes would tip the decision.
+        Random r = new Random(23);
+        FaceGallery.Scores raw = new FaceGallery.Scores(), t = new FaceGallery.Scores();
+        int near = 0, rawAccept = 0, tAccept = 0;
+        for (int u = 0; u < IDENTITIES; u++) {
+            for (int k = 0; k < PROBES; k++) {
+                int other = (u + 1 + r.nextInt(IDENTITIES - 1)) % IDENTITIES;
+                float[] probe = sample(r, other, 1);
+                float w = 0.6f + 0.4f * r.nextFloat();
+                for (int d = 0; d < DIM; d++) probe[d] += w * (centers[u][d] + poses[u][1][d]);
+                FaceMatcher.l2norm(probe);
+                galleries[u].score(probe, SECONDARY, raw);
+                templates[u].score(probe, SECONDARY, t);
+                if (Math.abs(raw.best - STRONG) < 0.1f) near++;
+                assertTrue("template best above raw: " + t.best + " > " + raw.best, t.best <= raw.best + 1e-6f);
+                assertTrue("template votes above raw: " + t.agree + " > " + raw.agree, t.agree <= raw.agree);
+                if (FaceMatcher.accepts(raw, STRONG, MIN_AGREE)) rawAccept++;
+                if (FaceMatcher.accepts(t, STRONG, MIN_AGREE)) tAccept++;
+            }
+        }
+        System.out.printf("near-threshold impostors: %d within 0.1 of strong, accepted raw=%d templates=%d%n",
+                near, rawAccept, tAccept);
+        assertTrue("too few near-threshold probes: " + near, near >= IDENTITIES * PROBES / 4);
+        assertTrue(tAccept <= rawAccept);
+    }
+
+    @Test
+    public void outliersArePruned() {
+        int pruned = 0;
+        for (FaceTemplates t : templates) {
+            pruned += t.prunedCount();
+            assertTrue(t.size() <= TemplateBuilder.MAX_TEMPLATES + POSE_YAW.length);
+            assertEquals(galleries[0].size() - t.prunedCount(), t.sampleCount());
+        }
+        double perGallery = pruned / (double) IDENTITIES;
+        System.out.printf("pruned per gallery: %.2f (planted %d)%n", perGallery, OUTLIERS);
+        assertTrue("too few outliers pruned: " + perGallery, perGallery >= OUTLIERS * 0.9);
+        assertTrue("genuine samples pruned: " + perGallery, perGallery <= OUTLIERS + 0.5);
+    }
+
+    @Test
+    public void impostorNeverOutscoresOwnerTemplates() {
+        // A probe of identity v scores higher against v's templates than against u's
+        FaceGallery.Scores own = new FaceGallery.Scores(), other = new FaceGallery.Scores();
+        int wrong = 0;
+        for (int q = 0; q < impostor.length; q++) {
+            int u = q / PROBES, v = impostorOwner[q];
+            templates[v].score(impostor[q], SECONDARY, own);
+            templates[u].score(impostor[q], SECONDARY, other);
+            if (other.best >= own.best) wrong++;
+        }
+        assertTrue("ranking errors: " + wrong, wrong <= impostor.length / 200);
+    }
+
+    @Test
+    public void smallGalleriesStayPerSample() {
+        FaceGallery g = new FaceGallery(DIM, 3);
+        Random r = new Random(5);
+        for (int i = 0; i < 3; i++) g.add(sample(r, 0, 1));
+        FaceTemplates t = TemplateBuilder.build(g, null);
+        assertEquals(0, t.prunedCount());
+        assertEquals(3, t.sampleCount());
+        assertEquals(1, t.size());
+    }
+
+    private static double nanosPerProbe(boolean useTemplates) {
+        FaceGallery.Scores s = new FaceGallery.Scores();
+        int reps = 20, sink = 0;
+        long t0 = System.nanoTime();
+        for (int rep = 0; rep < reps; rep++) {
+            for (int q = 0; q < genuine.length; q++) {
+                int u = q / PROBES;
+                FaceGallery.Scores out = useTemplates
+                        ? templates[u].score(genuine[q], SECONDARY, s)
+                        : galleries[u].score(genuine[q], SECONDARY, s);
+                sink += out.agree;
+            }
+        }
+        long dt = System.nanoTime() - t0;
+        assertTrue(sink >= 0);
+        return dt / (double) (reps * genuine.length);
+    }
+
+    private static float[] sample(Random r, int u, int pose) {
+        float[] v = new float[DIM];
+        for (int i = 0; i < DIM; i++) {
+            v[i] = centers[u][i] + poses[u][pose][i] + (float) r.nextGaussian() * 0.9f;
+        }
+        return v;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import java.util.Random;
+
+/** Synthetic embeddings shared by the matcher tests. */
+final class TestVectors {
+
+    private TestVectors() {}
+
+    /** {@code n} i.i.d. normal components scaled by {@code sigma}, not normalized. */
+    static float[] gaussian(Random r, int n, float sigma) {
+        float[] v = new float[n];
+        for (int i = 0; i < n; i++) v[i] = (float) r.nextGaussian() * sigma;
+        return v;
+    }
+
+    /** Element-wise {@code a + b}. */
+    static float[] add(float[] a, float[] b) {
+        float[] v = new float[a.length];
+        for (int i = 0; i < v.length; i++) v[i] = a[i] + b[i];
+        return v;
+    }
+
+    /** Random direction, L2-normalized. */
+    static float[] unit(Random r, int dim) {
+        float[] v = new float[dim];
+        for (int i = 0; i < dim; i++) v[i] = (float) r.nextGaussian();
+        return FaceMatcher.l2norm(v);
+    }
+
+    /** {@code base} plus isotropic noise of total norm ~{@code noise}, L2-normalized. */
+    static float[] near(Random r, float[] base, float noise) {
+        int dim = base.length;
+        float[] v = new float[dim];
+        for (int i = 0; i < dim; i++) v[i] = base[i] + (float) r.nextGaussian() * noise / (float) Math.sqrt(dim);
+        return FaceMatcher.l2norm(v);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.proffpresenceapp.ui.ml;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 1:N identification with and without the PCA shortlist, on synthetic 128-d embeddings whose
+ * identity structure lives in a 24-d subspace (as real face embeddings concentrate their variance
+ * in a few directions) plus isotropic noise. The projection is fitted on a separate set of
+ * identities, as it would be offline. Prints per-query cost and top-1 agreement.
+ */
+public class TwoStageMatcherTest {
+
+    private static final int DIM = 128;
+    private static final int LATENT = 24;
+    private static final int K = 32;
+    private static final int IDENTITIES = 2000;
+    private static final int SAMPLES = 5;
+    private static final int PROBES = 1000;
+
+    private static float[][] basis;                // LATENT x DIM
+    private static PcaProjection pca;
+    private static IdentificationIndex exact, twoStage;
+    private static float[][] probes;
+    private static int[] probeOwner;
+
+    @BeforeClass
+    public static void build() {
+        Random r = new Random(3);
+        basis = new float[LATENT][];
+        for (int i = 0; i < LATENT; i++) basis[i] = TestVectors.gaussian(r, DIM, 1f);
+
+        // Fit on identities that are not enrolled
+        FaceGallery train = new FaceGallery(DIM, 3000);
+        for (int u = 0; u < 600; u++) {
+            float[] c = TestVectors.gaussian(r, LATENT, 1f);
+            for (int s = 0; s < SAMPLES; s++) train.add(sample(r, c));
+        }
+        pca = PcaProjection.fit(train, K, 1L);
+
+        exact = new IdentificationIndex(DIM);
+        twoStage = new IdentificationIndex(DIM);
+        twoStage.useTwoStage(pca, IdentificationIndex.DEFAULT_SHORTLIST);
+        float[][] centers = new float[IDENTITIES][];
+        for (int u = 0; u < IDENTITIES; u++) {
+            centers[u] = TestVectors.gaussian(r, LATENT, 1f);
+            for (int s = 0; s < SAMPLES; s++) {
+                float[] v = sample(r, centers[u]);
+                exact.add("u" + u, v);
+                twoStage.add("u" + u, v);
+            }
+        }
+        probes = new float[PROBES][];
+        probeOwner = new int[PROBES];
+        for (int q = 0; q < PROBES; q++) {
+            probeOwner[q] = r.nextInt(IDENTITIES);
+            probes[q] = FaceMatcher.l2norm(sample(r, centers[probeOwner[q]]));
+        }
+    }
+
+    @Test
+    public void shortlistKeepsExactTopOne() {
+        int agree = 0, exactRight = 0, twoRight = 0;
+        for (int q = 0; q < PROBES; q++) {
+            List<IdentificationIndex.Match> a = exact.topK(probes[q], 1);
+            List<IdentificationIndex.Match> b = twoStage.topK(probes[q], 1);
+            assertFalse(b.isEmpty());
+            if (a.get(0).uid.equals(b.get(0).uid)) {
+                agree++;
+                assertEquals(a.get(0).score, b.get(0).score, 1e-6f);   // rescored at full width
+            }
+            if (a.get(0).uid.equals("u" + probeOwner[q])) exactRight++;
+            if (b.get(0).uid.equals("u" + probeOwner[q])) twoRight++;
+        }
+        double exactNs = nanosPerQuery(exact), twoNs = nanosPerQuery(twoStage);
+        System.out.printf("exact:     rank-1=%.4f  %.0f ns/query (%d x %d)%n",
+                exactRight / (double) PROBES, exactNs, exact.sampleCount(), DIM);
+        System.out.printf("two-stage: rank-1=%.4f  %.0f ns/query (%d x %d + %d x %d), top-1 agreement %.4f%n",
+                twoRight / (double) PROBES, twoNs, twoStage.sampleCount(), K,
+                IdentificationIndex.DEFAULT_SHORTLIST, DIM, agree / (double) PROBES);
+
+        assertTrue("top-1 agreement " + agree, agree >= PROBES * 0.99);
+        assertTrue("rank-1 dropped: " + twoRight + " vs " + exactRight, twoRight >= exactRight - PROBES / 100);
+    }
+
+    @Test
+    public void fitOrdersComponentsByVariance() {
+        // Signal components come out in order; the near-equal noise tail converges slowly, so
+        // only check that it sits well below the latent subspace
+        for (int i = 1; i < LATENT; i++) {
+            assertTrue("component " + i, pca.variance(i) <= pca.variance(i - 1) * 1.001f);
+        }
+        assertTrue(pca.variance(LATENT - 1) > 3 * pca.variance(K - 1));
+    }
+
+    @Test
+    public void fileRoundTripProjectsIdentically() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        pca.write(bos);
+        PcaProjection back = PcaProjection.read(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(DIM, back.inputDim());
+        assertEquals(K, back.outputDim());
+        float[] a = new float[K], b = new float[K];
+        pca.project(probes[0], 0, a, 0);
+        back.project(probes[0], 0, b, 0);
+        assertArrayEquals(a, b, 0f);
+    }
+
+    @Test
+    public void smallIndexStaysExact() {
+        IdentificationIndex small = new IdentificationIndex(DIM);
+        small.useTwoStage(pca, IdentificationIndex.DEFAULT_SHORTLIST);
+        small.add("a", probes[0]);
+        small.add("b", probes[1]);
+        assertEquals("a", small.topK(probes[0], 2).get(0).uid);
+        assertEquals(2, small.topK(probes[0], 2).size());
+    }
+
+    private static double nanosPerQuery(IdentificationIndex index) {
+        int reps = 5, sink = 0;
+        for (int q = 0; q < 100; q++) sink += index.topK(probes[q], 1).size();   // warm-up
+        long t0 = System.nanoTime();
+        for (int rep = 0; rep < reps; rep++) {
+            for (float[] p : probes) sink += index.topK(p, 1).size();
+        }
+        long dt = System.nanoTime() - t0;
+        assertTrue(sink > 0);
+        return dt / (double) (reps * PROBES);
+    }
+
+    private static float[] sample(Random r, float[] latent) {
+        float[] v = new float[DIM];
+        for (int i = 0; i < LATENT; i++) {
+            float z = latent[i] + (float) r.nextGaussian() * 0.5f;
+            for (int d = 0; d < DIM; d++) v[d] += z * basis[i][d];
+        }
+        for (int d = 0; d < DIM; d++) v[d] += (float) r.nextGaussian() * 1.5f;
+        return v;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.proffpresenceapp.ui.verify;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/** Accept, reject and budget-exhaustion paths of the sequential test. */
+public class SprtPolicyTest {
+
+    private static final float STRONG = 0.60f;
+    private static final int MIN_AGREE = 7;
+    private static final int BUDGET = 14;
+
+    private final SprtPolicy policy = SprtPolicy.defaults(STRONG, MIN_AGREE, BUDGET);
+
+    /** Feeds scores (frame accepted when >= STRONG) until a decision; returns it and the frame count. */
+    private DecisionPolicy.Decision run(float... scores) {
+        DecisionPolicy.Decision d = DecisionPolicy.Decision.CONTINUE;
+        for (float s : scores) {
+            d = policy.onFrame(s, s >= STRONG);
+            if (d != DecisionPolicy.Decision.CONTINUE) return d;
+        }
+        return d;
+    }
+
+    private static float[] steady(float s, int n) {
+        float[] v = new float[n];
+        Arrays.fill(v, s);
+        return v;
+    }
+
+    @Test
+    public void midpointIsTheStrongThreshold() {
+        assertEquals(STRONG, policy.midpoint(), 1e-6f);
+    }
+
+    @Test
+    public void genuineAcceptsEarly() {
+        assertEquals(DecisionPolicy.Decision.ACCEPT, run(steady(0.80f, BUDGET)));
+        assertTrue(policy.framesSeen() < BUDGET);
+        assertTrue(policy.framesSeen() >= 2);
+    }
+
+    @Test
+    public void impostorRejectsEarly() {
+        assertEquals(DecisionPolicy.Decision.REJECT, run(steady(0.30f, BUDGET)));
+        assertTrue(policy.framesSeen() < BUDGET);
+    }
+
+    @Test
+    public void belowStrongNeverAccepts() {
+        // Above the old 0.50 midpoint but under the strong threshold.
+        assertEquals(DecisionPolicy.Decision.REJECT, run(steady(0.52f, BUDGET)));
+    }
+
+    @Test
+    public void exhaustionWithoutVotesRejects() {
+        float[] s = new float[BUDGET];
+        for (int i = 0; i < BUDGET; i++) s[i] = i % 3 == 0 ? 0.63f : 0.59f;   // 5 accepted
+        assertEquals(DecisionPolicy.Decision.REJECT, run(s));
+        assertEquals(BUDGET, policy.framesSeen());
+    }
+
+    @Test
+    public void exhaustionWithVotesAccepts() {
+        float[] s = new float[BUDGET];
+        for (int i = 0; i < BUDGET; i++) s[i] = i % 2 == 0 ? 0.61f : 0.59f;   // 7 accepted
+        assertEquals(DecisionPolicy.Decision.ACCEPT, run(s));
+        assertEquals(BUDGET, policy.framesSeen());
+    }
+
+    @Test
+    public void noAcceptWithoutAnAcceptedFrame() {
+        for (int i = 0; i < BUDGET - 1; i++) {
+            assertNotEquals(DecisionPolicy.Decision.ACCEPT, policy.onFrame(0.85f, false));
+        }
+    }
+
+    @Test
+    public void fitKeepsMidpointAtOrAboveStrong() {
+        float[] genuine = {0.58f, 0.62f, 0.60f, 0.64f};
+        float[] impostor = {0.20f, 0.24f, 0.22f, 0.18f};
+        SprtPolicy p = SprtPolicy.fit(genuine, impostor, STRONG, MIN_AGREE, BUDGET);
+        assertEquals(STRONG, p.midpoint(), 1e-5f);
+    }
+
+    @Test
+    public void resetClearsEvidence() {
+        run(steady(0.80f, 3));
+        policy.reset();
+        assertEquals(0, policy.framesSeen());
+        assertEquals(0.0, policy.logLikelihoodRatio(), 0.0);
+    }
+}